@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.service;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.paris.lutece.plugins.forms.business.Form;
+import fr.paris.lutece.plugins.forms.business.FormQuestionResponse;
+import fr.paris.lutece.plugins.forms.business.FormResponse;
+import fr.paris.lutece.plugins.forms.business.Question;
+import fr.paris.lutece.plugins.forms.service.entrytype.EntryTypeCheckBox;
+import fr.paris.lutece.plugins.forms.service.entrytype.EntryTypeFile;
+import fr.paris.lutece.plugins.forms.service.entrytype.EntryTypeText;
+import fr.paris.lutece.plugins.genericattributes.business.Entry;
+import fr.paris.lutece.plugins.genericattributes.business.Field;
+import fr.paris.lutece.plugins.genericattributes.business.Response;
+import fr.paris.lutece.plugins.genericattributes.service.entrytype.IEntryTypeService;
+import fr.paris.lutece.plugins.search.solr.indexer.SolrItem;
+import fr.paris.lutece.portal.business.file.File;
+
+/**
+ * Measures the building of the Solr document of a form response on synthetic form responses. Run with the benchmark profile: the GC profiler reports the
+ * bytes allocated per document and the results are written as JSON in target/jmh-result.json.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class FormResponseDocumentBuilderBenchmark
+{
+    private static final int ID_FORM_RESPONSE = 42;
+    private static final int CHECKBOX_CHOICES = 3;
+
+    /**
+     * The kind of entries of the synthetic form
+     */
+    public enum FormShape
+    {
+        TEXT,
+        CHECKBOX,
+        FILE
+    }
+
+    @Param( {
+            "10", "100"
+    } )
+    public int _nFieldCount;
+
+    @Param( {
+            "1", "5"
+    } )
+    public int _nIterationCount;
+
+    @Param( {
+            "TEXT", "CHECKBOX", "FILE"
+    } )
+    public FormShape _shape;
+
+    private FormResponseDocumentBuilder _builder;
+    private FormResponse _formResponse;
+    private Form _form;
+    private fr.paris.lutece.plugins.workflowcore.business.state.State _state;
+    private List<FormQuestionResponse> _listFormQuestionResponse;
+    private EntryIndex _entryIndex;
+    private IEntryTypeService _entryTypeService;
+    private Response _firstResponse;
+
+    /**
+     * Builds the synthetic form response
+     */
+    @Setup
+    public void setUp( )
+    {
+        switch( _shape )
+        {
+            case CHECKBOX:
+                _entryTypeService = new EntryTypeCheckBox( );
+                break;
+            case FILE:
+                _entryTypeService = new EntryTypeFile( );
+                break;
+            default:
+                _entryTypeService = new EntryTypeText( );
+                break;
+        }
+        Map<Integer, IEntryTypeService> mapEntryType = new HashMap<>( );
+        _builder = new FormResponseDocumentBuilder( "benchmark", entry -> mapEntryType.get( entry.getIdEntry( ) ) );
+
+        _form = new Form( );
+        _form.setId( 1 );
+        _form.setTitle( "Benchmark form" );
+
+        _state = new fr.paris.lutece.plugins.workflowcore.business.state.State( );
+        _state.setId( 1 );
+        _state.setName( "Submitted" );
+
+        _formResponse = new FormResponse( );
+        _formResponse.setId( ID_FORM_RESPONSE );
+        _formResponse.setFormId( _form.getId( ) );
+        _formResponse.setCreation( new Timestamp( System.currentTimeMillis( ) ) );
+        _formResponse.setUpdate( new Timestamp( System.currentTimeMillis( ) ) );
+
+        List<Field> listFields = new ArrayList<>( );
+        _listFormQuestionResponse = new ArrayList<>( _nFieldCount );
+        int nIdResponse = 0;
+        for ( int i = 1; i <= _nFieldCount; i++ )
+        {
+            Entry entry = new Entry( );
+            entry.setIdEntry( i );
+            mapEntryType.put( i, _entryTypeService );
+
+            Field fieldPublished = new Field( );
+            fieldPublished.setIdField( i );
+            fieldPublished.setCode( IEntryTypeService.FIELD_PUBLISHED );
+            fieldPublished.setValue( "true" );
+            fieldPublished.setParentEntry( entry );
+            listFields.add( fieldPublished );
+
+            Question question = new Question( );
+            question.setId( i );
+            question.setIdEntry( i );
+            question.setCode( "question_" + i );
+            question.setEntry( entry );
+
+            List<Response> listResponse = new ArrayList<>( );
+            for ( int nIteration = 0; nIteration < _nIterationCount; nIteration++ )
+            {
+                int nValues = ( _shape == FormShape.CHECKBOX ) ? CHECKBOX_CHOICES : 1;
+                for ( int nValue = 0; nValue < nValues; nValue++ )
+                {
+                    Response response = new Response( );
+                    response.setIdResponse( ++nIdResponse );
+                    response.setEntry( entry );
+                    response.setIterationNumber( nIteration );
+                    response.setResponseValue( "Response value " + nIdResponse + " of the question " + i );
+                    response.setField( fieldPublished );
+                    if ( _shape == FormShape.FILE )
+                    {
+                        File file = new File( );
+                        file.setIdFile( nIdResponse );
+                        file.setTitle( "attachment_" + nIdResponse + ".pdf" );
+                        response.setFile( file );
+                    }
+                    listResponse.add( response );
+                }
+            }
+
+            FormQuestionResponse formQuestionResponse = new FormQuestionResponse( );
+            formQuestionResponse.setId( i );
+            formQuestionResponse.setIdFormResponse( ID_FORM_RESPONSE );
+            formQuestionResponse.setQuestion( question );
+            formQuestionResponse.setEntryResponse( listResponse );
+            _listFormQuestionResponse.add( formQuestionResponse );
+        }
+
+        _entryIndex = new EntryIndex( listFields );
+        _firstResponse = _listFormQuestionResponse.get( 0 ).getEntryResponse( ).get( 0 );
+    }
+
+    /**
+     * Builds the whole document
+     *
+     * @return the document
+     */
+    @Benchmark
+    public SolrItem getSolrItem( )
+    {
+        return _builder.getSolrItem( _formResponse, _form, _state, _listFormQuestionResponse, _entryIndex, null, null );
+    }
+
+    /**
+     * Builds the common fields and the content of the document
+     *
+     * @return the document
+     */
+    @Benchmark
+    public SolrItem initSolrItem( )
+    {
+        return _builder.initSolrItem( _formResponse, _form, _state, _listFormQuestionResponse );
+    }
+
+    /**
+     * Adds the field of one response to a document
+     *
+     * @return the document
+     */
+    @Benchmark
+    public SolrItem addResponseValue( )
+    {
+        SolrItem solrItem = new SolrItem( );
+        _builder.addResponseValue( solrItem, "question_1", _builder.getHandler( _firstResponse.getEntry( ) ).getMapper( ), _firstResponse, ID_FORM_RESPONSE, new HashSet<>( ), 1 );
+        return solrItem;
+    }
+
+    /**
+     * Builds the full text content of the document
+     *
+     * @return the content
+     */
+    @Benchmark
+    public String getContentToIndex( )
+    {
+        return _builder.getContentToIndex( _listFormQuestionResponse );
+    }
+}
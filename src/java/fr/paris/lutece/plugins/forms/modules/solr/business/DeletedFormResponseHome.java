@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.business;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+import fr.paris.lutece.plugins.forms.modules.solr.service.FormsSolrPlugin;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+
+/**
+ * This class provides instances management methods for the form responses deleted since the last incremental indexing
+ */
+public final class DeletedFormResponseHome
+{
+    // Static variable pointed at the DAO instance
+    private static IDeletedFormResponseDAO _dao = SpringContextService.getBean( "forms-solr.deletedFormResponseDAO" );
+
+    /**
+     * Private constructor - this class need not be instantiated
+     */
+    private DeletedFormResponseHome( )
+    {
+    }
+
+    /**
+     * Record the deletion of a form response
+     * 
+     * @param nIdFormResponse
+     *            the id of the deleted form response
+     */
+    public static void create( int nIdFormResponse )
+    {
+        _dao.insert( nIdFormResponse, FormsSolrPlugin.getPlugin( ) );
+    }
+
+    /**
+     * Load the ids of the form responses deleted until the given date
+     * 
+     * @param timestamp
+     *            the date
+     * @return the ids of the deleted form responses
+     */
+    public static List<Integer> getIdFormResponseDeletedUntil( Timestamp timestamp )
+    {
+        return _dao.selectIdFormResponseDeletedUntil( timestamp, FormsSolrPlugin.getPlugin( ) );
+    }
+
+    /**
+     * Forget the deletions recorded until the given date
+     * 
+     * @param timestamp
+     *            the date
+     */
+    public static void removeUntil( Timestamp timestamp )
+    {
+        _dao.deleteUntil( timestamp, FormsSolrPlugin.getPlugin( ) );
+    }
+}
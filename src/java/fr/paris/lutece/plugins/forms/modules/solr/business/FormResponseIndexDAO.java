@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.business;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.util.sql.DAOUtil;
+
+/**
+ * This class provides the read-only queries on the form responses needed by the indexer
+ */
+public final class FormResponseIndexDAO implements IFormResponseIndexDAO
+{
+    // Constants
+    private static final String SQL_QUERY_SELECT_AFTER = "SELECT id_response FROM forms_response WHERE id_response > ? ORDER BY id_response LIMIT ?";
+    private static final String SQL_QUERY_SELECT_AFTER_BY_FORM = "SELECT id_response FROM forms_response WHERE id_form = ? AND id_response > ? ORDER BY id_response LIMIT ?";
+    private static final String SQL_QUERY_SELECT_UPDATE_DATE_AFTER = "SELECT id_response, update_date, published, from_save FROM forms_response WHERE id_response > ? ORDER BY id_response LIMIT ?";
+    private static final String SQL_QUERY_SELECT_MAX_ID = "SELECT MAX(id_response) FROM forms_response";
+    private static final String SQL_QUERY_SELECT_UPDATED_SINCE = "SELECT id_response FROM forms_response WHERE update_date > ? ORDER BY id_response";
+    private static final String SQL_QUERY_SELECT_STATE_CHANGED_SINCE = "SELECT DISTINCT id_resource FROM workflow_resource_history WHERE resource_type = ? AND creation_date > ?";
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int [ ] selectIdFormResponseAfter( int nLastId, int nLimit, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_AFTER, plugin ) )
+        {
+            daoUtil.setInt( 1, nLastId );
+            daoUtil.setInt( 2, nLimit );
+            daoUtil.executeQuery( );
+
+            return readIds( daoUtil, nLimit );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int [ ] selectIdFormResponseAfterByForm( int nIdForm, int nLastId, int nLimit, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_AFTER_BY_FORM, plugin ) )
+        {
+            daoUtil.setInt( 1, nIdForm );
+            daoUtil.setInt( 2, nLastId );
+            daoUtil.setInt( 3, nLimit );
+            daoUtil.executeQuery( );
+
+            return readIds( daoUtil, nLimit );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int selectUpdateDateAfter( int nLastId, int [ ] arrayIdFormResponse, long [ ] arrayUpdateMillis, boolean [ ] arrayPublished, Plugin plugin )
+    {
+        int nLimit = Math.min( arrayIdFormResponse.length, Math.min( arrayUpdateMillis.length, arrayPublished.length ) );
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_UPDATE_DATE_AFTER, plugin ) )
+        {
+            daoUtil.setInt( 1, nLastId );
+            daoUtil.setInt( 2, nLimit );
+            daoUtil.executeQuery( );
+
+            int nCount = 0;
+            while ( daoUtil.next( ) && nCount < nLimit )
+            {
+                Timestamp timestampUpdate = daoUtil.getTimestamp( 2 );
+                arrayIdFormResponse [nCount] = daoUtil.getInt( 1 );
+                arrayUpdateMillis [nCount] = ( timestampUpdate != null ) ? timestampUpdate.getTime( ) : 0;
+                arrayPublished [nCount] = daoUtil.getBoolean( 3 ) && !daoUtil.getBoolean( 4 );
+                nCount++;
+            }
+            return nCount;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int selectMaxIdFormResponse( Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_MAX_ID, plugin ) )
+        {
+            daoUtil.executeQuery( );
+
+            return daoUtil.next( ) ? daoUtil.getInt( 1 ) : 0;
+        }
+    }
+
+    /**
+     * Reads the ids of an executed query into an array
+     * 
+     * @param daoUtil
+     *            the executed query
+     * @param nLimit
+     *            the maximum number of ids
+     * @return the ids
+     */
+    private static int [ ] readIds( DAOUtil daoUtil, int nLimit )
+    {
+        int [ ] arrayIdFormResponse = new int [ nLimit];
+        int nCount = 0;
+        while ( daoUtil.next( ) && nCount < nLimit )
+        {
+            arrayIdFormResponse [nCount++] = daoUtil.getInt( 1 );
+        }
+        return ( nCount == nLimit ) ? arrayIdFormResponse : Arrays.copyOf( arrayIdFormResponse, nCount );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Integer> selectIdFormResponseUpdatedSince( Timestamp timestamp, Plugin plugin )
+    {
+        List<Integer> listIdFormResponse = new ArrayList<>( );
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_UPDATED_SINCE, plugin ) )
+        {
+            daoUtil.setTimestamp( 1, timestamp );
+            daoUtil.executeQuery( );
+
+            while ( daoUtil.next( ) )
+            {
+                listIdFormResponse.add( daoUtil.getInt( 1 ) );
+            }
+        }
+        return listIdFormResponse;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Integer> selectIdResourceWithStateChangedSince( Timestamp timestamp, String strResourceType, Plugin plugin )
+    {
+        List<Integer> listIdResource = new ArrayList<>( );
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_STATE_CHANGED_SINCE, plugin ) )
+        {
+            daoUtil.setString( 1, strResourceType );
+            daoUtil.setTimestamp( 2, timestamp );
+            daoUtil.executeQuery( );
+
+            while ( daoUtil.next( ) )
+            {
+                listIdResource.add( daoUtil.getInt( 1 ) );
+            }
+        }
+        return listIdResource;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.business;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.portal.service.plugin.PluginService;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+
+/**
+ * This class provides instances management methods for the read-only queries on the form responses needed by the indexer
+ */
+public final class FormResponseIndexHome
+{
+    private static final String PLUGIN_FORMS_NAME = "forms";
+    private static final String PLUGIN_WORKFLOW_NAME = "workflow";
+
+    // Static variable pointed at the DAO instance
+    private static IFormResponseIndexDAO _dao = SpringContextService.getBean( "forms-solr.formResponseIndexDAO" );
+
+    /**
+     * Private constructor - this class need not be instantiated
+     */
+    private FormResponseIndexHome( )
+    {
+    }
+
+    /**
+     * Load a page of form response ids, in ascending order, starting after the given id
+     * 
+     * @param nLastId
+     *            the last id of the previous page, 0 for the first page
+     * @param nLimit
+     *            the maximum number of ids to load
+     * @return the ids of the page
+     */
+    public static int [ ] getIdFormResponseAfter( int nLastId, int nLimit )
+    {
+        return _dao.selectIdFormResponseAfter( nLastId, nLimit, getPluginForms( ) );
+    }
+
+    /**
+     * Load a page of the ids of the responses of a form, in ascending order, starting after the given id
+     * 
+     * @param nIdForm
+     *            the form id
+     * @param nLastId
+     *            the last id of the previous page, 0 for the first page
+     * @param nLimit
+     *            the maximum number of ids to load
+     * @return the ids of the page
+     */
+    public static int [ ] getIdFormResponseAfterByForm( int nIdForm, int nLastId, int nLimit )
+    {
+        return _dao.selectIdFormResponseAfterByForm( nIdForm, nLastId, nLimit, getPluginForms( ) );
+    }
+
+    /**
+     * Load a page of form response ids with their update dates and publication status, in ascending order of id, starting after the given id
+     * 
+     * @param nLastId
+     *            the last id of the previous page, 0 for the first page
+     * @param arrayIdFormResponse
+     *            receives the ids
+     * @param arrayUpdateMillis
+     *            receives the update dates, in milliseconds
+     * @param arrayPublished
+     *            receives true for the published form responses, false for the unpublished ones and the drafts
+     * @return the number of form responses of the page
+     */
+    public static int getUpdateDateAfter( int nLastId, int [ ] arrayIdFormResponse, long [ ] arrayUpdateMillis, boolean [ ] arrayPublished )
+    {
+        return _dao.selectUpdateDateAfter( nLastId, arrayIdFormResponse, arrayUpdateMillis, arrayPublished, getPluginForms( ) );
+    }
+
+    /**
+     * Load the greatest form response id
+     * 
+     * @return the greatest id, 0 if there is no form response
+     */
+    public static int getMaxIdFormResponse( )
+    {
+        return _dao.selectMaxIdFormResponse( getPluginForms( ) );
+    }
+
+    /**
+     * Load the ids of the form responses updated after the given date
+     * 
+     * @param timestamp
+     *            the date
+     * @return the ids of the form responses, ordered by id
+     */
+    public static List<Integer> getIdFormResponseUpdatedSince( Timestamp timestamp )
+    {
+        return _dao.selectIdFormResponseUpdatedSince( timestamp, getPluginForms( ) );
+    }
+
+    /**
+     * Load the ids of the resources of the given type whose workflow state changed after the given date
+     * 
+     * @param timestamp
+     *            the date
+     * @param strResourceType
+     *            the resource type
+     * @return the ids of the resources
+     */
+    public static List<Integer> getIdResourceWithStateChangedSince( Timestamp timestamp, String strResourceType )
+    {
+        Plugin pluginWorkflow = PluginService.getPlugin( PLUGIN_WORKFLOW_NAME );
+        if ( pluginWorkflow == null )
+        {
+            return new ArrayList<>( );
+        }
+        return _dao.selectIdResourceWithStateChangedSince( timestamp, strResourceType, pluginWorkflow );
+    }
+
+    /**
+     * @return the forms plugin, which owns the form responses tables
+     */
+    private static Plugin getPluginForms( )
+    {
+        return PluginService.getPlugin( PLUGIN_FORMS_NAME );
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.business;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+import fr.paris.lutece.portal.service.plugin.Plugin;
+
+/**
+ * IFormResponseIndexDAO Interface: the read-only queries on the form responses needed by the indexer
+ */
+public interface IFormResponseIndexDAO
+{
+    /**
+     * Load a page of form response ids, in ascending order, starting after the given id
+     * 
+     * @param nLastId
+     *            the last id of the previous page, 0 for the first page
+     * @param nLimit
+     *            the maximum number of ids to load
+     * @param plugin
+     *            the forms plugin
+     * @return the ids of the page
+     */
+    int [ ] selectIdFormResponseAfter( int nLastId, int nLimit, Plugin plugin );
+
+    /**
+     * Load a page of the ids of the responses of a form, in ascending order, starting after the given id
+     * 
+     * @param nIdForm
+     *            the form id
+     * @param nLastId
+     *            the last id of the previous page, 0 for the first page
+     * @param nLimit
+     *            the maximum number of ids to load
+     * @param plugin
+     *            the forms plugin
+     * @return the ids of the page
+     */
+    int [ ] selectIdFormResponseAfterByForm( int nIdForm, int nLastId, int nLimit, Plugin plugin );
+
+    /**
+     * Load a page of form response ids with their update dates and publication status, in ascending order of id, starting after the given id. The page is
+     * read into the given arrays, whose length is the maximum number of form responses to load.
+     * 
+     * @param nLastId
+     *            the last id of the previous page, 0 for the first page
+     * @param arrayIdFormResponse
+     *            receives the ids
+     * @param arrayUpdateMillis
+     *            receives the update dates, in milliseconds
+     * @param arrayPublished
+     *            receives true for the published form responses, false for the unpublished ones and the drafts
+     * @param plugin
+     *            the forms plugin
+     * @return the number of form responses of the page
+     */
+    int selectUpdateDateAfter( int nLastId, int [ ] arrayIdFormResponse, long [ ] arrayUpdateMillis, boolean [ ] arrayPublished, Plugin plugin );
+
+    /**
+     * Load the greatest form response id
+     * 
+     * @param plugin
+     *            the forms plugin
+     * @return the greatest id, 0 if there is no form response
+     */
+    int selectMaxIdFormResponse( Plugin plugin );
+
+    /**
+     * Load the ids of the form responses updated after the given date
+     * 
+     * @param timestamp
+     *            the date
+     * @param plugin
+     *            the forms plugin
+     * @return the ids of the form responses, ordered by id
+     */
+    List<Integer> selectIdFormResponseUpdatedSince( Timestamp timestamp, Plugin plugin );
+
+    /**
+     * Load the ids of the resources of the given type whose workflow state changed after the given date
+     * 
+     * @param timestamp
+     *            the date
+     * @param strResourceType
+     *            the resource type
+     * @param plugin
+     *            the workflow plugin
+     * @return the ids of the resources
+     */
+    List<Integer> selectIdResourceWithStateChangedSince( Timestamp timestamp, String strResourceType, Plugin plugin );
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.service;
+
+import java.util.concurrent.TimeUnit;
+
+import fr.paris.lutece.portal.service.util.AppLogService;
+
+/**
+ * Adapts the number of form responses of the batches to the latency observed on the database and on Solr. The size grows by a fixed step while the
+ * batches are processed well under the target latency and is halved as soon as one exceeds it. It is also capped so that a batch does not load more
+ * question responses than a maximum, whatever the number of questions of the forms. The size stays between a minimum and a maximum.
+ */
+public class AdaptiveBatchSizer
+{
+    private static final double GROW_THRESHOLD = 0.5;
+
+    private final int _nMinSize;
+    private final int _nMaxSize;
+    private final long _lTargetNanos;
+    private final int _nMaxFanOut;
+    private final int _nStep;
+    private int _nSize;
+
+    /**
+     * Constructor
+     *
+     * @param nInitialSize
+     *            the size of the first batch
+     * @param nMinSize
+     *            the minimum size
+     * @param nMaxSize
+     *            the maximum size
+     * @param lTargetMillis
+     *            the latency of a batch not to exceed, on the database or on Solr
+     * @param nMaxFanOut
+     *            the maximum number of question responses of a batch
+     */
+    public AdaptiveBatchSizer( int nInitialSize, int nMinSize, int nMaxSize, long lTargetMillis, int nMaxFanOut )
+    {
+        _nMinSize = Math.max( 1, nMinSize );
+        _nMaxSize = Math.max( _nMinSize, nMaxSize );
+        _lTargetNanos = TimeUnit.MILLISECONDS.toNanos( Math.max( 1, lTargetMillis ) );
+        _nMaxFanOut = Math.max( 1, nMaxFanOut );
+        _nStep = Math.max( 1, _nMinSize / 2 );
+        _nSize = clamp( nInitialSize );
+    }
+
+    /**
+     * Creates a sizer which keeps the same size
+     *
+     * @param nSize
+     *            the size
+     * @return the sizer
+     */
+    public static AdaptiveBatchSizer fixed( int nSize )
+    {
+        return new AdaptiveBatchSizer( nSize, nSize, nSize, Long.MAX_VALUE / 1000000L, Integer.MAX_VALUE );
+    }
+
+    /**
+     * @return the size of the next batch
+     */
+    public synchronized int getBatchSize( )
+    {
+        return _nSize;
+    }
+
+    /**
+     * @return the maximum size
+     */
+    public int getMaxSize( )
+    {
+        return _nMaxSize;
+    }
+
+    /**
+     * Records the processing of a batch and adapts the size of the next ones
+     *
+     * @param nBatchSize
+     *            the number of form responses of the batch
+     * @param lNanos
+     *            the time taken, on the database or on Solr
+     * @param nFanOut
+     *            the number of question responses of the batch, 0 if not known
+     */
+    public synchronized void record( int nBatchSize, long lNanos, int nFanOut )
+    {
+        int nSize = _nSize;
+        if ( lNanos > _lTargetNanos )
+        {
+            nSize = Math.min( nSize, nBatchSize ) / 2;
+        }
+        else
+            if ( lNanos < _lTargetNanos * GROW_THRESHOLD && nBatchSize >= nSize )
+            {
+                nSize += _nStep;
+            }
+        if ( nFanOut > 0 && nBatchSize > 0 )
+        {
+            // the mean number of question responses per form response of this batch
+            nSize = (int) Math.min( nSize, (long) _nMaxFanOut * nBatchSize / nFanOut );
+        }
+        nSize = clamp( nSize );
+
+        if ( nSize != _nSize )
+        {
+            AppLogService.debug( "[SolrFormsResponseIndexer] Batch size changed from {} to {}", _nSize, nSize );
+            _nSize = nSize;
+        }
+    }
+
+    /**
+     * Keeps a size between the minimum and the maximum
+     */
+    private int clamp( int nSize )
+    {
+        return Math.max( _nMinSize, Math.min( _nMaxSize, nSize ) );
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.service;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fr.paris.lutece.portal.service.util.AppLogService;
+
+/**
+ * Runs the batches of a bulk indexing concurrently, for their database loads to overlap. Each batch runs at most two queries at once, so the number of
+ * batches running is bounded by half the database connections given to the indexing.
+ * <p>
+ * The tasks run on virtual threads when the JDK provides them, else on fixed pools of platform threads. The batches and the queries they run in parallel
+ * use separate executors, so that a batch waiting for its queries never holds the thread one of them needs.
+ * </p>
+ */
+public class BatchLoadExecutor
+{
+    private static final String THREAD_NAME_PREFIX = "forms-solr-loader-";
+    private static final String METHOD_VIRTUAL_THREAD_EXECUTOR = "newVirtualThreadPerTaskExecutor";
+    private static final long CLOSE_TIMEOUT_MINUTES = 10;
+
+    private final int _nMaxBatches;
+    private final Semaphore _semaphoreBatches;
+    private final ExecutorService _executorBatches;
+    private final ExecutorService _executorQueries;
+    private final boolean _bVirtualThreads;
+
+    /**
+     * Constructor
+     *
+     * @param nConnections
+     *            the number of database connections the indexing may use at once
+     * @param bVirtualThreads
+     *            true to run the tasks on virtual threads if the JDK provides them
+     */
+    public BatchLoadExecutor( int nConnections, boolean bVirtualThreads )
+    {
+        _nMaxBatches = Math.max( 1, nConnections / 2 );
+        _semaphoreBatches = new Semaphore( _nMaxBatches );
+        ExecutorService executorBatches = bVirtualThreads ? newVirtualThreadExecutor( ) : null;
+        _bVirtualThreads = executorBatches != null;
+        if ( _bVirtualThreads )
+        {
+            _executorBatches = executorBatches;
+            _executorQueries = newVirtualThreadExecutor( );
+        }
+        else
+        {
+            AtomicInteger nThreadNumber = new AtomicInteger( );
+            ThreadFactory threadFactory = runnable -> {
+                Thread thread = new Thread( runnable, THREAD_NAME_PREFIX + nThreadNumber.incrementAndGet( ) );
+                thread.setDaemon( true );
+                return thread;
+            };
+            _executorBatches = Executors.newFixedThreadPool( _nMaxBatches, threadFactory );
+            _executorQueries = Executors.newFixedThreadPool( _nMaxBatches, threadFactory );
+        }
+    }
+
+    /**
+     * Runs a batch, waiting first while the maximum number of batches are running
+     *
+     * @param batch
+     *            the task of the batch
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    public void execute( Runnable batch ) throws InterruptedException
+    {
+        _semaphoreBatches.acquire( );
+        try
+        {
+            _executorBatches.execute( ( ) -> {
+                try
+                {
+                    batch.run( );
+                }
+                finally
+                {
+                    _semaphoreBatches.release( );
+                }
+            } );
+        }
+        catch( RuntimeException e )
+        {
+            _semaphoreBatches.release( );
+            throw e;
+        }
+    }
+
+    /**
+     * Waits until the running batches are over
+     *
+     * @return true if the batches are over, false if some are still running after the timeout: they are stopped by close, so their batches are lost
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    public boolean awaitBatches( ) throws InterruptedException
+    {
+        if ( !_semaphoreBatches.tryAcquire( _nMaxBatches, CLOSE_TIMEOUT_MINUTES, TimeUnit.MINUTES ) )
+        {
+            AppLogService.error( Utilities.PIPELINE_TIMEOUT_ERROR, CLOSE_TIMEOUT_MINUTES );
+            return false;
+        }
+        _semaphoreBatches.release( _nMaxBatches );
+        return true;
+    }
+
+    /**
+     * @return the executor of the queries a batch runs in parallel
+     */
+    public Executor getQueryExecutor( )
+    {
+        return _executorQueries;
+    }
+
+    /**
+     * @return true if the tasks run on virtual threads
+     */
+    public boolean isVirtualThreads( )
+    {
+        return _bVirtualThreads;
+    }
+
+    /**
+     * @return the maximum number of batches running at once
+     */
+    public int getMaxBatches( )
+    {
+        return _nMaxBatches;
+    }
+
+    /**
+     * Releases the threads, once the batches are over
+     */
+    public void close( )
+    {
+        _executorBatches.shutdownNow( );
+        _executorQueries.shutdownNow( );
+    }
+
+    /**
+     * Creates an executor running each task on a new virtual thread, looked up by reflection for the module to run on the JDKs without them
+     *
+     * @return the executor, null if the JDK does not provide virtual threads
+     */
+    private static ExecutorService newVirtualThreadExecutor( )
+    {
+        try
+        {
+            return (ExecutorService) Executors.class.getMethod( METHOD_VIRTUAL_THREAD_EXECUTOR ).invoke( null );
+        }
+        catch( ReflectiveOperationException | RuntimeException e )
+        {
+            return null;
+        }
+    }
+}
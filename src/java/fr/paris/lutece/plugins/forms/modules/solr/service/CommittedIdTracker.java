@@ -0,0 +1,338 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import fr.paris.lutece.portal.service.datastore.DatastoreService;
+
+/**
+ * Tracks the last form response id below which every batch is written to Solr, and persists it as the checkpoint of the run so that a stopped full
+ * indexing can resume from it. The batches may be committed out of order by the pipeline: the checkpoint only moves forward over a contiguous run of
+ * committed batches.
+ * <p>
+ * A pending batch is only tracked by its first id, last id and size, and the adjacent committed batches are merged into a single range, so that the
+ * memory used stays bounded by the number of batches not committed yet, even when a batch fails and the checkpoint stops moving.
+ * </p>
+ * <p>
+ * The checkpoint holds the id of the run, the last committed id and the numbers of form responses and batches committed since the start of the run. It is
+ * written as a single datastore value, so that its fields are always consistent with each other.
+ * </p>
+ */
+public class CommittedIdTracker
+{
+    private static final String SEPARATOR = ";";
+
+    private final TreeMap<Integer, PendingBatch> _mapPending = new TreeMap<>( );
+    private final Consumer<String> _checkpointWriter;
+    private final String _strRunId;
+    private int _nLastCommittedId;
+    private long _lCommittedFormResponses;
+    private long _lCommittedBatches;
+
+    /**
+     * Constructor
+     * 
+     * @param nLastCommittedId
+     *            the id from which the indexing starts
+     */
+    public CommittedIdTracker( int nLastCommittedId )
+    {
+        this( CommittedIdTracker::write, nLastCommittedId );
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param checkpointWriter
+     *            persists the checkpoint
+     * @param nLastCommittedId
+     *            the id from which the indexing starts
+     */
+    CommittedIdTracker( Consumer<String> checkpointWriter, int nLastCommittedId )
+    {
+        this( checkpointWriter, UUID.randomUUID( ).toString( ), nLastCommittedId, 0, 0 );
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param checkpointWriter
+     *            persists the checkpoint
+     * @param strRunId
+     *            the id of the run
+     * @param nLastCommittedId
+     *            the id from which the indexing starts
+     * @param lCommittedFormResponses
+     *            the number of form responses already committed by the run
+     * @param lCommittedBatches
+     *            the number of batches already committed by the run
+     */
+    private CommittedIdTracker( Consumer<String> checkpointWriter, String strRunId, int nLastCommittedId, long lCommittedFormResponses,
+            long lCommittedBatches )
+    {
+        _checkpointWriter = checkpointWriter;
+        _strRunId = strRunId;
+        _nLastCommittedId = nLastCommittedId;
+        _lCommittedFormResponses = lCommittedFormResponses;
+        _lCommittedBatches = lCommittedBatches;
+    }
+
+    /**
+     * Starts tracking a full indexing
+     * 
+     * @param bResume
+     *            true to continue the run of the persisted checkpoint, if any
+     * @return the tracker of a new run starting from the first form response, or of the stopped run continuing after its checkpoint
+     */
+    public static CommittedIdTracker start( boolean bResume )
+    {
+        CommittedIdTracker checkpoint = bResume ? load( ) : null;
+        if ( checkpoint == null || checkpoint._nLastCommittedId <= 0 )
+        {
+            checkpoint = new CommittedIdTracker( 0 );
+        }
+        checkpoint.save( );
+        return checkpoint;
+    }
+
+    /**
+     * Reads the persisted checkpoint
+     * 
+     * @return the checkpoint, null if none
+     */
+    public static CommittedIdTracker load( )
+    {
+        return parse( DatastoreService.getDataValue( Utilities.DATASTORE_KEY_LAST_COMMITTED_ID, null ), CommittedIdTracker::write );
+    }
+
+    /**
+     * Reads a checkpoint
+     * 
+     * @param strCheckpoint
+     *            the checkpoint, as persisted
+     * @param checkpointWriter
+     *            persists the checkpoint
+     * @return the checkpoint, null if none or malformed
+     */
+    static CommittedIdTracker parse( String strCheckpoint, Consumer<String> checkpointWriter )
+    {
+        if ( strCheckpoint == null || strCheckpoint.isEmpty( ) )
+        {
+            return null;
+        }
+        String [ ] fields = strCheckpoint.split( SEPARATOR );
+        try
+        {
+            if ( fields.length < 4 )
+            {
+                // checkpoint written before the run id and the counts were tracked
+                return new CommittedIdTracker( checkpointWriter, Integer.parseInt( fields [0] ) );
+            }
+            return new CommittedIdTracker( checkpointWriter, fields [0], Integer.parseInt( fields [1] ), Long.parseLong( fields [2] ), Long.parseLong( fields [3] ) );
+        }
+        catch( NumberFormatException e )
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Forgets the persisted checkpoint, once the indexing is complete
+     */
+    public static void reset( )
+    {
+        write( "" );
+    }
+
+    /**
+     * Writes the checkpoint to the datastore
+     * 
+     * @param strCheckpoint
+     *            the checkpoint
+     */
+    private static void write( String strCheckpoint )
+    {
+        DatastoreService.setDataValue( Utilities.DATASTORE_KEY_LAST_COMMITTED_ID, strCheckpoint );
+    }
+
+    /**
+     * Registers a batch, in the order of the ids
+     * 
+     * @param listIdFormResponse
+     *            the ids of the batch
+     */
+    public synchronized void register( List<Integer> listIdFormResponse )
+    {
+        if ( !listIdFormResponse.isEmpty( ) )
+        {
+            PendingBatch pendingBatch = new PendingBatch( listIdFormResponse.get( 0 ), listIdFormResponse.get( listIdFormResponse.size( ) - 1 ),
+                    listIdFormResponse.size( ) );
+            _mapPending.put( pendingBatch._nFirstId, pendingBatch );
+        }
+    }
+
+    /**
+     * Marks a batch as written to Solr and persists the checkpoint if the last committed id moved forward
+     * 
+     * @param listIdFormResponse
+     *            the ids of the batch
+     */
+    public synchronized void commit( List<Integer> listIdFormResponse )
+    {
+        if ( listIdFormResponse.isEmpty( ) )
+        {
+            return;
+        }
+        PendingBatch pendingBatch = _mapPending.get( listIdFormResponse.get( 0 ) );
+        if ( pendingBatch == null || pendingBatch._bCommitted )
+        {
+            return;
+        }
+        pendingBatch._bCommitted = true;
+
+        Map.Entry<Integer, PendingBatch> entryNext = _mapPending.higherEntry( pendingBatch._nFirstId );
+        if ( entryNext != null && entryNext.getValue( )._bCommitted )
+        {
+            pendingBatch.merge( _mapPending.remove( entryNext.getKey( ) ) );
+        }
+        Map.Entry<Integer, PendingBatch> entryPrevious = _mapPending.lowerEntry( pendingBatch._nFirstId );
+        if ( entryPrevious != null && entryPrevious.getValue( )._bCommitted )
+        {
+            entryPrevious.getValue( ).merge( _mapPending.remove( pendingBatch._nFirstId ) );
+        }
+
+        Map.Entry<Integer, PendingBatch> entryFirst = _mapPending.firstEntry( );
+        if ( entryFirst.getValue( )._bCommitted )
+        {
+            PendingBatch committed = _mapPending.pollFirstEntry( ).getValue( );
+            _nLastCommittedId = committed._nLastId;
+            _lCommittedFormResponses += committed._lFormResponses;
+            _lCommittedBatches += committed._lBatches;
+            save( );
+        }
+    }
+
+    /**
+     * Persists the checkpoint
+     */
+    private void save( )
+    {
+        _checkpointWriter.accept( String.join( SEPARATOR, _strRunId, String.valueOf( _nLastCommittedId ), String.valueOf( _lCommittedFormResponses ),
+                String.valueOf( _lCommittedBatches ) ) );
+    }
+
+    /**
+     * @return the id of the run
+     */
+    public String getRunId( )
+    {
+        return _strRunId;
+    }
+
+    /**
+     * @return the last form response id below which every batch is written
+     */
+    public synchronized int getLastCommittedId( )
+    {
+        return _nLastCommittedId;
+    }
+
+    /**
+     * @return the number of form responses committed since the start of the run
+     */
+    public synchronized long getCommittedFormResponses( )
+    {
+        return _lCommittedFormResponses;
+    }
+
+    /**
+     * @return the number of batches committed since the start of the run
+     */
+    public synchronized long getCommittedBatches( )
+    {
+        return _lCommittedBatches;
+    }
+
+    /**
+     * @return the checkpoint as a map
+     */
+    public synchronized Map<String, Object> toMap( )
+    {
+        Map<String, Object> map = new LinkedHashMap<>( );
+        map.put( "runId", _strRunId );
+        map.put( "lastCommittedId", _nLastCommittedId );
+        map.put( "committedFormResponses", _lCommittedFormResponses );
+        map.put( "committedBatches", _lCommittedBatches );
+        return map;
+    }
+
+    /**
+     * A registered batch, or a range of adjacent committed batches
+     */
+    private static final class PendingBatch
+    {
+        private final int _nFirstId;
+        private int _nLastId;
+        private long _lFormResponses;
+        private long _lBatches;
+        private boolean _bCommitted;
+
+        PendingBatch( int nFirstId, int nLastId, int nFormResponses )
+        {
+            _nFirstId = nFirstId;
+            _nLastId = nLastId;
+            _lFormResponses = nFormResponses;
+            _lBatches = 1;
+        }
+
+        /**
+         * Extends the range with the committed batches following it
+         *
+         * @param next
+         *            the range following this one
+         */
+        void merge( PendingBatch next )
+        {
+            _nLastId = next._nLastId;
+            _lFormResponses += next._lFormResponses;
+            _lBatches += next._lBatches;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.service;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+
+import fr.paris.lutece.plugins.genericattributes.business.Entry;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * Bounds the full text content of the documents: a maximum length per document, and per entry type either a maximum length per response or the skip of
+ * its responses. The entry types are given by the name of their bean, e.g. forms.entryTypeFile.
+ */
+public final class ContentLimits
+{
+    /** No limit */
+    public static final int UNLIMITED = -1;
+
+    private static final String SEPARATOR_RULES = ",";
+    private static final String SEPARATOR_LENGTH = ":";
+    private static final int SKIPPED = 0;
+
+    private final int _nMaxLength;
+    private final Map<String, Integer> _mapMaxResponseLength;
+
+    /**
+     * Constructor
+     *
+     * @param nMaxLength
+     *            the maximum length of the content of a document, UNLIMITED for none
+     * @param mapMaxResponseLength
+     *            the maximum length of a response by entry type bean name, 0 to skip the responses
+     */
+    public ContentLimits( int nMaxLength, Map<String, Integer> mapMaxResponseLength )
+    {
+        _nMaxLength = ( nMaxLength > 0 ) ? nMaxLength : UNLIMITED;
+        _mapMaxResponseLength = new HashMap<>( mapMaxResponseLength );
+    }
+
+    /**
+     * Gives limits bounding nothing
+     *
+     * @return the limits
+     */
+    public static ContentLimits unlimited( )
+    {
+        return new ContentLimits( UNLIMITED, Collections.emptyMap( ) );
+    }
+
+    /**
+     * Reads the limits from the properties of the plugin
+     *
+     * @return the limits
+     */
+    public static ContentLimits fromProperties( )
+    {
+        Map<String, Integer> mapMaxResponseLength = new HashMap<>( );
+        for ( String strRule : StringUtils.split( AppPropertiesService.getProperty( Utilities.PROPERTY_CONTENT_TRUNCATE, StringUtils.EMPTY ), SEPARATOR_RULES ) )
+        {
+            String strEntryType = StringUtils.substringBefore( strRule, SEPARATOR_LENGTH ).trim( );
+            int nMaxResponseLength = NumberUtils.toInt( StringUtils.substringAfter( strRule, SEPARATOR_LENGTH ).trim( ), SKIPPED );
+            if ( !strEntryType.isEmpty( ) && nMaxResponseLength > 0 )
+            {
+                mapMaxResponseLength.put( strEntryType, nMaxResponseLength );
+            }
+        }
+        for ( String strEntryType : StringUtils.split( AppPropertiesService.getProperty( Utilities.PROPERTY_CONTENT_SKIP, StringUtils.EMPTY ), SEPARATOR_RULES ) )
+        {
+            if ( !strEntryType.trim( ).isEmpty( ) )
+            {
+                mapMaxResponseLength.put( strEntryType.trim( ), SKIPPED );
+            }
+        }
+        return new ContentLimits( AppPropertiesService.getPropertyInt( Utilities.PROPERTY_CONTENT_MAX_LENGTH, UNLIMITED ), mapMaxResponseLength );
+    }
+
+    /**
+     * @return the maximum length of the content of a document, UNLIMITED for none
+     */
+    public int getMaxLength( )
+    {
+        return _nMaxLength;
+    }
+
+    /**
+     * Gives the maximum length of the content of a response
+     *
+     * @param entry
+     *            the entry of the response
+     * @return the maximum length, 0 if the responses of the entry type are not indexed, UNLIMITED for none
+     */
+    public int getMaxResponseLength( Entry entry )
+    {
+        if ( _mapMaxResponseLength.isEmpty( ) || entry == null || entry.getEntryType( ) == null )
+        {
+            return UNLIMITED;
+        }
+        return _mapMaxResponseLength.getOrDefault( entry.getEntryType( ).getBeanName( ), UNLIMITED );
+    }
+}
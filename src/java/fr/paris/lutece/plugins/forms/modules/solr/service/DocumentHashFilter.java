@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+import org.apache.commons.lang3.math.NumberUtils;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+
+import fr.paris.lutece.plugins.forms.modules.solr.service.metrics.FormsIndexerMetrics;
+import fr.paris.lutece.plugins.search.solr.indexer.SolrItem;
+import fr.paris.lutece.portal.service.search.SearchItem;
+
+/**
+ * Leaves out of a bulk indexing the documents unchanged since they were last written to Solr. A stable hash of the fields and the content of each document
+ * is indexed with it in a stored field, and compared to the hash read back from Solr before the batch is written: a document deleted or rewritten in Solr,
+ * by the module or not, no longer holds the hash and is written again.
+ */
+public class DocumentHashFilter
+{
+    /** The name of the hash field of the documents */
+    public static final String FIELD_HASH = "document_hash";
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final char SEPARATOR = '\u0000';
+
+    private final SolrClient _solrClient;
+    private final IntFunction<String> _uidProvider;
+    private final String _strIndexedFieldName;
+    private final LongAdder _documentsWritten = new LongAdder( );
+    private final LongAdder _documentsUnchanged = new LongAdder( );
+
+    /**
+     * Constructor
+     *
+     * @param solrClient
+     *            the client of Solr, read for the indexed hashes
+     * @param uidProvider
+     *            gives the indexed uid of the document of a form response
+     * @param strIndexedFieldName
+     *            the indexed name of the hash field, added to the documents as a not analysed dynamic field
+     */
+    public DocumentHashFilter( SolrClient solrClient, IntFunction<String> uidProvider, String strIndexedFieldName )
+    {
+        _solrClient = solrClient;
+        _uidProvider = uidProvider;
+        _strIndexedFieldName = strIndexedFieldName;
+    }
+
+    /**
+     * Gives a writer of the batches sending only their changed documents to another writer
+     *
+     * @param writer
+     *            the writer of the changed documents
+     * @return the filtering writer
+     */
+    public FormsIndexingPipeline.BatchWriter filtering( FormsIndexingPipeline.BatchWriter writer )
+    {
+        return ( listIdFormResponse, collectionSolrItem ) -> writer.write( listIdFormResponse, selectChanged( collectionSolrItem ) );
+    }
+
+    /**
+     * Selects the documents of a batch whose hash differs from the one indexed in Solr, and adds their new hash to them
+     *
+     * @param collectionSolrItem
+     *            the documents of the batch
+     * @return the changed documents
+     * @throws IOException
+     *             if the indexed hashes can not be read
+     */
+    public List<SolrItem> selectChanged( Collection<SolrItem> collectionSolrItem ) throws IOException
+    {
+        Map<String, String> mapHashByUid = new HashMap<>( );
+        for ( SolrItem solrItem : collectionSolrItem )
+        {
+            String strHash = Long.toHexString( hash( solrItem ) );
+            solrItem.addDynamicFieldNotAnalysed( FIELD_HASH, strHash );
+            int nIdFormResponse = NumberUtils.toInt( solrItem.getIdResource( ), -1 );
+            if ( nIdFormResponse >= 0 )
+            {
+                mapHashByUid.put( _uidProvider.apply( nIdFormResponse ), strHash );
+            }
+        }
+
+        Set<String> setUnchangedUid = new HashSet<>( );
+        if ( !mapHashByUid.isEmpty( ) )
+        {
+            // one real-time get gives the indexed hashes, including the ones of the documents not committed yet
+            ModifiableSolrParams params = new ModifiableSolrParams( );
+            params.set( CommonParams.FL, SearchItem.FIELD_UID, _strIndexedFieldName );
+            try
+            {
+                for ( SolrDocument document : _solrClient.getById( mapHashByUid.keySet( ), params ) )
+                {
+                    String strUid = String.valueOf( document.getFirstValue( SearchItem.FIELD_UID ) );
+                    Object indexedHash = document.getFirstValue( _strIndexedFieldName );
+                    if ( indexedHash != null && indexedHash.toString( ).equals( mapHashByUid.get( strUid ) ) )
+                    {
+                        setUnchangedUid.add( strUid );
+                    }
+                }
+            }
+            catch( SolrServerException e )
+            {
+                throw new IOException( e.getMessage( ), e );
+            }
+        }
+
+        List<SolrItem> listChanged = new ArrayList<>( collectionSolrItem.size( ) );
+        for ( SolrItem solrItem : collectionSolrItem )
+        {
+            int nIdFormResponse = NumberUtils.toInt( solrItem.getIdResource( ), -1 );
+            if ( nIdFormResponse < 0 || !setUnchangedUid.contains( _uidProvider.apply( nIdFormResponse ) ) )
+            {
+                listChanged.add( solrItem );
+            }
+        }
+        _documentsWritten.add( listChanged.size( ) );
+        _documentsUnchanged.add( (long) collectionSolrItem.size( ) - listChanged.size( ) );
+        FormsIndexerMetrics.getInstance( ).recordUnchangedDocuments( collectionSolrItem.size( ) - listChanged.size( ) );
+
+        return listChanged;
+    }
+
+    /**
+     * @return the number of changed documents sent to Solr
+     */
+    public long getDocumentsWritten( )
+    {
+        return _documentsWritten.sum( );
+    }
+
+    /**
+     * @return the number of unchanged documents left out
+     */
+    public long getDocumentsUnchanged( )
+    {
+        return _documentsUnchanged.sum( );
+    }
+
+    /**
+     * Computes a 64-bit FNV-1a hash of a document: its identity, its content and its dynamic fields in the order of their names, so that the hash does
+     * not depend on the order in which the fields were added
+     *
+     * @param solrItem
+     *            the document
+     * @return the hash
+     */
+    static long hash( SolrItem solrItem )
+    {
+        long lHash = FNV_OFFSET_BASIS;
+        lHash = hash( lHash, solrItem.getUid( ) );
+        lHash = hash( lHash, solrItem.getType( ) );
+        lHash = hash( lHash, solrItem.getSite( ) );
+        lHash = hash( lHash, solrItem.getRole( ) );
+        lHash = hash( lHash, solrItem.getTitle( ) );
+        lHash = hash( lHash, solrItem.getUrl( ) );
+        lHash = hash( lHash, solrItem.getDate( ) );
+        lHash = hash( lHash, solrItem.getContent( ) );
+        Map<String, Object> mapDynamicFields = solrItem.getDynamicFields( );
+        if ( mapDynamicFields != null )
+        {
+            for ( Map.Entry<String, Object> entry : new TreeMap<>( mapDynamicFields ).entrySet( ) )
+            {
+                lHash = hash( lHash, entry.getKey( ) );
+                lHash = hash( lHash, entry.getValue( ) );
+            }
+        }
+        return lHash;
+    }
+
+    /**
+     * Continues a hash with a value, followed by a separator
+     */
+    private static long hash( long lHash, Object value )
+    {
+        long lResult = lHash;
+        if ( value instanceof Collection )
+        {
+            for ( Object item : (Collection<?>) value )
+            {
+                lResult = hash( lResult, item );
+            }
+        }
+        else
+        {
+            CharSequence sequence = ( value instanceof Date ) ? String.valueOf( ( (Date) value ).getTime( ) ) : String.valueOf( value );
+            for ( int i = 0; i < sequence.length( ); i++ )
+            {
+                lResult = ( lResult ^ sequence.charAt( i ) ) * FNV_PRIME;
+            }
+        }
+        return ( lResult ^ SEPARATOR ) * FNV_PRIME;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.service;
+
+import java.util.Collection;
+
+import fr.paris.lutece.plugins.forms.modules.solr.util.IntMap;
+import fr.paris.lutece.plugins.genericattributes.business.Field;
+import fr.paris.lutece.plugins.genericattributes.service.entrytype.IEntryTypeService;
+
+/**
+ * Index of the entry fields of a batch, built once before its documents: the published flag of each entry, each field by id, and the role of the fields
+ * of the geolocation and cartography entries
+ */
+public class EntryIndex
+{
+    /** The field has no geographic role */
+    public static final int ROLE_NONE = 0;
+    /** The field holds the address of a geolocation */
+    public static final int ROLE_ADDRESS = 1;
+    /** The field holds the longitude of a geolocation */
+    public static final int ROLE_X = 2;
+    /** The field holds the latitude of a geolocation */
+    public static final int ROLE_Y = 3;
+    /** The field holds the GeoJSON of a cartography */
+    public static final int ROLE_GEOJSON = 4;
+    /** The field holds the layer id of a cartography */
+    public static final int ROLE_ID_LAYER = 5;
+
+    private final IntMap<Boolean> _mapPublishedByEntry;
+    private final IntMap<Field> _mapFieldById;
+    private final IntMap<Integer> _mapRoleByField;
+
+    /**
+     * Constructor
+     * 
+     * @param collectionFields
+     *            the fields of the entries
+     */
+    public EntryIndex( Collection<Field> collectionFields )
+    {
+        _mapFieldById = new IntMap<>( collectionFields.size( ) );
+        _mapPublishedByEntry = new IntMap<>( );
+        _mapRoleByField = new IntMap<>( );
+        for ( Field field : collectionFields )
+        {
+            _mapFieldById.put( field.getIdField( ), field );
+            int nRole = getRole( field.getValue( ) );
+            if ( nRole != ROLE_NONE )
+            {
+                _mapRoleByField.put( field.getIdField( ), nRole );
+            }
+            if ( field.getParentEntry( ) != null && IEntryTypeService.FIELD_PUBLISHED.equals( field.getCode( ) ) && "true".equals( field.getValue( ) ) )
+            {
+                _mapPublishedByEntry.put( field.getParentEntry( ).getIdEntry( ), Boolean.TRUE );
+            }
+        }
+    }
+
+    /**
+     * Tells whether the responses to an entry are published
+     * 
+     * @param nIdEntry
+     *            the entry id
+     * @return true if the entry has a published field set to true
+     */
+    public boolean isPublished( int nIdEntry )
+    {
+        return _mapPublishedByEntry.containsKey( nIdEntry );
+    }
+
+    /**
+     * Returns a field by its id
+     * 
+     * @param nIdField
+     *            the field id
+     * @return the field, or null if it is not indexed
+     */
+    public Field getField( int nIdField )
+    {
+        return _mapFieldById.get( nIdField );
+    }
+
+    /**
+     * Returns the geographic role of a field
+     * 
+     * @param nIdField
+     *            the field id
+     * @return the role, ROLE_NONE if the field has none or is not indexed
+     */
+    public int getFieldRole( int nIdField )
+    {
+        Integer nRole = _mapRoleByField.get( nIdField );
+        return ( nRole != null ) ? nRole : ROLE_NONE;
+    }
+
+    /**
+     * Gives the geographic role of a field by its value, as the geolocation and cartography entry types set it
+     * 
+     * @param strValue
+     *            the value of the field
+     * @return the role
+     */
+    private static int getRole( String strValue )
+    {
+        if ( strValue == null )
+        {
+            return ROLE_NONE;
+        }
+        switch( strValue )
+        {
+            case IEntryTypeService.FIELD_ADDRESS:
+                return ROLE_ADDRESS;
+            case IEntryTypeService.FIELD_X:
+                return ROLE_X;
+            case IEntryTypeService.FIELD_Y:
+                return ROLE_Y;
+            case IEntryTypeService.FIELD_GEOJSON:
+                return ROLE_GEOJSON;
+            case IEntryTypeService.FIELD_ID_LAYER:
+                return ROLE_ID_LAYER;
+            default:
+                return ROLE_NONE;
+        }
+    }
+}
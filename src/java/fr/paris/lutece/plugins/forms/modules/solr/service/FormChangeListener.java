@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.service;
+
+import org.apache.commons.lang3.math.NumberUtils;
+
+import fr.paris.lutece.plugins.forms.business.Form;
+import fr.paris.lutece.portal.business.event.EventRessourceListener;
+import fr.paris.lutece.portal.business.event.ResourceEvent;
+
+/**
+ * Invalidates the cached metadata of the forms which are modified or deleted
+ */
+public class FormChangeListener implements EventRessourceListener
+{
+    private static final String LISTENER_NAME = "forms-solr.formChangeListener";
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName( )
+    {
+        return LISTENER_NAME;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addedResource( ResourceEvent event )
+    {
+        // Nothing to do: a new form is not cached yet
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deletedResource( ResourceEvent event )
+    {
+        invalidate( event );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updatedResource( ResourceEvent event )
+    {
+        invalidate( event );
+    }
+
+    /**
+     * Invalidates the metadata of the form of the event
+     * 
+     * @param event
+     *            the event
+     */
+    private static void invalidate( ResourceEvent event )
+    {
+        if ( Form.RESOURCE_TYPE.equals( event.getTypeResource( ) ) )
+        {
+            int nIdForm = NumberUtils.toInt( event.getIdResource( ), -1 );
+            if ( nIdForm > 0 )
+            {
+                FormsMetadataCache.getInstance( ).invalidateForm( nIdForm );
+            }
+            else
+            {
+                FormsMetadataCache.getInstance( ).invalidateAll( );
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.service;
+
+import java.util.List;
+import java.util.Map;
+
+import fr.paris.lutece.plugins.forms.business.Form;
+import fr.paris.lutece.plugins.forms.business.FormQuestionResponse;
+import fr.paris.lutece.plugins.forms.business.FormResponse;
+import fr.paris.lutece.plugins.forms.business.Question;
+import fr.paris.lutece.plugins.forms.modules.solr.util.IntMap;
+import fr.paris.lutece.plugins.genericattributes.business.Field;
+import fr.paris.lutece.plugins.workflowcore.business.state.State;
+
+/**
+ * Holds everything loaded from the database to build the documents of a batch of form responses
+ */
+public class FormResponseBatch
+{
+    private final List<Integer> _listIdFormResponse;
+    private final List<FormResponse> _listFormResponse;
+    private final IntMap<State> _mapResourceState;
+    private final Map<Integer, Form> _mapForm;
+    private final Map<Integer, List<FormQuestionResponse>> _mapFormQuestionResponse;
+    private final Map<Integer, Question> _mapQuestions;
+    private final List<Field> _listFields;
+
+    /**
+     * Constructor
+     * 
+     * @param listIdFormResponse
+     *            the ids of the form responses of the batch, as requested
+     * @param listFormResponse
+     *            the published form responses
+     * @param mapResourceState
+     *            the resource state grouping by FormResponseId: Map<FormResponseId, State>
+     * @param mapForm
+     *            the form grouping by form Id: Map<FormId, Form>
+     * @param mapFormQuestionResponse
+     *            the Form Question Responses grouping by FormResponseId: Map<FormResponseId, List<FormQuestionResponse>>
+     * @param mapQuestions
+     *            the question grouping by question Id
+     * @param listFields
+     *            the fields of the entries of the batch
+     */
+    public FormResponseBatch( List<Integer> listIdFormResponse, List<FormResponse> listFormResponse, IntMap<State> mapResourceState,
+            Map<Integer, Form> mapForm, Map<Integer, List<FormQuestionResponse>> mapFormQuestionResponse, Map<Integer, Question> mapQuestions,
+            List<Field> listFields )
+    {
+        _listIdFormResponse = listIdFormResponse;
+        _listFormResponse = listFormResponse;
+        _mapResourceState = mapResourceState;
+        _mapForm = mapForm;
+        _mapFormQuestionResponse = mapFormQuestionResponse;
+        _mapQuestions = mapQuestions;
+        _listFields = listFields;
+    }
+
+    /**
+     * @return the ids of the form responses of the batch, as requested
+     */
+    public List<Integer> getListIdFormResponse( )
+    {
+        return _listIdFormResponse;
+    }
+
+    /**
+     * @return the published form responses
+     */
+    public List<FormResponse> getListFormResponse( )
+    {
+        return _listFormResponse;
+    }
+
+    /**
+     * @return the resource state grouping by FormResponseId
+     */
+    public IntMap<State> getMapResourceState( )
+    {
+        return _mapResourceState;
+    }
+
+    /**
+     * @return the form grouping by form Id
+     */
+    public Map<Integer, Form> getMapForm( )
+    {
+        return _mapForm;
+    }
+
+    /**
+     * @return the Form Question Responses grouping by FormResponseId
+     */
+    public Map<Integer, List<FormQuestionResponse>> getMapFormQuestionResponse( )
+    {
+        return _mapFormQuestionResponse;
+    }
+
+    /**
+     * @return the question grouping by question Id
+     */
+    public Map<Integer, Question> getMapQuestions( )
+    {
+        return _mapQuestions;
+    }
+
+    /**
+     * @return the fields of the entries of the batch
+     */
+    public List<Field> getListFields( )
+    {
+        return _listFields;
+    }
+}
@@ -0,0 +1,654 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+
+import fr.paris.lutece.plugins.forms.business.Form;
+import fr.paris.lutece.plugins.forms.business.FormQuestionResponse;
+import fr.paris.lutece.plugins.forms.business.FormResponse;
+import fr.paris.lutece.plugins.forms.business.Question;
+import fr.paris.lutece.plugins.forms.business.form.search.FormResponseSearchItem;
+import fr.paris.lutece.plugins.forms.modules.solr.service.mapper.EntryTypeHandler;
+import fr.paris.lutece.plugins.forms.modules.solr.service.mapper.EntryTypeHandlerRegistry;
+import fr.paris.lutece.plugins.forms.modules.solr.service.mapper.IResponseFieldMapper;
+import fr.paris.lutece.plugins.forms.modules.solr.service.metrics.FormsIndexerMetrics;
+import fr.paris.lutece.plugins.forms.modules.solr.util.FieldNameCache;
+import fr.paris.lutece.plugins.forms.modules.solr.util.GeoJsonBoundingBox;
+import fr.paris.lutece.plugins.forms.modules.solr.util.IntMap;
+import fr.paris.lutece.plugins.genericattributes.business.Entry;
+import fr.paris.lutece.plugins.genericattributes.business.Response;
+import fr.paris.lutece.plugins.genericattributes.service.entrytype.IEntryTypeService;
+import fr.paris.lutece.plugins.search.solr.indexer.SolrItem;
+import fr.paris.lutece.plugins.workflowcore.business.state.State;
+import fr.paris.lutece.portal.service.util.AppLogService;
+
+/**
+ * Builds the Solr documents of the form responses. It holds no database access, so that it can be measured and run on any thread.
+ */
+public class FormResponseDocumentBuilder
+{
+    private static final int CONTENT_INITIAL_CAPACITY = 1024;
+    private static final int CONTENT_MAX_RETAINED_CAPACITY = 1 << 20;
+    private static final String BOUNDING_BOX_SUFFIX = "_bbox";
+
+    // buffers reused by the documents built on the same thread
+    private static final ThreadLocal<Set<String>> FIELD_NAMES_USED = ThreadLocal.withInitial( HashSet::new );
+    private static final ThreadLocal<StringBuilder> CONTENT_BUILDER = ThreadLocal.withInitial( ( ) -> new StringBuilder( CONTENT_INITIAL_CAPACITY ) );
+
+    private final String _strWebAppName;
+    private final EntryTypeHandlerRegistry _handlerRegistry;
+    private final ContentLimits _contentLimits;
+    private final GeoShapeOptions _geoShapeOptions;
+
+    /**
+     * Constructor
+     *
+     * @param strWebAppName
+     *            the name of the webapp, prefix of the documents uid
+     * @param entryTypeResolver
+     *            resolves the entry type service of an entry
+     */
+    public FormResponseDocumentBuilder( String strWebAppName, Function<Entry, IEntryTypeService> entryTypeResolver )
+    {
+        this( strWebAppName, entryTypeResolver, Collections.emptyList( ) );
+    }
+
+    /**
+     * Constructor
+     *
+     * @param strWebAppName
+     *            the name of the webapp, prefix of the documents uid
+     * @param entryTypeResolver
+     *            resolves the entry type service of an entry
+     * @param listMappers
+     *            the additional field mappers, consulted before the mappers of this module
+     */
+    public FormResponseDocumentBuilder( String strWebAppName, Function<Entry, IEntryTypeService> entryTypeResolver, List<IResponseFieldMapper> listMappers )
+    {
+        this( strWebAppName, entryTypeResolver, listMappers, ContentLimits.unlimited( ) );
+    }
+
+    /**
+     * Constructor
+     *
+     * @param strWebAppName
+     *            the name of the webapp, prefix of the documents uid
+     * @param entryTypeResolver
+     *            resolves the entry type service of an entry
+     * @param listMappers
+     *            the additional field mappers, consulted before the mappers of this module
+     * @param contentLimits
+     *            the limits of the full text content of the documents
+     */
+    public FormResponseDocumentBuilder( String strWebAppName, Function<Entry, IEntryTypeService> entryTypeResolver, List<IResponseFieldMapper> listMappers,
+            ContentLimits contentLimits )
+    {
+        this( strWebAppName, entryTypeResolver, listMappers, contentLimits, GeoShapeOptions.none( ) );
+    }
+
+    /**
+     * Constructor
+     *
+     * @param strWebAppName
+     *            the name of the webapp, prefix of the documents uid
+     * @param entryTypeResolver
+     *            resolves the entry type service of an entry
+     * @param listMappers
+     *            the additional field mappers, consulted before the mappers of this module
+     * @param contentLimits
+     *            the limits of the full text content of the documents
+     * @param geoShapeOptions
+     *            the options of the indexing of the cartography shapes
+     */
+    public FormResponseDocumentBuilder( String strWebAppName, Function<Entry, IEntryTypeService> entryTypeResolver, List<IResponseFieldMapper> listMappers,
+            ContentLimits contentLimits, GeoShapeOptions geoShapeOptions )
+    {
+        _strWebAppName = strWebAppName;
+        _handlerRegistry = new EntryTypeHandlerRegistry( entryTypeResolver, listMappers );
+        _contentLimits = contentLimits;
+        _geoShapeOptions = geoShapeOptions;
+    }
+
+    /**
+     * Builds the uid of the document of a form response, without the webapp prefix
+     *
+     * @param strResourceId
+     *            the form response id
+     * @return the uid
+     */
+    public static String buildResourceUid( String strResourceId )
+    {
+        StringBuilder stringBuilder = new StringBuilder( strResourceId );
+        stringBuilder.append( "_" ).append( FormResponse.RESOURCE_TYPE );
+
+        return stringBuilder.toString( );
+    }
+
+    /**
+     * Builds the documents of a loaded batch
+     *
+     * @param batch
+     *            the loaded batch
+     * @return collection of SolrItem
+     */
+    public Collection<SolrItem> getSolrItems( FormResponseBatch batch )
+    {
+        return getSolrItems( batch.getListFormResponse( ), batch.getMapResourceState( ), batch.getMapForm( ), batch.getMapFormQuestionResponse( ),
+                batch.getMapQuestions( ), new EntryIndex( batch.getListFields( ) ) );
+    }
+
+    /**
+     * Builds a documents which will be used by solr during the indexing of the form responses
+     *
+     * @param listFormResponse
+     *            the form responses list
+     * @param mapResourceState
+     *            the resource state list grouping by FormResponseId: Map<FormResponseId, State>
+     * @param mapFom
+     *            the form list grouping by form Id: Map<FormId, Form>
+     * @param mapFormQuestionResponse
+     *            the Form Question Responses list grouping byFormResponseId: Map<FormResponseId, List<FormQuestionResponse>>
+     * @param mapQuestions
+     *            the question form map
+     * @param entryIndex
+     *            the index of the entry fields of the batch
+     * @return collection of SolrItem
+     */
+    Collection<SolrItem> getSolrItems( List<FormResponse> listFormResponse, IntMap<State> mapResourceState, Map<Integer, Form> mapFom,
+            Map<Integer, List<FormQuestionResponse>> mapFormQuestionResponse, Map<Integer, Question> mapQuestions, EntryIndex entryIndex )
+    {
+        Collection<SolrItem> solrItemList = new ArrayList<>( listFormResponse.size( ) );
+        for ( FormResponse formResponse : listFormResponse )
+        {
+            Form form = mapFom.get( formResponse.getFormId( ) );
+            if ( form == null )
+            {
+                // created after the forms of the run were loaded
+                form = FormsMetadataCache.getInstance( ).getForm( formResponse.getFormId( ) );
+                if ( form == null )
+                {
+                    AppLogService.warn( Utilities.DOC_FORM_MISSING_WARNING, formResponse.getId( ), formResponse.getFormId( ) );
+                    continue;
+                }
+            }
+            List<FormQuestionResponse> listFormQuestionResponse = mapFormQuestionResponse.getOrDefault( formResponse.getId( ), Collections.emptyList( ) );
+            List<FormQuestionResponse> formQuestionResponseList = new ArrayList<>( listFormQuestionResponse.size( ) );
+            for ( FormQuestionResponse fqr : listFormQuestionResponse )
+            {
+                fqr.setQuestion( mapQuestions.get( fqr.getQuestion( ).getId( ) ) );
+                if ( entryIndex.isPublished( fqr.getQuestion( ).getIdEntry( ) ) )
+                {
+                    formQuestionResponseList.add( fqr );
+                }
+            }
+            SolrItem solrItem = getSolrItem( formResponse, form, mapResourceState.get( formResponse.getId( ) ),
+                    formQuestionResponseList, entryIndex, formResponse.getRole( ), formResponse.getGuid( ) );
+            FormsIndexerMetrics.getInstance( ).recordDocument( formResponse.getFormId( ), StringUtils.length( solrItem.getContent( ) ) );
+            solrItemList.add( solrItem );
+        }
+        return solrItemList;
+    }
+
+    /**
+     * Builds a document which will be used by solr during the indexing of the form responses
+     *
+     * @param formResponse
+     *            the form reponse
+     * @param form
+     *            the form
+     * @param formResponseState
+     *            the form Response State
+     * @param formQuestionResponseList
+     *            the form Question Response List
+     * @param entryIndex
+     *            the index of the entry fields
+     * @param strRole
+     *            the role of the user
+     * @param strGuid
+     *            the guid of the user
+     * @return the SolrItem builded
+     */
+    public SolrItem getSolrItem( FormResponse formResponse, Form form, State formResponseState, List<FormQuestionResponse> formQuestionResponseList,
+            EntryIndex entryIndex, String strRole, String strGuid )
+    {
+        SolrItem solrItem = initSolrItem( formResponse, form, formResponseState, formQuestionResponseList );
+        // --- form response entry code / fields
+        Set<String> setFieldNameBuilderUsed = FIELD_NAMES_USED.get( );
+        setFieldNameBuilderUsed.clear( );
+        for ( FormQuestionResponse formQuestionResponse : formQuestionResponseList )
+        {
+            for ( Response response : formQuestionResponse.getEntryResponse( ) )
+            {
+                EntryTypeHandler handler = _handlerRegistry.getHandler( response.getEntry( ) );
+                if ( handler.getKind( ) == EntryTypeHandler.Kind.GEOLOCATION )
+                {
+                    addDynamicFieldGeoloc( formQuestionResponse.getEntryResponse( ), entryIndex, solrItem, formQuestionResponse.getQuestion( ).getCode( ),
+                            setFieldNameBuilderUsed );
+                    break;
+                }
+                if ( handler.getKind( ) == EntryTypeHandler.Kind.CARTOGRAPHY )
+                {
+                    addDynamicFieldCartography( formQuestionResponse.getEntryResponse( ), entryIndex, solrItem, formQuestionResponse.getQuestion( ).getCode( ),
+                            setFieldNameBuilderUsed, strRole, strGuid );
+                    break;
+                }
+                // add the Response Value to solrItem
+                addResponseValue( solrItem, formQuestionResponse.getQuestion( ).getCode( ), handler.getMapper( ), response, formResponse.getId( ),
+                        setFieldNameBuilderUsed, formQuestionResponse.getId( ) );
+            }
+        }
+        return solrItem;
+    }
+
+    /**
+     * initiate the build of an document which will be used by solr during the indexing of the form responses
+     *
+     * @param formResponse
+     *            the form reponse
+     * @param form
+     *            the form
+     * @param formResponseState
+     *            the form Response State
+     * @param formQuestionResponseList
+     *            the form Question Response List
+     * @return the SolrItem builded
+     */
+    SolrItem initSolrItem( FormResponse formResponse, Form form, State formResponseState, List<FormQuestionResponse> formQuestionResponseList )
+    {
+        // make a new, empty SolrItem
+        SolrItem solrItem = new SolrItem( );
+        Long lIdFormResponse = Long.valueOf( formResponse.getId( ) );
+        String nIdFormResponse = lIdFormResponse.toString( );
+        solrItem.setIdResource( nIdFormResponse );
+        solrItem.setSite( _strWebAppName );
+        solrItem.setRole( Utilities.SHORT_ROLE_FORMS );
+        solrItem.setType( FormResponse.RESOURCE_TYPE + "_" + form.getId( ) );
+        solrItem.setUid( buildResourceUid( nIdFormResponse ) );
+        solrItem.setTitle( Utilities.SHORT_ROLE_FORMS + " #" + nIdFormResponse );
+        solrItem.setDate( formResponse.getCreation( ) );
+        solrItem.setUrl( "jsp/site/Portal.jsp?page=formsResponse&id_response=" + nIdFormResponse );
+
+        // --- form response identifier
+        solrItem.addDynamicField( FormResponseSearchItem.FIELD_ID_FORM_RESPONSE, lIdFormResponse );
+
+        // --- field contents
+        solrItem.setContent( getContentToIndex( formQuestionResponseList ) );
+
+        // --- form title
+        solrItem.addDynamicFieldNotAnalysed( FormResponseSearchItem.FIELD_FORM_TITLE, form.getTitle( ) );
+
+        // --- id form
+        solrItem.addDynamicField( FormResponseSearchItem.FIELD_ID_FORM, Long.valueOf( form.getId( ) ) );
+
+        // --- form response date create
+        solrItem.addDynamicField( FormResponseSearchItem.FIELD_DATE_CREATION, formResponse.getCreation( ).getTime( ) );
+
+        // --- form response date closure
+        solrItem.addDynamicField( FormResponseSearchItem.FIELD_DATE_UPDATE, formResponse.getUpdate( ).getTime( ) );
+
+        // --- id form response workflow state
+        solrItem.addDynamicField( FormResponseSearchItem.FIELD_ID_WORKFLOW_STATE, Long.valueOf( formResponseState.getId( ) ) );
+
+        // --- form response workflow state title
+        solrItem.addDynamicFieldNotAnalysed( FormResponseSearchItem.FIELD_TITLE_WORKFLOW_STATE, formResponseState.getName( ) );
+
+        return solrItem;
+    }
+
+    /**
+     * Add Response Value from question reponse to solrItem object
+     *
+     * @param solrItem
+     *            the solrItem object
+     * @param codeQuestion
+     *            the Question code
+     * @param mapper
+     *            the field mapper of the entry
+     * @param response
+     *            the Response
+     * @param formResponseId
+     *            the form Response Id
+     * @param setFieldNameBuilderUsed
+     *            the field names already used in the document
+     * @param nIdFormQuestionResponse
+     *            the form question response id
+     */
+    void addResponseValue( SolrItem solrItem, String codeQuestion, IResponseFieldMapper mapper, Response response, int formResponseId,
+            Set<String> setFieldNameBuilderUsed, int nIdFormQuestionResponse )
+    {
+        String strFieldName = FieldNameCache.getEntryKey( codeQuestion, response.getIterationNumber( ) );
+        if ( setFieldNameBuilderUsed.add( strFieldName ) || mapper.isMultiValued( ) )
+        {
+            mapper.addResponseValue( solrItem, response, strFieldName, nIdFormQuestionResponse );
+        }
+        else
+        {
+            FormsIndexerMetrics.getInstance( ).recordFieldNameCollision( );
+            AppLogService.error( " FieldNameBuilder {}  already used for formResponse.getId( )  {}  codeQuestion  {} response.getIdResponse( ) {}",
+                    strFieldName, formResponseId, codeQuestion, response.getIdResponse( ) );
+        }
+    }
+
+    /**
+     * Gives the handler of an entry
+     *
+     * @param entry
+     *            the entry
+     * @return the handler
+     */
+    EntryTypeHandler getHandler( Entry entry )
+    {
+        return _handlerRegistry.getHandler( entry );
+    }
+
+    /**
+     * Forgets the handlers of the entries resolved by the previous indexing runs
+     */
+    void clearHandlers( )
+    {
+        _handlerRegistry.clear( );
+    }
+
+    /**
+     * Concatenates the export value of the responses, within the content limits: the responses of the skipped entry types are left out, the others are
+     * truncated to the maximum length of their entry type, and the concatenation stops at the maximum length of the document
+     *
+     * @param listFormQuestionResponse
+     *            the form question responses
+     * @return the builded content
+     */
+    String getContentToIndex( List<FormQuestionResponse> listFormQuestionResponse )
+    {
+        StringBuilder sb = CONTENT_BUILDER.get( );
+        sb.setLength( 0 );
+        int nMaxLength = _contentLimits.getMaxLength( );
+        boolean bTruncated = false;
+        for ( FormQuestionResponse questionResponse : listFormQuestionResponse )
+        {
+            for ( Response response : questionResponse.getEntryResponse( ) )
+            {
+                int nMaxResponseLength = _contentLimits.getMaxResponseLength( response.getEntry( ) );
+                if ( nMaxResponseLength == 0 )
+                {
+                    continue;
+                }
+                String responseString = _handlerRegistry.getHandler( response.getEntry( ) ).getEntryTypeService( )
+                        .getResponseValueForExport( response.getEntry( ), null, response, null );
+                if ( StringUtils.isEmpty( responseString ) )
+                {
+                    continue;
+                }
+
+                int nLength = responseString.length( );
+                if ( nMaxResponseLength != ContentLimits.UNLIMITED && nLength > nMaxResponseLength )
+                {
+                    nLength = nMaxResponseLength;
+                    bTruncated = true;
+                }
+                if ( nMaxLength != ContentLimits.UNLIMITED && sb.length( ) + nLength > nMaxLength )
+                {
+                    sb.append( responseString, 0, Math.max( 0, nMaxLength - sb.length( ) ) );
+                    return toContent( sb, true );
+                }
+                sb.append( responseString, 0, nLength );
+                sb.append( " " );
+            }
+        }
+
+        return toContent( sb, bTruncated );
+    }
+
+    /**
+     * Gives the content built in the buffer of the thread, and drops the buffer if a large content made it grow too much to be kept
+     *
+     * @param sb
+     *            the buffer of the thread
+     * @param bTruncated
+     *            true if some responses were truncated
+     * @return the content
+     */
+    private static String toContent( StringBuilder sb, boolean bTruncated )
+    {
+        if ( bTruncated )
+        {
+            FormsIndexerMetrics.getInstance( ).recordTruncatedDocument( );
+        }
+        String strContent = sb.toString( );
+        if ( sb.capacity( ) > CONTENT_MAX_RETAINED_CAPACITY )
+        {
+            CONTENT_BUILDER.remove( );
+        }
+        return strContent;
+    }
+
+    /**
+     * Adds the geolocation fields of a question, one per iteration. The responses are read in a single pass, each one filling the slot of its iteration
+     * according to the precomputed role of its field.
+     *
+     * @param listResponse
+     *            the list of Response
+     * @param entryIndex
+     *            the index of the entry fields
+     * @param solrItem
+     *            the solr item
+     * @param codeQuestion
+     *            the question code
+     * @param setFieldNameBuilderUsed
+     *            the field names already used in the document
+     */
+    private void addDynamicFieldGeoloc( List<Response> listResponse, EntryIndex entryIndex, SolrItem solrItem, String codeQuestion,
+            Set<String> setFieldNameBuilderUsed )
+    {
+        int nSize = listResponse.size( );
+        int [ ] arrayIteration = new int [ nSize];
+        String [ ] arrayAddress = new String [ nSize];
+        double [ ] arrayX = new double [ nSize];
+        double [ ] arrayY = new double [ nSize];
+        int nSlots = 0;
+        for ( Response response : listResponse )
+        {
+            int nSlot = getIterationSlot( arrayIteration, nSlots, response.getIterationNumber( ) );
+            if ( nSlot == nSlots )
+            {
+                arrayIteration [nSlots++] = response.getIterationNumber( );
+            }
+            switch( getFieldRole( response, entryIndex ) )
+            {
+                case EntryIndex.ROLE_ADDRESS:
+                    arrayAddress [nSlot] = response.getResponseValue( );
+                    break;
+                case EntryIndex.ROLE_X:
+                    arrayX [nSlot] = NumberUtils.toDouble( response.getResponseValue( ), 0 );
+                    break;
+                case EntryIndex.ROLE_Y:
+                    arrayY [nSlot] = NumberUtils.toDouble( response.getResponseValue( ), 0 );
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        for ( int nSlot = 0; nSlot < nSlots; nSlot++ )
+        {
+            String fieldNameBuilder = reserveFieldName( codeQuestion, arrayIteration [nSlot], setFieldNameBuilderUsed );
+            if ( fieldNameBuilder != null && arrayAddress [nSlot] != null && arrayX [nSlot] != 0 && arrayY [nSlot] != 0 )
+            {
+                solrItem.addDynamicFieldGeoloc( fieldNameBuilder, arrayAddress [nSlot], arrayX [nSlot], arrayY [nSlot], FormResponse.RESOURCE_TYPE );
+            }
+        }
+    }
+
+    /**
+     * Adds the cartography fields of a question, one per iteration. The responses are read in a single pass, each one filling the slot of its iteration
+     * according to the precomputed role of its field. Depending on the shape options, the bounding box of the shapes is indexed too, or instead of the
+     * large shapes.
+     *
+     * @param listResponse
+     *            the list of Response
+     * @param entryIndex
+     *            the index of the entry fields
+     * @param solrItem
+     *            the solr item
+     * @param codeQuestion
+     *            the question code
+     * @param setFieldNameBuilderUsed
+     *            the field names already used in the document
+     * @param strRole
+     *            the role of the user
+     * @param strGuid
+     *            the guid of the user
+     */
+    private void addDynamicFieldCartography( List<Response> listResponse, EntryIndex entryIndex, SolrItem solrItem, String codeQuestion,
+            Set<String> setFieldNameBuilderUsed, String strRole, String strGuid )
+    {
+        int nSize = listResponse.size( );
+        int [ ] arrayIteration = new int [ nSize];
+        String [ ] arrayGeoJson = new String [ nSize];
+        String [ ] arrayIdLayer = new String [ nSize];
+        int nSlots = 0;
+        for ( Response response : listResponse )
+        {
+            int nSlot = getIterationSlot( arrayIteration, nSlots, response.getIterationNumber( ) );
+            if ( nSlot == nSlots )
+            {
+                arrayIteration [nSlots++] = response.getIterationNumber( );
+            }
+            switch( getFieldRole( response, entryIndex ) )
+            {
+                case EntryIndex.ROLE_GEOJSON:
+                    arrayGeoJson [nSlot] = response.getResponseValue( );
+                    break;
+                case EntryIndex.ROLE_ID_LAYER:
+                    arrayIdLayer [nSlot] = response.getResponseValue( );
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        for ( int nSlot = 0; nSlot < nSlots; nSlot++ )
+        {
+            String fieldNameBuilder = reserveFieldName( codeQuestion, arrayIteration [nSlot], setFieldNameBuilderUsed );
+            String strGeoJson = arrayGeoJson [nSlot];
+            if ( fieldNameBuilder == null || strGeoJson == null || arrayIdLayer [nSlot] == null )
+            {
+                continue;
+            }
+            GeoJsonBoundingBox boundingBox = _geoShapeOptions.isComputingBoundingBox( ) ? GeoJsonBoundingBox.of( strGeoJson ) : null;
+            if ( boundingBox != null && _geoShapeOptions.isOverMaxLength( strGeoJson ) )
+            {
+                strGeoJson = boundingBox.toGeoJson( );
+            }
+            solrItem.addDynamicFieldGeoloc( fieldNameBuilder, strGeoJson, FormResponse.RESOURCE_TYPE );
+            if ( boundingBox != null && _geoShapeOptions.isBoundingBox( ) )
+            {
+                solrItem.addDynamicFieldGeoloc( FieldNameCache.getSuffixedName( fieldNameBuilder, BOUNDING_BOX_SUFFIX ), boundingBox.toGeoJson( ),
+                        FormResponse.RESOURCE_TYPE );
+            }
+            solrItem.addDynamicField( FormResponseSearchItem.FIELD_DATA_LAYER, arrayIdLayer [nSlot] );
+            solrItem.addDynamicField( FormResponseSearchItem.FIELD_ROLE_USER, strRole );
+            solrItem.addDynamicField( FormResponseSearchItem.FIELD_GUID, strGuid );
+        }
+    }
+
+    /**
+     * Reserves the name of the field of a question iteration in the document
+     *
+     * @param codeQuestion
+     *            the question code
+     * @param nIteration
+     *            the iteration number
+     * @param setFieldNameBuilderUsed
+     *            the field names already used in the document
+     * @return the field name, null if it is already used
+     */
+    private static String reserveFieldName( String codeQuestion, int nIteration, Set<String> setFieldNameBuilderUsed )
+    {
+        String fieldNameBuilder = FieldNameCache.getEntryKey( codeQuestion, nIteration );
+        if ( setFieldNameBuilderUsed.add( fieldNameBuilder ) )
+        {
+            return fieldNameBuilder;
+        }
+        FormsIndexerMetrics.getInstance( ).recordFieldNameCollision( );
+        AppLogService.error( " FieldNameBuilder {}  already used for  {}  codeQuestion  {} ", fieldNameBuilder, codeQuestion );
+        return null;
+    }
+
+    /**
+     * Gives the geographic role of the field of a response
+     *
+     * @param response
+     *            the response
+     * @param entryIndex
+     *            the index of the entry fields
+     * @return the role, EntryIndex.ROLE_NONE if the response has no field
+     */
+    private static int getFieldRole( Response response, EntryIndex entryIndex )
+    {
+        return ( response.getField( ) != null ) ? entryIndex.getFieldRole( response.getField( ).getIdField( ) ) : EntryIndex.ROLE_NONE;
+    }
+
+    /**
+     * Finds the slot of an iteration among the iterations met so far. A question has few iterations, so a linear search is cheaper than grouping the
+     * responses in a map.
+     *
+     * @param arrayIteration
+     *            the iteration numbers met so far, in order of appearance
+     * @param nSlots
+     *            the number of iterations met so far
+     * @param nIteration
+     *            the iteration number
+     * @return the slot of the iteration, nSlots if it is met for the first time
+     */
+    private static int getIterationSlot( int [ ] arrayIteration, int nSlots, int nIteration )
+    {
+        int nSlot = 0;
+        while ( nSlot < nSlots && arrayIteration [nSlot] != nIteration )
+        {
+            nSlot++;
+        }
+        return nSlot;
+    }
+}
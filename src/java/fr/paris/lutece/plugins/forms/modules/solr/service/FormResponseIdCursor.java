@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.IntSupplier;
+
+import fr.paris.lutece.plugins.forms.modules.solr.business.FormResponseIndexHome;
+
+/**
+ * Streams the form response ids in batches, reading them from the database by keyset-paginated pages ( id &gt; lastId ORDER BY id LIMIT n ) so that the
+ * memory used does not depend on the number of form responses
+ */
+public class FormResponseIdCursor implements Iterator<List<Integer>>
+{
+    private final PageReader _pageReader;
+    private final IntSupplier _batchSize;
+    private final int _nPageSize;
+    private int [ ] _arrayPage = new int [ 0];
+    private int _nPosition;
+    private int _nLastId;
+    private boolean _bExhausted;
+
+    /**
+     * Constructor
+     * 
+     * @param nStartAfterId
+     *            the id after which the cursor starts, 0 to start from the beginning
+     * @param nBatchSize
+     *            the number of ids of each batch
+     * @param nPageSize
+     *            the number of ids read from the database at once
+     */
+    public FormResponseIdCursor( int nStartAfterId, int nBatchSize, int nPageSize )
+    {
+        this( 0, nStartAfterId, nBatchSize, nPageSize );
+    }
+
+    /**
+     * Constructor of a cursor on the responses of one form
+     * 
+     * @param nIdForm
+     *            the form id, 0 for the responses of all the forms
+     * @param nStartAfterId
+     *            the id after which the cursor starts, 0 to start from the beginning
+     * @param nBatchSize
+     *            the number of ids of each batch
+     * @param nPageSize
+     *            the number of ids read from the database at once
+     */
+    public FormResponseIdCursor( int nIdForm, int nStartAfterId, int nBatchSize, int nPageSize )
+    {
+        this( nIdForm, nStartAfterId, ( ) -> nBatchSize, Math.max( nBatchSize, nPageSize ) );
+    }
+
+    /**
+     * Constructor of a cursor whose batch size can change between two batches
+     * 
+     * @param nIdForm
+     *            the form id, 0 for the responses of all the forms
+     * @param nStartAfterId
+     *            the id after which the cursor starts, 0 to start from the beginning
+     * @param batchSize
+     *            gives the number of ids of the next batch
+     * @param nPageSize
+     *            the number of ids read from the database at once, not less than the largest batch
+     */
+    public FormResponseIdCursor( int nIdForm, int nStartAfterId, IntSupplier batchSize, int nPageSize )
+    {
+        this( ( nIdForm > 0 ) ? ( nAfterId, nLimit ) -> FormResponseIndexHome.getIdFormResponseAfterByForm( nIdForm, nAfterId, nLimit )
+                : FormResponseIndexHome::getIdFormResponseAfter, nStartAfterId, batchSize, nPageSize );
+    }
+
+    /**
+     * Constructor of a cursor reading its pages from a given source
+     * 
+     * @param pageReader
+     *            reads the pages of ids
+     * @param nStartAfterId
+     *            the id after which the cursor starts, 0 to start from the beginning
+     * @param batchSize
+     *            gives the number of ids of the next batch
+     * @param nPageSize
+     *            the number of ids read at once, not less than the largest batch
+     */
+    FormResponseIdCursor( PageReader pageReader, int nStartAfterId, IntSupplier batchSize, int nPageSize )
+    {
+        _pageReader = pageReader;
+        _nLastId = nStartAfterId;
+        _batchSize = batchSize;
+        _nPageSize = Math.max( 1, nPageSize );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasNext( )
+    {
+        if ( _nPosition < _arrayPage.length )
+        {
+            return true;
+        }
+        if ( _bExhausted )
+        {
+            return false;
+        }
+
+        _arrayPage = _pageReader.read( _nLastId, _nPageSize );
+        _nPosition = 0;
+        _bExhausted = _arrayPage.length < _nPageSize;
+        if ( _arrayPage.length > 0 )
+        {
+            _nLastId = _arrayPage [_arrayPage.length - 1];
+        }
+
+        return _arrayPage.length > 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Integer> next( )
+    {
+        if ( !hasNext( ) )
+        {
+            throw new NoSuchElementException( );
+        }
+
+        int nEnd = Math.min( _arrayPage.length, _nPosition + Math.max( 1, _batchSize.getAsInt( ) ) );
+        List<Integer> listIdFormResponse = new ArrayList<>( nEnd - _nPosition );
+        for ( int i = _nPosition; i < nEnd; i++ )
+        {
+            listIdFormResponse.add( _arrayPage [i] );
+        }
+        _nPosition = nEnd;
+
+        return listIdFormResponse;
+    }
+
+    /**
+     * Reads a page of form response ids
+     */
+    @FunctionalInterface
+    interface PageReader
+    {
+        /**
+         * Reads the ids following an id, in ascending order
+         * 
+         * @param nAfterId
+         *            the id after which the page starts
+         * @param nLimit
+         *            the maximum number of ids
+         * @return the ids
+         */
+        int [ ] read( int nAfterId, int nLimit );
+    }
+}
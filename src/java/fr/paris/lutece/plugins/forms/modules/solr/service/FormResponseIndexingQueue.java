@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import fr.paris.lutece.plugins.forms.modules.solr.service.metrics.FormsIndexerMetrics;
+import fr.paris.lutece.portal.service.init.ShutdownService;
+import fr.paris.lutece.portal.service.util.AppLogService;
+
+/**
+ * Asynchronous indexing of single form responses. The ids are queued by the calling thread and indexed by a background thread through the batch path: an
+ * id queued several times before the flush is indexed once, and the flush happens when the coalescing window is over or as soon as a full batch is waiting.
+ * <p>
+ * The ids of a failed batch are queued again, up to a maximum number of attempts. The ids waiting when the webapp stops are indexed before the queue
+ * shuts down.
+ * </p>
+ */
+public class FormResponseIndexingQueue implements ShutdownService
+{
+    private static final String THREAD_NAME = "forms-solr-indexing-queue";
+    private static final String SERVICE_NAME = "Forms Solr indexing queue";
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_MIN_DELAY_MILLIS = 5000;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    private final Consumer<List<Integer>> _batchIndexer;
+    private final int _nBatchSize;
+    private final long _lWindowMillis;
+    private final ScheduledExecutorService _executor;
+    private final Set<Integer> _setPending = new LinkedHashSet<>( );
+    private final Map<Integer, Integer> _mapFailedAttempts = new HashMap<>( );
+    private boolean _bFlushScheduled;
+    private long _lFirstQueuedMillis;
+    private volatile long _lLastFlushLatencyMillis;
+    private volatile long _lLastFlushSize;
+
+    /**
+     * Constructor
+     *
+     * @param batchIndexer
+     *            indexes a batch of form response ids
+     * @param nBatchSize
+     *            the maximum number of ids indexed at once
+     * @param lWindowMillis
+     *            the time during which the queued ids are coalesced before being indexed
+     */
+    public FormResponseIndexingQueue( Consumer<List<Integer>> batchIndexer, int nBatchSize, long lWindowMillis )
+    {
+        _batchIndexer = batchIndexer;
+        _nBatchSize = Math.max( 1, nBatchSize );
+        _lWindowMillis = Math.max( 0, lWindowMillis );
+        _executor = Executors.newSingleThreadScheduledExecutor( runnable -> {
+            Thread thread = new Thread( runnable, THREAD_NAME );
+            thread.setDaemon( true );
+            return thread;
+        } );
+    }
+
+    /**
+     * Queues a form response for indexing
+     *
+     * @param nIdFormResponse
+     *            the form response id
+     */
+    public synchronized void add( int nIdFormResponse )
+    {
+        if ( _setPending.isEmpty( ) )
+        {
+            _lFirstQueuedMillis = System.currentTimeMillis( );
+        }
+        _setPending.add( nIdFormResponse );
+        FormsIndexerMetrics.getInstance( ).recordQueueDepth( _setPending.size( ) );
+
+        if ( _executor.isShutdown( ) )
+        {
+            // indexed by the last flush of the shutdown
+            return;
+        }
+        if ( _setPending.size( ) >= _nBatchSize )
+        {
+            _executor.execute( this::flush );
+            _bFlushScheduled = true;
+        }
+        else
+            if ( !_bFlushScheduled )
+            {
+                _executor.schedule( this::flush, _lWindowMillis, TimeUnit.MILLISECONDS );
+                _bFlushScheduled = true;
+            }
+    }
+
+    /**
+     * Indexes the queued form responses
+     */
+    private void flush( )
+    {
+        List<Integer> listIdFormResponse;
+        long lFirstQueuedMillis;
+        synchronized( this )
+        {
+            _bFlushScheduled = false;
+            if ( _setPending.isEmpty( ) )
+            {
+                return;
+            }
+            listIdFormResponse = new ArrayList<>( _setPending );
+            lFirstQueuedMillis = _lFirstQueuedMillis;
+            _setPending.clear( );
+            FormsIndexerMetrics.getInstance( ).recordQueueDepth( 0 );
+        }
+
+        for ( int i = 0; i < listIdFormResponse.size( ); i += _nBatchSize )
+        {
+            List<Integer> listBatch = listIdFormResponse.subList( i, Math.min( listIdFormResponse.size( ), i + _nBatchSize ) );
+            try
+            {
+                _batchIndexer.accept( listBatch );
+                forgetFailures( listBatch );
+            }
+            catch( RuntimeException e )
+            {
+                AppLogService.error( Utilities.BATCH_INDEXATION_ERROR, listBatch.get( 0 ), listBatch.get( listBatch.size( ) - 1 ), e );
+                FormsIndexerMetrics.getInstance( ).recordBatchError( );
+                retry( listBatch );
+            }
+        }
+
+        _lLastFlushSize = listIdFormResponse.size( );
+        _lLastFlushLatencyMillis = System.currentTimeMillis( ) - lFirstQueuedMillis;
+        FormsIndexerMetrics.getInstance( ).recordQueueFlush( listIdFormResponse.size( ), _lLastFlushLatencyMillis );
+        AppLogService.debug( Utilities.QUEUE_FLUSH_INFO, _lLastFlushSize, _lLastFlushLatencyMillis, getQueueDepth( ) );
+    }
+
+    /**
+     * Queues again the ids of a failed batch, except the ones which failed too many times
+     *
+     * @param listBatch
+     *            the ids of the batch
+     */
+    private synchronized void retry( List<Integer> listBatch )
+    {
+        List<Integer> listGivenUp = new ArrayList<>( );
+        for ( Integer nIdFormResponse : listBatch )
+        {
+            if ( _mapFailedAttempts.merge( nIdFormResponse, 1, Integer::sum ) < MAX_ATTEMPTS )
+            {
+                if ( _setPending.isEmpty( ) )
+                {
+                    _lFirstQueuedMillis = System.currentTimeMillis( );
+                }
+                _setPending.add( nIdFormResponse );
+            }
+            else
+            {
+                _mapFailedAttempts.remove( nIdFormResponse );
+                listGivenUp.add( nIdFormResponse );
+            }
+        }
+        if ( !listGivenUp.isEmpty( ) )
+        {
+            // repaired by the next incremental indexing or reconciliation
+            AppLogService.error( Utilities.QUEUE_GIVE_UP_ERROR, listGivenUp.size( ), MAX_ATTEMPTS, listGivenUp );
+        }
+        FormsIndexerMetrics.getInstance( ).recordQueueDepth( _setPending.size( ) );
+        if ( !_setPending.isEmpty( ) && !_bFlushScheduled && !_executor.isShutdown( ) )
+        {
+            _executor.schedule( this::flush, Math.max( _lWindowMillis, RETRY_MIN_DELAY_MILLIS ), TimeUnit.MILLISECONDS );
+            _bFlushScheduled = true;
+        }
+    }
+
+    /**
+     * Forgets the failed attempts of the ids of a batch indexed
+     *
+     * @param listBatch
+     *            the ids of the batch
+     */
+    private synchronized void forgetFailures( List<Integer> listBatch )
+    {
+        if ( !_mapFailedAttempts.isEmpty( ) )
+        {
+            _mapFailedAttempts.keySet( ).removeAll( listBatch );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName( )
+    {
+        return SERVICE_NAME;
+    }
+
+    /**
+     * Stops the background thread once the flush in progress is over, then indexes the ids still waiting on the calling thread
+     */
+    @Override
+    public void process( )
+    {
+        _executor.shutdown( );
+        try
+        {
+            if ( !_executor.awaitTermination( SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS ) )
+            {
+                _executor.shutdownNow( );
+            }
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread( ).interrupt( );
+            _executor.shutdownNow( );
+        }
+        flush( );
+        int nLost = getQueueDepth( );
+        if ( nLost > 0 )
+        {
+            AppLogService.error( Utilities.QUEUE_SHUTDOWN_ERROR, nLost );
+        }
+    }
+
+    /**
+     * Gives the number of form responses waiting to be indexed
+     *
+     * @return the queue depth
+     */
+    public synchronized int getQueueDepth( )
+    {
+        return _setPending.size( );
+    }
+
+    /**
+     * Gives the time between the queuing of the oldest form response of the last flush and the end of this flush
+     *
+     * @return the latency in milliseconds
+     */
+    public long getLastFlushLatencyMillis( )
+    {
+        return _lLastFlushLatencyMillis;
+    }
+
+    /**
+     * Gives the number of form responses indexed by the last flush
+     *
+     * @return the number of form responses
+     */
+    public long getLastFlushSize( )
+    {
+        return _lLastFlushSize;
+    }
+}
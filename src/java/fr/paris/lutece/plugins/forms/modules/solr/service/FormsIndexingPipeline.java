@@ -0,0 +1,402 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import fr.paris.lutece.plugins.forms.modules.solr.service.metrics.FormsIndexerMetrics;
+import fr.paris.lutece.plugins.search.solr.indexer.SolrIndexerService;
+import fr.paris.lutece.plugins.search.solr.indexer.SolrItem;
+import fr.paris.lutece.portal.service.util.AppLogService;
+
+/**
+ * Pipelined indexing of form responses: the calling thread loads the batches from the database, or hands their loads to a BatchLoadExecutor, a pool of
+ * workers builds the SolrItems and a single writer pushes them to Solr. The stages are linked by bounded queues so that a slow stage holds back the
+ * previous ones and the memory used stays flat.
+ */
+public class FormsIndexingPipeline
+{
+    private static final String THREAD_NAME_PREFIX = "forms-solr-indexer-";
+    private static final long SHUTDOWN_TIMEOUT_MINUTES = 10;
+    private static final long OFFER_TIMEOUT_SECONDS = 1;
+
+    private final int _nWorkers;
+    private final int _nQueueSize;
+
+    /**
+     * Writes the documents of a batch to Solr
+     */
+    @FunctionalInterface
+    public interface BatchWriter
+    {
+        /**
+         * Writes the documents of a batch
+         *
+         * @param listIdFormResponse
+         *            the ids of the batch
+         * @param collectionSolrItem
+         *            the documents
+         * @throws IOException
+         *             if the write fails
+         */
+        void write( List<Integer> listIdFormResponse, Collection<SolrItem> collectionSolrItem ) throws IOException;
+    }
+
+    /**
+     * Constructor
+     *
+     * @param nWorkers
+     *            the number of threads building the documents
+     * @param nQueueSize
+     *            the maximum number of batches waiting between two stages
+     */
+    public FormsIndexingPipeline( int nWorkers, int nQueueSize )
+    {
+        _nWorkers = Math.max( 1, nWorkers );
+        _nQueueSize = Math.max( 1, nQueueSize );
+    }
+
+    /**
+     * Runs the pipeline until all the batches are indexed
+     *
+     * @param itBatch
+     *            the batches of form response ids
+     * @param loader
+     *            loads a batch from the database
+     * @param builder
+     *            builds the documents of a loaded batch
+     * @param writer
+     *            writes the documents to Solr
+     * @return the errors, one per failed batch
+     */
+    public List<String> run( Iterator<List<Integer>> itBatch, Function<List<Integer>, FormResponseBatch> loader,
+            Function<FormResponseBatch, Collection<SolrItem>> builder, BatchWriter writer )
+    {
+        return run( itBatch, loader, builder, writer, null );
+    }
+
+    /**
+     * Runs the pipeline until all the batches are indexed
+     *
+     * @param itBatch
+     *            the batches of form response ids
+     * @param loader
+     *            loads a batch from the database
+     * @param builder
+     *            builds the documents of a loaded batch
+     * @param writer
+     *            writes the documents to Solr
+     * @param loadExecutor
+     *            runs the loads of the batches concurrently, null to load them one after the other on the calling thread
+     * @return the errors, one per failed batch
+     */
+    public List<String> run( Iterator<List<Integer>> itBatch, Function<List<Integer>, FormResponseBatch> loader,
+            Function<FormResponseBatch, Collection<SolrItem>> builder, BatchWriter writer, BatchLoadExecutor loadExecutor )
+    {
+        List<String> listErrors = Collections.synchronizedList( new ArrayList<>( ) );
+        BlockingQueue<PipelineItem<FormResponseBatch>> queueLoaded = new ArrayBlockingQueue<>( _nQueueSize );
+        BlockingQueue<PipelineItem<Collection<SolrItem>>> queueBuilt = new ArrayBlockingQueue<>( _nQueueSize );
+        ExecutorService executor = Executors.newFixedThreadPool( _nWorkers + 1, new PipelineThreadFactory( ) );
+        // set when a worker or the writer dies, for the loader not to wait for a stage which will never take its batches
+        AtomicBoolean bStageFailed = new AtomicBoolean( );
+
+        for ( int i = 0; i < _nWorkers; i++ )
+        {
+            executor.execute( ( ) -> build( queueLoaded, queueBuilt, builder, listErrors, bStageFailed ) );
+        }
+        executor.execute( ( ) -> write( queueBuilt, writer, listErrors, bStageFailed ) );
+
+        try
+        {
+            while ( itBatch.hasNext( ) && !Thread.currentThread( ).isInterrupted( ) && !bStageFailed.get( ) )
+            {
+                List<Integer> listIdFormResponse = itBatch.next( );
+                if ( loadExecutor == null )
+                {
+                    load( listIdFormResponse, loader, queueLoaded, listErrors, bStageFailed );
+                }
+                else
+                {
+                    loadExecutor.execute( ( ) -> {
+                        try
+                        {
+                            load( listIdFormResponse, loader, queueLoaded, listErrors, bStageFailed );
+                        }
+                        catch( InterruptedException e )
+                        {
+                            Thread.currentThread( ).interrupt( );
+                            addError( listErrors, listIdFormResponse, e );
+                        }
+                    } );
+                }
+            }
+            if ( loadExecutor != null && !loadExecutor.awaitBatches( ) )
+            {
+                listErrors.add( Utilities.PIPELINE_TIMEOUT_MESSAGE );
+            }
+            for ( int i = 0; i < _nWorkers; i++ )
+            {
+                offer( queueLoaded, PipelineItem.endOfStream( ), bStageFailed );
+            }
+            if ( !bStageFailed.get( ) )
+            {
+                executor.shutdown( );
+                if ( !executor.awaitTermination( SHUTDOWN_TIMEOUT_MINUTES, TimeUnit.MINUTES ) )
+                {
+                    // the batches still in the pipeline are dropped by the shutdown: the run fails, for its checkpoint to be kept
+                    AppLogService.error( Utilities.PIPELINE_TIMEOUT_ERROR, SHUTDOWN_TIMEOUT_MINUTES );
+                    listErrors.add( Utilities.PIPELINE_TIMEOUT_MESSAGE );
+                }
+            }
+            if ( bStageFailed.get( ) )
+            {
+                // the stages left are stopped by the shutdown: the run fails, for its checkpoint to be kept
+                AppLogService.error( Utilities.PIPELINE_STAGE_ERROR );
+                listErrors.add( Utilities.PIPELINE_STAGE_MESSAGE );
+            }
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread( ).interrupt( );
+            AppLogService.error( e.getMessage( ), e );
+            listErrors.add( SolrIndexerService.buildErrorMessage( e ) );
+        }
+        catch( RuntimeException e )
+        {
+            // the ids of the batches could not be read: the run stops
+            AppLogService.error( e.getMessage( ), e );
+            listErrors.add( SolrIndexerService.buildErrorMessage( e ) );
+        }
+        finally
+        {
+            executor.shutdownNow( );
+        }
+
+        return listErrors;
+    }
+
+    /**
+     * Loader stage: loads a batch and hands it to the workers
+     */
+    private static void load( List<Integer> listIdFormResponse, Function<List<Integer>, FormResponseBatch> loader,
+            BlockingQueue<PipelineItem<FormResponseBatch>> queueLoaded, List<String> listErrors, AtomicBoolean bStageFailed ) throws InterruptedException
+    {
+        try
+        {
+            if ( !offer( queueLoaded, new PipelineItem<>( listIdFormResponse, loader.apply( listIdFormResponse ) ), bStageFailed ) )
+            {
+                addError( listErrors, listIdFormResponse, new IllegalStateException( Utilities.PIPELINE_STAGE_MESSAGE ) );
+            }
+        }
+        catch( RuntimeException e )
+        {
+            addError( listErrors, listIdFormResponse, e );
+        }
+    }
+
+    /**
+     * Hands an item to the next stage, waiting while its queue is full unless a stage has failed
+     *
+     * @return true if the item is queued, false if a stage has failed
+     */
+    private static <T> boolean offer( BlockingQueue<T> queue, T item, AtomicBoolean bStageFailed ) throws InterruptedException
+    {
+        while ( !bStageFailed.get( ) )
+        {
+            if ( queue.offer( item, OFFER_TIMEOUT_SECONDS, TimeUnit.SECONDS ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Worker stage: builds the documents of the loaded batches until the end of the stream
+     */
+    private void build( BlockingQueue<PipelineItem<FormResponseBatch>> queueLoaded, BlockingQueue<PipelineItem<Collection<SolrItem>>> queueBuilt,
+            Function<FormResponseBatch, Collection<SolrItem>> builder, List<String> listErrors, AtomicBoolean bStageFailed )
+    {
+        boolean bEnded = false;
+        try
+        {
+            PipelineItem<FormResponseBatch> item = queueLoaded.take( );
+            while ( !item.isEndOfStream( ) )
+            {
+                try
+                {
+                    if ( !offer( queueBuilt, new PipelineItem<>( item.getListIdFormResponse( ), builder.apply( item.getValue( ) ) ), bStageFailed ) )
+                    {
+                        return;
+                    }
+                }
+                catch( RuntimeException e )
+                {
+                    addError( listErrors, item.getListIdFormResponse( ), e );
+                }
+                item = queueLoaded.take( );
+            }
+            bEnded = offer( queueBuilt, PipelineItem.endOfStream( ), bStageFailed );
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread( ).interrupt( );
+        }
+        finally
+        {
+            if ( !bEnded )
+            {
+                bStageFailed.set( true );
+            }
+        }
+    }
+
+    /**
+     * Writer stage: pushes the built documents to Solr until every worker has reached the end of the stream
+     */
+    private void write( BlockingQueue<PipelineItem<Collection<SolrItem>>> queueBuilt, BatchWriter writer, List<String> listErrors,
+            AtomicBoolean bStageFailed )
+    {
+        int nRunningWorkers = _nWorkers;
+        try
+        {
+            while ( nRunningWorkers > 0 )
+            {
+                PipelineItem<Collection<SolrItem>> item = queueBuilt.take( );
+                if ( item.isEndOfStream( ) )
+                {
+                    nRunningWorkers--;
+                    continue;
+                }
+                try
+                {
+                    writer.write( item.getListIdFormResponse( ), item.getValue( ) );
+                }
+                catch( IOException | RuntimeException e )
+                {
+                    addError( listErrors, item.getListIdFormResponse( ), e );
+                }
+            }
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread( ).interrupt( );
+        }
+        finally
+        {
+            if ( nRunningWorkers > 0 )
+            {
+                bStageFailed.set( true );
+            }
+        }
+    }
+
+    /**
+     * Logs and reports the failure of a batch
+     */
+    private static void addError( List<String> listErrors, List<Integer> listIdFormResponse, Exception e )
+    {
+        AppLogService.error( Utilities.BATCH_INDEXATION_ERROR, listIdFormResponse.get( 0 ), listIdFormResponse.get( listIdFormResponse.size( ) - 1 ), e );
+        FormsIndexerMetrics.getInstance( ).recordBatchError( );
+        listErrors.add( SolrIndexerService.buildErrorMessage( e ) );
+    }
+
+    /**
+     * A batch travelling through the pipeline
+     *
+     * @param <T>
+     *            the content of the batch at this stage
+     */
+    private static final class PipelineItem<T>
+    {
+        private final List<Integer> _listIdFormResponse;
+        private final T _value;
+
+        PipelineItem( List<Integer> listIdFormResponse, T value )
+        {
+            _listIdFormResponse = listIdFormResponse;
+            _value = value;
+        }
+
+        static <T> PipelineItem<T> endOfStream( )
+        {
+            return new PipelineItem<>( null, null );
+        }
+
+        boolean isEndOfStream( )
+        {
+            return _listIdFormResponse == null;
+        }
+
+        List<Integer> getListIdFormResponse( )
+        {
+            return _listIdFormResponse;
+        }
+
+        T getValue( )
+        {
+            return _value;
+        }
+    }
+
+    /**
+     * Names the threads of the pipeline
+     */
+    private static final class PipelineThreadFactory implements ThreadFactory
+    {
+        private final AtomicInteger _nThreadNumber = new AtomicInteger( );
+
+        @Override
+        public Thread newThread( Runnable runnable )
+        {
+            Thread thread = new Thread( runnable, THREAD_NAME_PREFIX + _nThreadNumber.incrementAndGet( ) );
+            thread.setDaemon( true );
+            return thread;
+        }
+    }
+}
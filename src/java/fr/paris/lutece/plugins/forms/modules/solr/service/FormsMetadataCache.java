@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import fr.paris.lutece.plugins.forms.business.Form;
+import fr.paris.lutece.plugins.forms.business.FormHome;
+import fr.paris.lutece.plugins.forms.business.Question;
+import fr.paris.lutece.plugins.forms.business.QuestionHome;
+import fr.paris.lutece.plugins.forms.modules.solr.util.FieldNameCache;
+import fr.paris.lutece.plugins.forms.modules.solr.util.LruCache;
+import fr.paris.lutece.plugins.genericattributes.business.Field;
+import fr.paris.lutece.plugins.genericattributes.business.FieldHome;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * Cache of the forms needed by the indexer, shared by the single document path and the batch path across the indexing calls. The cache is bounded and
+ * evicts the least recently used forms; its entries expire after a time to live and are invalidated when a form changes.
+ * <p>
+ * The questions and the fields of the entries hold the codes the field names are built from and the published flags: they are loaded for each indexing
+ * run and never cached across runs, since their changes do not fire any form event.
+ * </p>
+ */
+public final class FormsMetadataCache
+{
+    private static final FormsMetadataCache INSTANCE = new FormsMetadataCache( );
+
+    private final LruCache<Integer, Form> _cacheForms;
+
+    /**
+     * Private constructor - use getInstance
+     */
+    private FormsMetadataCache( )
+    {
+        int nSize = AppPropertiesService.getPropertyBoolean( Utilities.PROPERTY_METADATA_CACHE_ENABLE, true )
+                ? AppPropertiesService.getPropertyInt( Utilities.PROPERTY_METADATA_CACHE_SIZE, 10000 )
+                : 0;
+        long lTimeToLiveMillis = AppPropertiesService.getPropertyLong( Utilities.PROPERTY_METADATA_CACHE_TTL, 600L ) * 1000L;
+        _cacheForms = new LruCache<>( nSize, lTimeToLiveMillis );
+    }
+
+    /**
+     * @return the metadata cache
+     */
+    public static FormsMetadataCache getInstance( )
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Gives a form
+     * 
+     * @param nIdForm
+     *            the form id
+     * @return the form, or null if it does not exist
+     */
+    public Form getForm( int nIdForm )
+    {
+        Form form = _cacheForms.get( nIdForm );
+        if ( form == null )
+        {
+            form = FormHome.findByPrimaryKey( nIdForm );
+            if ( form != null )
+            {
+                _cacheForms.put( nIdForm, form );
+            }
+        }
+        return form;
+    }
+
+    /**
+     * Loads questions with one query
+     * 
+     * @param collectionIdQuestion
+     *            the ids of the questions
+     * @param mapQuestions
+     *            receives the questions, grouping by question id
+     * @return the number of database queries done
+     */
+    public int loadQuestions( Collection<Integer> collectionIdQuestion, Map<Integer, Question> mapQuestions )
+    {
+        if ( collectionIdQuestion.isEmpty( ) )
+        {
+            return 0;
+        }
+        for ( Question question : QuestionHome.findByPrimaryKeyList( new ArrayList<>( collectionIdQuestion ) ) )
+        {
+            mapQuestions.put( question.getId( ), question );
+        }
+        return 1;
+    }
+
+    /**
+     * Loads the fields of entries with one query
+     * 
+     * @param collectionIdEntry
+     *            the ids of the entries
+     * @param listFields
+     *            receives the fields
+     * @return the number of database queries done
+     */
+    public int loadFields( Collection<Integer> collectionIdEntry, List<Field> listFields )
+    {
+        if ( collectionIdEntry.isEmpty( ) )
+        {
+            return 0;
+        }
+        listFields.addAll( FieldHome.getFieldListByListIdEntry( new ArrayList<>( collectionIdEntry ) ) );
+        return 1;
+    }
+
+    /**
+     * Invalidates the metadata of a form
+     * 
+     * @param nIdForm
+     *            the form id
+     */
+    public void invalidateForm( int nIdForm )
+    {
+        _cacheForms.remove( nIdForm );
+    }
+
+    /**
+     * Invalidates all the metadata, and the field names built from them
+     */
+    public void invalidateAll( )
+    {
+        _cacheForms.clear( );
+        FieldNameCache.clear( );
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import fr.paris.lutece.portal.service.init.ShutdownService;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+import fr.paris.lutece.portal.service.util.AppLogService;
+
+/**
+ * Reindexes the responses of some forms on demand, in the background: one reindex runs at a time, and the result of the last one is kept for the back
+ * office. The background thread is stopped when the webapp stops.
+ */
+public final class FormsReindexService implements ShutdownService
+{
+    private static final String BEAN_INDEXER = "forms-solr.solrFormsIndexer";
+    private static final String THREAD_NAME = "forms-solr-reindex";
+    private static final String SERVICE_NAME = "Forms Solr reindex";
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+    private static final FormsReindexService INSTANCE = new FormsReindexService( );
+
+    private final ExecutorService _executor = Executors.newSingleThreadExecutor( runnable -> {
+        Thread thread = new Thread( runnable, THREAD_NAME );
+        thread.setDaemon( true );
+        return thread;
+    } );
+    private final AtomicBoolean _bRunning = new AtomicBoolean( );
+    private volatile List<Integer> _listLastIdForm = Collections.emptyList( );
+    private volatile List<String> _listLastErrors = Collections.emptyList( );
+
+    /**
+     * Private constructor - use getInstance
+     */
+    private FormsReindexService( )
+    {
+    }
+
+    /**
+     * @return the reindex service
+     */
+    public static FormsReindexService getInstance( )
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Starts the reindex of the responses of some forms, unless a reindex is running
+     *
+     * @param listIdForm
+     *            the ids of the forms
+     * @return true if the reindex is started, false if a reindex is already running or the webapp is stopping
+     */
+    public boolean start( List<Integer> listIdForm )
+    {
+        if ( _executor.isShutdown( ) || !_bRunning.compareAndSet( false, true ) )
+        {
+            return false;
+        }
+        SolrFormsIndexer indexer = SpringContextService.getBean( BEAN_INDEXER );
+        _executor.execute( ( ) -> reindex( indexer, listIdForm ) );
+        return true;
+    }
+
+    /**
+     * Reindexes the forms and keeps the result
+     *
+     * @param indexer
+     *            the indexer
+     * @param listIdForm
+     *            the ids of the forms
+     */
+    private void reindex( SolrFormsIndexer indexer, List<Integer> listIdForm )
+    {
+        List<String> listErrors;
+        try
+        {
+            listErrors = indexer.indexForms( listIdForm );
+            if ( !listErrors.isEmpty( ) )
+            {
+                AppLogService.error( Utilities.FORMS_REINDEX_ERROR, listIdForm, listErrors.size( ) );
+            }
+        }
+        catch( RuntimeException e )
+        {
+            AppLogService.error( e.getMessage( ), e );
+            listErrors = Collections.singletonList( e.getMessage( ) );
+        }
+        _listLastIdForm = Collections.unmodifiableList( listIdForm );
+        _listLastErrors = Collections.unmodifiableList( listErrors );
+        _bRunning.set( false );
+    }
+
+    /**
+     * @return true if a reindex is running
+     */
+    public boolean isRunning( )
+    {
+        return _bRunning.get( );
+    }
+
+    /**
+     * @return the ids of the forms of the last reindex completed, empty if none
+     */
+    public List<Integer> getLastIdForms( )
+    {
+        return _listLastIdForm;
+    }
+
+    /**
+     * @return the errors of the last reindex completed
+     */
+    public List<String> getLastErrors( )
+    {
+        return _listLastErrors;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName( )
+    {
+        return SERVICE_NAME;
+    }
+
+    /**
+     * Stops the background thread, waiting for the reindex in progress for a while
+     */
+    @Override
+    public void process( )
+    {
+        _executor.shutdown( );
+        try
+        {
+            if ( !_executor.awaitTermination( SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS ) )
+            {
+                _executor.shutdownNow( );
+            }
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread( ).interrupt( );
+            _executor.shutdownNow( );
+        }
+    }
+}
@@ -5,6 +5,9 @@ import java.util.List;
 
 import fr.paris.lutece.plugins.forms.business.FormHome;
 import fr.paris.lutece.plugins.forms.business.FormResponse;
+import fr.paris.lutece.plugins.forms.modules.solr.service.metrics.FormsIndexerMetrics;
+import fr.paris.lutece.portal.service.event.ResourceEventManager;
+import fr.paris.lutece.portal.service.init.ShutdownServiceManager;
 import fr.paris.lutece.portal.service.plugin.Plugin;
 import fr.paris.lutece.portal.service.plugin.PluginDefaultImplementation;
 import fr.paris.lutece.portal.service.plugin.PluginService;
@@ -31,5 +34,9 @@ public class FormsSolrPlugin extends PluginDefaultImplementation {
         FormHome.getFormsReferenceList().forEach(
         				item -> list.add( FormResponse.RESOURCE_TYPE+"_" + item.getCode( ) ));
         				SolrFormsIndexer.initListResourceName( list );
+        ResourceEventManager.register( new FormResponseDeletionListener( ) );
+        ResourceEventManager.register( new FormChangeListener( ) );
+        FormsIndexerMetrics.registerMBean( );
+        ShutdownServiceManager.registerShutdownService( FormsReindexService.getInstance( ) );
     }
 }
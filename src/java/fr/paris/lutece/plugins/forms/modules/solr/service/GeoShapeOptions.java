@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.service;
+
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * Options of the indexing of the cartography shapes: the bounding box of each shape indexed in an additional field, and the shapes above a length
+ * indexed as their bounding box, cheaper for the Solr spatial queries than large GeoJSON geometries.
+ */
+public final class GeoShapeOptions
+{
+    /** No limit of the length of the shapes */
+    public static final int UNLIMITED = -1;
+
+    private final boolean _bBoundingBox;
+    private final int _nMaxShapeLength;
+
+    /**
+     * Constructor
+     *
+     * @param bBoundingBox
+     *            true to index the bounding box of each shape in an additional field
+     * @param nMaxShapeLength
+     *            the maximum length of the GeoJSON of a shape, above which its bounding box is indexed instead, UNLIMITED for none
+     */
+    public GeoShapeOptions( boolean bBoundingBox, int nMaxShapeLength )
+    {
+        _bBoundingBox = bBoundingBox;
+        _nMaxShapeLength = ( nMaxShapeLength > 0 ) ? nMaxShapeLength : UNLIMITED;
+    }
+
+    /**
+     * Gives the options indexing the shapes as they are
+     *
+     * @return the options
+     */
+    public static GeoShapeOptions none( )
+    {
+        return new GeoShapeOptions( false, UNLIMITED );
+    }
+
+    /**
+     * Reads the options from the properties of the plugin
+     *
+     * @return the options
+     */
+    public static GeoShapeOptions fromProperties( )
+    {
+        return new GeoShapeOptions( AppPropertiesService.getPropertyBoolean( Utilities.PROPERTY_GEOJSON_BBOX_ENABLE, false ),
+                AppPropertiesService.getPropertyInt( Utilities.PROPERTY_GEOJSON_MAX_LENGTH, UNLIMITED ) );
+    }
+
+    /**
+     * @return true to index the bounding box of each shape in an additional field
+     */
+    public boolean isBoundingBox( )
+    {
+        return _bBoundingBox;
+    }
+
+    /**
+     * Tells whether a shape is to be indexed as its bounding box
+     *
+     * @param strGeoJson
+     *            the GeoJSON of the shape
+     * @return true if the shape is longer than the maximum length
+     */
+    public boolean isOverMaxLength( String strGeoJson )
+    {
+        return _nMaxShapeLength != UNLIMITED && strGeoJson.length( ) > _nMaxShapeLength;
+    }
+
+    /**
+     * @return true if the bounding box of the shapes is needed
+     */
+    public boolean isComputingBoundingBox( )
+    {
+        return _bBoundingBox || _nMaxShapeLength != UNLIMITED;
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.service;
+
+import java.io.IOException;
+import java.util.BitSet;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.client.solrj.util.ClientUtils;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.params.CursorMarkParams;
+
+import fr.paris.lutece.plugins.forms.business.FormResponse;
+import fr.paris.lutece.plugins.forms.modules.solr.business.FormResponseIndexHome;
+import fr.paris.lutece.portal.service.search.SearchItem;
+
+/**
+ * Finds the differences between the form responses of the database and the documents of Solr, without indexing all the form responses again. The ids and
+ * update dates of the documents are streamed from Solr with a cursor into an {@link IndexedStateSnapshot}, then the ids and update dates of the form
+ * responses are streamed from the database by keyset-paginated pages and checked against it. The differences are kept in bitmaps keyed by id. The
+ * unpublished form responses and the drafts are never reindexed: the documents they still have are deleted.
+ */
+public class IndexReconciler
+{
+    private final SolrClient _solrClient;
+    private final String _strFieldIdFormResponse;
+    private final String _strFieldUpdateDate;
+    private final int _nPageSize;
+    private final BitSet _toReindex = new BitSet( );
+    private final BitSet _toDelete = new BitSet( );
+    private long _lDocumentsRead;
+    private long _lFormResponsesRead;
+
+    /**
+     * Constructor
+     *
+     * @param solrClient
+     *            the client of Solr
+     * @param strFieldIdFormResponse
+     *            the indexed name of the form response id field
+     * @param strFieldUpdateDate
+     *            the indexed name of the update date field, in milliseconds
+     * @param nPageSize
+     *            the number of ids read per Solr or database page
+     */
+    public IndexReconciler( SolrClient solrClient, String strFieldIdFormResponse, String strFieldUpdateDate, int nPageSize )
+    {
+        _solrClient = solrClient;
+        _strFieldIdFormResponse = strFieldIdFormResponse;
+        _strFieldUpdateDate = strFieldUpdateDate;
+        _nPageSize = Math.max( 1, nPageSize );
+    }
+
+    /**
+     * Compares the documents of Solr with the form responses of the database
+     *
+     * @throws SolrServerException
+     *             the SolrServerException
+     * @throws IOException
+     *             the IOException
+     */
+    public void reconcile( ) throws SolrServerException, IOException
+    {
+        try ( IndexedStateSnapshot snapshot = new IndexedStateSnapshot( FormResponseIndexHome.getMaxIdFormResponse( ) ) )
+        {
+            readDocuments( snapshot );
+            checkFormResponses( snapshot );
+            // the documents left in the snapshot have no form response in the database
+            _toDelete.or( snapshot.getIndexed( ) );
+        }
+    }
+
+    /**
+     * Streams the ids and update dates of the documents of the form responses from Solr. The cursor is sorted on the unique key, as Solr requires.
+     *
+     * @param snapshot
+     *            receives the indexed form responses
+     * @throws SolrServerException
+     *             the SolrServerException
+     * @throws IOException
+     *             the IOException
+     */
+    private void readDocuments( IndexedStateSnapshot snapshot ) throws SolrServerException, IOException
+    {
+        SolrQuery query = new SolrQuery( "*:*" );
+        query.addFilterQuery( SearchItem.FIELD_TYPE + ":" + ClientUtils.escapeQueryChars( FormResponse.RESOURCE_TYPE + "_" ) + "*" );
+        query.setFields( _strFieldIdFormResponse, _strFieldUpdateDate );
+        query.setRows( _nPageSize );
+        query.setSort( SolrQuery.SortClause.asc( SearchItem.FIELD_UID ) );
+
+        String strCursorMark = CursorMarkParams.CURSOR_MARK_START;
+        while ( true )
+        {
+            query.set( CursorMarkParams.CURSOR_MARK_PARAM, strCursorMark );
+            QueryResponse response = _solrClient.query( query );
+            for ( SolrDocument document : response.getResults( ) )
+            {
+                Object objectId = document.getFirstValue( _strFieldIdFormResponse );
+                if ( !( objectId instanceof Number ) )
+                {
+                    continue;
+                }
+                int nIdFormResponse = ( (Number) objectId ).intValue( );
+                Object objectUpdate = document.getFirstValue( _strFieldUpdateDate );
+                long lUpdateMillis = ( objectUpdate instanceof Number ) ? ( (Number) objectUpdate ).longValue( ) : 0;
+                if ( nIdFormResponse > snapshot.getMaxId( ) )
+                {
+                    // created after the greatest id was read, or the id of a form response deleted since: checked when reindexed
+                    _toReindex.set( nIdFormResponse );
+                }
+                else
+                {
+                    snapshot.setIndexed( nIdFormResponse, lUpdateMillis );
+                }
+                _lDocumentsRead++;
+            }
+            String strNextCursorMark = response.getNextCursorMark( );
+            if ( strCursorMark.equals( strNextCursorMark ) )
+            {
+                return;
+            }
+            strCursorMark = strNextCursorMark;
+        }
+    }
+
+    /**
+     * Streams the ids, update dates and publication status of the form responses from the database, marking the published ones missing from Solr or
+     * updated since their document was written, and the unpublished ones still indexed
+     *
+     * @param snapshot
+     *            the indexed form responses
+     */
+    private void checkFormResponses( IndexedStateSnapshot snapshot )
+    {
+        int [ ] arrayIdFormResponse = new int [ _nPageSize];
+        long [ ] arrayUpdateMillis = new long [ _nPageSize];
+        boolean [ ] arrayPublished = new boolean [ _nPageSize];
+        int nLastId = 0;
+        int nCount;
+        do
+        {
+            nCount = FormResponseIndexHome.getUpdateDateAfter( nLastId, arrayIdFormResponse, arrayUpdateMillis, arrayPublished );
+            for ( int i = 0; i < nCount; i++ )
+            {
+                if ( !arrayPublished [i] )
+                {
+                    if ( snapshot.remove( arrayIdFormResponse [i] ) )
+                    {
+                        _toDelete.set( arrayIdFormResponse [i] );
+                    }
+                }
+                else
+                    if ( !snapshot.checkUpToDate( arrayIdFormResponse [i], arrayUpdateMillis [i] ) )
+                {
+                    _toReindex.set( arrayIdFormResponse [i] );
+                }
+            }
+            _lFormResponsesRead += nCount;
+            if ( nCount > 0 )
+            {
+                nLastId = arrayIdFormResponse [nCount - 1];
+            }
+        }
+        while ( nCount == _nPageSize );
+    }
+
+    /**
+     * @return the ids of the published form responses missing from Solr or updated since their document was written. They are reindexed, which removes
+     *         the documents of the ones unpublished since they were read
+     */
+    public BitSet getToReindex( )
+    {
+        return _toReindex;
+    }
+
+    /**
+     * @return the ids of the documents whose form response is no longer in the database, unpublished or a draft
+     */
+    public BitSet getToDelete( )
+    {
+        return _toDelete;
+    }
+
+    /**
+     * @return the number of documents read from Solr
+     */
+    public long getDocumentsRead( )
+    {
+        return _lDocumentsRead;
+    }
+
+    /**
+     * @return the number of form responses read from the database
+     */
+    public long getFormResponsesRead( )
+    {
+        return _lFormResponsesRead;
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/**
+ * Snapshot of the form responses indexed in Solr, keyed by form response id: a bitmap of the indexed ids, and the update dates of their documents in a
+ * memory-mapped file, out of the heap. The dates are kept as unsigned seconds, 4 bytes per id, so tens of millions of form responses take some hundreds
+ * of megabytes of file paged in and out by the system rather than of heap.
+ */
+public class IndexedStateSnapshot implements Closeable
+{
+    private static final String FILE_PREFIX = "forms-solr-indexed-";
+    private static final String FILE_SUFFIX = ".bin";
+
+    private final int _nMaxId;
+    private final BitSet _indexed;
+    private final Path _pathFile;
+    private final FileChannel _channel;
+    private final IntBuffer _bufferUpdateSeconds;
+
+    /**
+     * Constructor
+     *
+     * @param nMaxId
+     *            the greatest form response id the snapshot holds
+     * @throws IOException
+     *             if the mapped file can not be created
+     */
+    public IndexedStateSnapshot( int nMaxId ) throws IOException
+    {
+        _nMaxId = Math.max( 0, nMaxId );
+        _indexed = new BitSet( _nMaxId + 1 );
+        _pathFile = Files.createTempFile( FILE_PREFIX, FILE_SUFFIX );
+        FileChannel channel = null;
+        try
+        {
+            channel = FileChannel.open( _pathFile, StandardOpenOption.READ, StandardOpenOption.WRITE );
+            _bufferUpdateSeconds = channel.map( FileChannel.MapMode.READ_WRITE, 0, ( _nMaxId + 1L ) * Integer.BYTES ).asIntBuffer( );
+        }
+        catch( IOException | RuntimeException e )
+        {
+            // close is never called on a snapshot whose constructor failed
+            if ( channel != null )
+            {
+                closeQuietly( channel, e );
+            }
+            Files.deleteIfExists( _pathFile );
+            throw e;
+        }
+        _channel = channel;
+    }
+
+    /**
+     * Records an indexed form response
+     *
+     * @param nIdFormResponse
+     *            the id of the form response, at most the greatest id of the snapshot
+     * @param lUpdateMillis
+     *            the update date of its document, in milliseconds
+     */
+    public void setIndexed( int nIdFormResponse, long lUpdateMillis )
+    {
+        _indexed.set( nIdFormResponse );
+        _bufferUpdateSeconds.put( nIdFormResponse, toSeconds( lUpdateMillis ) );
+    }
+
+    /**
+     * Tells whether a form response is indexed and was not updated since its document was written, then forgets it: the ids left after all the form
+     * responses of the database are checked are the ones indexed but deleted from the database
+     *
+     * @param nIdFormResponse
+     *            the id of the form response
+     * @param lUpdateMillis
+     *            the update date of the form response in the database, in milliseconds
+     * @return true if the document is up to date
+     */
+    public boolean checkUpToDate( int nIdFormResponse, long lUpdateMillis )
+    {
+        if ( nIdFormResponse > _nMaxId || !_indexed.get( nIdFormResponse ) )
+        {
+            return false;
+        }
+        _indexed.clear( nIdFormResponse );
+        return Integer.compareUnsigned( toSeconds( lUpdateMillis ), _bufferUpdateSeconds.get( nIdFormResponse ) ) <= 0;
+    }
+
+    /**
+     * Forgets a form response which is not to be indexed
+     *
+     * @param nIdFormResponse
+     *            the id of the form response
+     * @return true if the form response has a document
+     */
+    public boolean remove( int nIdFormResponse )
+    {
+        if ( nIdFormResponse > _nMaxId || !_indexed.get( nIdFormResponse ) )
+        {
+            return false;
+        }
+        _indexed.clear( nIdFormResponse );
+        return true;
+    }
+
+    /**
+     * @return the greatest form response id the snapshot holds
+     */
+    public int getMaxId( )
+    {
+        return _nMaxId;
+    }
+
+    /**
+     * @return the indexed ids not checked yet
+     */
+    public BitSet getIndexed( )
+    {
+        return _indexed;
+    }
+
+    /**
+     * Releases the mapped file
+     *
+     * @throws IOException
+     *             the IOException
+     */
+    @Override
+    public void close( ) throws IOException
+    {
+        _channel.close( );
+        // the mapping is released with the buffer: the file may outlive the channel on some systems
+        if ( !_pathFile.toFile( ).delete( ) )
+        {
+            _pathFile.toFile( ).deleteOnExit( );
+        }
+    }
+
+    /**
+     * Closes the channel of a snapshot which failed to be created, keeping the failure of the close with the original one
+     */
+    private static void closeQuietly( FileChannel channel, Exception exception )
+    {
+        try
+        {
+            channel.close( );
+        }
+        catch( IOException e )
+        {
+            exception.addSuppressed( e );
+        }
+    }
+
+    /**
+     * Converts a date to seconds, kept unsigned in an int until 2106
+     */
+    private static int toSeconds( long lMillis )
+    {
+        return (int) ( Math.max( 0, lMillis ) / 1000 );
+    }
+}
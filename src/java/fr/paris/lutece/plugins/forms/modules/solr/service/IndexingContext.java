@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.StringUtils;
+
+import fr.paris.lutece.plugins.forms.business.Form;
+import fr.paris.lutece.plugins.forms.business.FormHome;
+import fr.paris.lutece.plugins.forms.business.Question;
+import fr.paris.lutece.plugins.workflowcore.business.state.State;
+import fr.paris.lutece.plugins.workflowcore.service.resource.IResourceWorkflowService;
+
+/**
+ * The reference data of an indexing run: forms, workflow states and questions. They are loaded once per run and shared by all the batches.
+ */
+public class IndexingContext
+{
+    private final List<State> _listState;
+    private final State _defaultState;
+    private final List<Form> _listForms;
+    private final Map<Integer, Form> _mapForm;
+    private final Map<Integer, Question> _mapQuestions = new ConcurrentHashMap<>( );
+    private final WorkflowStateResolver _stateResolver;
+
+    /**
+     * Constructor: loads the forms of the run
+     * 
+     * @param resourceWorkflowService
+     *            the resource workflow service, null if the workflow is not available
+     * @param listState
+     *            the list of all workflow states
+     */
+    public IndexingContext( IResourceWorkflowService resourceWorkflowService, List<State> listState )
+    {
+        _listState = listState;
+        _defaultState = new State( );
+        _defaultState.setId( -1 );
+        _defaultState.setName( StringUtils.EMPTY );
+        _listForms = FormHome.getFormList( );
+        _mapForm = _listForms.stream( ).collect( Collectors.toMap( Form::getId, Function.identity( ) ) );
+        _stateResolver = new WorkflowStateResolver( resourceWorkflowService, listState, _listForms, _defaultState );
+    }
+
+    /**
+     * @return the resolver of the workflow states of the form responses
+     */
+    public WorkflowStateResolver getStateResolver( )
+    {
+        return _stateResolver;
+    }
+
+    /**
+     * @return the list of all workflow states
+     */
+    public List<State> getListState( )
+    {
+        return _listState;
+    }
+
+    /**
+     * @return the state of the form responses without workflow
+     */
+    public State getDefaultState( )
+    {
+        return _defaultState;
+    }
+
+    /**
+     * @return the forms
+     */
+    public List<Form> getListForms( )
+    {
+        return _listForms;
+    }
+
+    /**
+     * @return the forms loaded at the start of the run, grouping by form Id: the forms created since are looked up in the {@link FormsMetadataCache}
+     */
+    public Map<Integer, Form> getMapForm( )
+    {
+        return _mapForm;
+    }
+
+    /**
+     * @return the questions loaded so far, grouping by question Id
+     */
+    public Map<Integer, Question> getMapQuestions( )
+    {
+        return _mapQuestions;
+    }
+
+    /**
+     * Loads the questions not loaded yet by a previous batch of the run
+     * 
+     * @param collectionIdQuestion
+     *            the ids of the questions needed by a batch
+     * @return the number of database queries done
+     */
+    public int loadQuestions( Collection<Integer> collectionIdQuestion )
+    {
+        List<Integer> listIdMissing = new ArrayList<>( );
+        for ( Integer nIdQuestion : collectionIdQuestion )
+        {
+            if ( !_mapQuestions.containsKey( nIdQuestion ) )
+            {
+                listIdMissing.add( nIdQuestion );
+            }
+        }
+        if ( listIdMissing.isEmpty( ) )
+        {
+            return 0;
+        }
+
+        return FormsMetadataCache.getInstance( ).loadQuestions( listIdMissing, _mapQuestions );
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.service;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.request.CollectionAdminRequest;
+import org.apache.solr.client.solrj.util.ClientUtils;
+
+import fr.paris.lutece.plugins.forms.business.FormResponse;
+import fr.paris.lutece.portal.service.search.SearchItem;
+
+/**
+ * Manages the collections of a blue/green reindex in SolrCloud: the search goes through an alias, a full reindex builds a new shadow collection and the
+ * alias is moved to it in one step once it is complete.
+ * <p>
+ * The shadow collection may be created with a bulk configset, whose commit settings are relaxed for the reindex (no soft commits, no new searchers). It is
+ * switched to the configset of the live collection and reloaded before the alias is moved.
+ * </p>
+ * <p>
+ * The shadow collection only holds the documents of the form responses: the alias must be dedicated to them.
+ * </p>
+ */
+public class ShadowCollectionManager
+{
+    private static final String COLLECTION_SUFFIX_FORMAT = "yyyyMMddHHmmssSSS";
+    private static final String PROPERTY_CONFIG_NAME = "collection.configName";
+    private static final String FILTER_FORM_RESPONSES = SearchItem.FIELD_TYPE + ":" + ClientUtils.escapeQueryChars( FormResponse.RESOURCE_TYPE + "_" ) + "*";
+
+    private final SolrClient _solrClient;
+    private final String _strAlias;
+    private final String _strConfigSet;
+    private final String _strBulkConfigSet;
+    private final int _nShards;
+    private final int _nReplicas;
+
+    /**
+     * Constructor
+     *
+     * @param solrClient
+     *            the client of the SolrCloud cluster
+     * @param strAlias
+     *            the alias searched
+     * @param strConfigSet
+     *            the configset of the live collection
+     * @param strBulkConfigSet
+     *            the configset used while the shadow collection is built, blank to use the configset of the live collection
+     * @param nShards
+     *            the number of shards of the shadow collection
+     * @param nReplicas
+     *            the number of replicas of each shard of the shadow collection
+     */
+    public ShadowCollectionManager( SolrClient solrClient, String strAlias, String strConfigSet, String strBulkConfigSet, int nShards, int nReplicas )
+    {
+        _solrClient = solrClient;
+        _strAlias = strAlias;
+        _strConfigSet = strConfigSet;
+        _strBulkConfigSet = StringUtils.defaultIfBlank( strBulkConfigSet, strConfigSet );
+        _nShards = Math.max( 1, nShards );
+        _nReplicas = Math.max( 1, nReplicas );
+    }
+
+    /**
+     * Creates a new, empty shadow collection
+     *
+     * @return the name of the collection
+     * @throws SolrServerException
+     *             the SolrServerException
+     * @throws IOException
+     *             the IOException
+     */
+    public String create( ) throws SolrServerException, IOException
+    {
+        String strCollection = _strAlias + "_" + new SimpleDateFormat( COLLECTION_SUFFIX_FORMAT ).format( new Date( ) );
+        CollectionAdminRequest.createCollection( strCollection, _strBulkConfigSet, _nShards, _nReplicas ).process( _solrClient );
+        return strCollection;
+    }
+
+    /**
+     * Makes the documents of a built shadow collection visible: switches it to the configset of the live collection if it was built with the bulk one, then
+     * commits
+     *
+     * @param strCollection
+     *            the shadow collection
+     * @throws SolrServerException
+     *             the SolrServerException
+     * @throws IOException
+     *             the IOException
+     */
+    public void finish( String strCollection ) throws SolrServerException, IOException
+    {
+        if ( !_strBulkConfigSet.equals( _strConfigSet ) )
+        {
+            Map<String, Object> mapProperties = Collections.singletonMap( PROPERTY_CONFIG_NAME, _strConfigSet );
+            CollectionAdminRequest.modifyCollection( strCollection, mapProperties ).process( _solrClient );
+            CollectionAdminRequest.reloadCollection( strCollection ).process( _solrClient );
+        }
+        _solrClient.commit( strCollection, true, true );
+    }
+
+    /**
+     * Counts the documents of the form responses of a collection
+     *
+     * @param strCollection
+     *            the collection or the alias
+     * @return the number of documents
+     * @throws SolrServerException
+     *             the SolrServerException
+     * @throws IOException
+     *             the IOException
+     */
+    public long count( String strCollection ) throws SolrServerException, IOException
+    {
+        return count( strCollection, FILTER_FORM_RESPONSES );
+    }
+
+    /**
+     * Counts the documents of a collection which are not form responses, written by the other indexers of the webapp
+     *
+     * @param strCollection
+     *            the collection or the alias
+     * @return the number of documents
+     * @throws SolrServerException
+     *             the SolrServerException
+     * @throws IOException
+     *             the IOException
+     */
+    public long countOtherDocuments( String strCollection ) throws SolrServerException, IOException
+    {
+        return count( strCollection, "-" + FILTER_FORM_RESPONSES );
+    }
+
+    /**
+     * Counts the documents of a collection matching a filter
+     */
+    private long count( String strCollection, String strFilterQuery ) throws SolrServerException, IOException
+    {
+        SolrQuery query = new SolrQuery( "*:*" );
+        query.addFilterQuery( strFilterQuery );
+        query.setRows( 0 );
+        return _solrClient.query( strCollection, query ).getResults( ).getNumFound( );
+    }
+
+    /**
+     * Returns the collection the alias points at
+     *
+     * @return the live collection, null if the alias does not exist yet
+     * @throws SolrServerException
+     *             the SolrServerException
+     * @throws IOException
+     *             the IOException
+     */
+    public String getLiveCollection( ) throws SolrServerException, IOException
+    {
+        return new CollectionAdminRequest.ListAliases( ).process( _solrClient ).getAliases( ).get( _strAlias );
+    }
+
+    /**
+     * Points the alias at a collection, in one step for the searches
+     *
+     * @param strCollection
+     *            the new live collection
+     * @throws SolrServerException
+     *             the SolrServerException
+     * @throws IOException
+     *             the IOException
+     */
+    public void swap( String strCollection ) throws SolrServerException, IOException
+    {
+        CollectionAdminRequest.createAlias( _strAlias, strCollection ).process( _solrClient );
+    }
+
+    /**
+     * Deletes a collection
+     *
+     * @param strCollection
+     *            the collection
+     * @throws SolrServerException
+     *             the SolrServerException
+     * @throws IOException
+     *             the IOException
+     */
+    public void delete( String strCollection ) throws SolrServerException, IOException
+    {
+        CollectionAdminRequest.deleteCollection( strCollection ).process( _solrClient );
+    }
+
+    /**
+     * @return the alias searched
+     */
+    public String getAlias( )
+    {
+        return _strAlias;
+    }
+}
@@ -0,0 +1,393 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.solr.client.solrj.SolrClient;
+
+import fr.paris.lutece.plugins.forms.modules.solr.service.metrics.FormsIndexerMetrics;
+import fr.paris.lutece.plugins.search.solr.indexer.SolrIndexerService;
+import fr.paris.lutece.plugins.search.solr.indexer.SolrItem;
+import fr.paris.lutece.plugins.search.solr.util.SolrConstants;
+import fr.paris.lutece.portal.service.util.AppLogService;
+
+/**
+ * Writes the documents to Solr by update requests sized independently of the indexing batches. The buffered documents are sent when their number, their
+ * estimated size or the time since the first of them reaches its threshold. A bounded number of update requests run concurrently: when they are all
+ * running, adding documents waits. The documents are made visible by commitWithin instead of explicit commits.
+ */
+public class SolrDocumentWriter
+{
+    private static final String THREAD_NAME_PREFIX = "forms-solr-writer-";
+    private static final int FIELD_OVERHEAD_BYTES = 32;
+    private static final long CLOSE_TIMEOUT_MINUTES = 10;
+
+    private final SolrClient _solrClient;
+    private final String _strCollection;
+    private final int _nMaxDocuments;
+    private final long _lMaxBytes;
+    private final long _lMaxDelayMillis;
+    private final int _nMaxInFlight;
+    private final int _nCommitWithinMillis;
+    private final String _strUidPrefix;
+    private final Semaphore _semaphoreInFlight;
+    private final ExecutorService _executorRequests;
+    private final ScheduledExecutorService _executorTimer;
+    private final List<String> _listErrors = new ArrayList<>( );
+
+    private List<SolrItem> _listBuffer = new ArrayList<>( );
+    private List<TicketPart> _listBufferTickets = new ArrayList<>( );
+    private long _lBufferBytes;
+    private long _lBufferStartMillis;
+
+    /**
+     * Constructor
+     *
+     * @param solrClient
+     *            the Solr client
+     * @param nMaxDocuments
+     *            the maximum number of documents of an update request
+     * @param lMaxBytes
+     *            the maximum estimated size of an update request
+     * @param lMaxDelayMillis
+     *            the maximum time a document waits in the buffer
+     * @param nMaxInFlight
+     *            the maximum number of update requests running at once
+     * @param nCommitWithinMillis
+     *            the commitWithin of the update requests
+     */
+    public SolrDocumentWriter( SolrClient solrClient, int nMaxDocuments, long lMaxBytes, long lMaxDelayMillis, int nMaxInFlight, int nCommitWithinMillis )
+    {
+        this( solrClient, null, nMaxDocuments, lMaxBytes, lMaxDelayMillis, nMaxInFlight, nCommitWithinMillis );
+    }
+
+    /**
+     * Constructor
+     *
+     * @param solrClient
+     *            the Solr client
+     * @param strCollection
+     *            the collection written, null for the default collection of the client
+     * @param nMaxDocuments
+     *            the maximum number of documents of an update request
+     * @param lMaxBytes
+     *            the maximum estimated size of an update request
+     * @param lMaxDelayMillis
+     *            the maximum time a document waits in the buffer
+     * @param nMaxInFlight
+     *            the maximum number of update requests running at once
+     * @param nCommitWithinMillis
+     *            the commitWithin of the update requests, -1 to leave the commits to the caller
+     */
+    public SolrDocumentWriter( SolrClient solrClient, String strCollection, int nMaxDocuments, long lMaxBytes, long lMaxDelayMillis, int nMaxInFlight,
+            int nCommitWithinMillis )
+    {
+        _solrClient = solrClient;
+        _strCollection = strCollection;
+        _nMaxDocuments = Math.max( 1, nMaxDocuments );
+        _lMaxBytes = Math.max( 1, lMaxBytes );
+        _lMaxDelayMillis = Math.max( 1, lMaxDelayMillis );
+        _nMaxInFlight = Math.max( 1, nMaxInFlight );
+        _nCommitWithinMillis = nCommitWithinMillis;
+        _strUidPrefix = SolrIndexerService.getWebAppName( ) + SolrConstants.CONSTANT_UNDERSCORE;
+        _semaphoreInFlight = new Semaphore( _nMaxInFlight );
+        AtomicInteger nThreadNumber = new AtomicInteger( );
+        _executorRequests = Executors.newFixedThreadPool( _nMaxInFlight, runnable -> {
+            Thread thread = new Thread( runnable, THREAD_NAME_PREFIX + nThreadNumber.incrementAndGet( ) );
+            thread.setDaemon( true );
+            return thread;
+        } );
+        _executorTimer = Executors.newSingleThreadScheduledExecutor( runnable -> {
+            Thread thread = new Thread( runnable, THREAD_NAME_PREFIX + "timer" );
+            thread.setDaemon( true );
+            return thread;
+        } );
+        _executorTimer.scheduleWithFixedDelay( this::flushIfDue, _lMaxDelayMillis, _lMaxDelayMillis, TimeUnit.MILLISECONDS );
+    }
+
+    /**
+     * Adds the documents of a batch
+     *
+     * @param collectionSolrItem
+     *            the documents
+     * @param onWritten
+     *            run once all the documents of the batch are written, never run if one of their requests fails
+     * @throws InterruptedException
+     *             if interrupted while waiting for a running request
+     */
+    public synchronized void add( Collection<SolrItem> collectionSolrItem, Runnable onWritten ) throws InterruptedException
+    {
+        BatchTicket ticket = new BatchTicket( collectionSolrItem.size( ), onWritten );
+        if ( collectionSolrItem.isEmpty( ) )
+        {
+            ticket.onDocumentsWritten( 0 );
+            return;
+        }
+
+        int nTicketDocuments = 0;
+        for ( SolrItem solrItem : collectionSolrItem )
+        {
+            // the uid of the documents is prefixed by the webapp name, as SolrIndexerService.write does
+            solrItem.setUid( _strUidPrefix + solrItem.getUid( ) );
+            if ( _listBuffer.isEmpty( ) )
+            {
+                _lBufferStartMillis = System.currentTimeMillis( );
+            }
+            _listBuffer.add( solrItem );
+            _lBufferBytes += estimateSize( solrItem );
+            nTicketDocuments++;
+
+            if ( _listBuffer.size( ) >= _nMaxDocuments || _lBufferBytes >= _lMaxBytes )
+            {
+                _listBufferTickets.add( ticket.share( nTicketDocuments ) );
+                nTicketDocuments = 0;
+                flush( );
+            }
+        }
+        if ( nTicketDocuments > 0 )
+        {
+            _listBufferTickets.add( ticket.share( nTicketDocuments ) );
+        }
+    }
+
+    /**
+     * Sends the buffered documents, waits for all the running requests and releases the threads
+     *
+     * @return the errors, one per failed request
+     */
+    public List<String> close( )
+    {
+        _executorTimer.shutdownNow( );
+        try
+        {
+            synchronized( this )
+            {
+                flush( );
+            }
+            if ( !_semaphoreInFlight.tryAcquire( _nMaxInFlight, CLOSE_TIMEOUT_MINUTES, TimeUnit.MINUTES ) )
+            {
+                addError( new IllegalStateException( "Solr update requests still running after " + CLOSE_TIMEOUT_MINUTES + " minutes" ) );
+            }
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread( ).interrupt( );
+            addError( e );
+        }
+        finally
+        {
+            _executorRequests.shutdownNow( );
+        }
+        synchronized( _listErrors )
+        {
+            return new ArrayList<>( _listErrors );
+        }
+    }
+
+    /**
+     * Sends the buffered documents if the oldest one waited too long
+     */
+    private synchronized void flushIfDue( )
+    {
+        if ( !_listBuffer.isEmpty( ) && System.currentTimeMillis( ) - _lBufferStartMillis >= _lMaxDelayMillis )
+        {
+            try
+            {
+                flush( );
+            }
+            catch( InterruptedException e )
+            {
+                Thread.currentThread( ).interrupt( );
+            }
+        }
+    }
+
+    /**
+     * Sends the buffered documents by one update request, waiting for a free slot if the maximum number of requests are running
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    private void flush( ) throws InterruptedException
+    {
+        if ( _listBuffer.isEmpty( ) )
+        {
+            return;
+        }
+        List<SolrItem> listRequest = _listBuffer;
+        List<TicketPart> listTickets = _listBufferTickets;
+        _listBuffer = new ArrayList<>( );
+        _listBufferTickets = new ArrayList<>( );
+        _lBufferBytes = 0;
+
+        _semaphoreInFlight.acquire( );
+        _executorRequests.execute( ( ) -> send( listRequest, listTickets ) );
+    }
+
+    /**
+     * Sends an update request
+     */
+    private void send( List<SolrItem> listRequest, List<TicketPart> listTickets )
+    {
+        try
+        {
+            long lStart = System.nanoTime( );
+            _solrClient.addBeans( _strCollection, listRequest, _nCommitWithinMillis );
+            FormsIndexerMetrics.getInstance( ).recordWrite( System.nanoTime( ) - lStart, listRequest.size( ) );
+            listTickets.forEach( TicketPart::written );
+        }
+        catch( Exception e )
+        {
+            AppLogService.error( Utilities.WRITER_REQUEST_ERROR, listRequest.size( ), e );
+            FormsIndexerMetrics.getInstance( ).recordBatchError( );
+            addError( e );
+        }
+        finally
+        {
+            _semaphoreInFlight.release( );
+        }
+    }
+
+    /**
+     * Records an error
+     */
+    private void addError( Exception e )
+    {
+        synchronized( _listErrors )
+        {
+            _listErrors.add( SolrIndexerService.buildErrorMessage( e ) );
+        }
+    }
+
+    /**
+     * Estimates the size of a document in an update request
+     *
+     * @param solrItem
+     *            the document
+     * @return the estimated size in bytes
+     */
+    static long estimateSize( SolrItem solrItem )
+    {
+        long lSize = (long) StringUtils.length( solrItem.getContent( ) ) + StringUtils.length( solrItem.getTitle( ) ) + StringUtils.length( solrItem.getUid( ) );
+        Map<String, Object> mapDynamicFields = solrItem.getDynamicFields( );
+        if ( mapDynamicFields != null )
+        {
+            for ( Map.Entry<String, Object> entry : mapDynamicFields.entrySet( ) )
+            {
+                lSize += FIELD_OVERHEAD_BYTES + entry.getKey( ).length( ) + estimateValueSize( entry.getValue( ) );
+            }
+        }
+        return lSize;
+    }
+
+    /**
+     * Estimates the size of a field value
+     */
+    private static long estimateValueSize( Object value )
+    {
+        if ( value instanceof CharSequence )
+        {
+            return ( (CharSequence) value ).length( );
+        }
+        if ( value instanceof Collection )
+        {
+            long lSize = 0;
+            for ( Object item : (Collection<?>) value )
+            {
+                lSize += FIELD_OVERHEAD_BYTES + estimateValueSize( item );
+            }
+            return lSize;
+        }
+        return Long.BYTES;
+    }
+
+    /**
+     * Tracks the documents of a batch spread over several update requests
+     */
+    private static final class BatchTicket
+    {
+        private final AtomicInteger _nRemaining;
+        private final Runnable _onWritten;
+
+        BatchTicket( int nDocuments, Runnable onWritten )
+        {
+            _nRemaining = new AtomicInteger( nDocuments );
+            _onWritten = onWritten;
+        }
+
+        TicketPart share( int nDocuments )
+        {
+            return new TicketPart( this, nDocuments );
+        }
+
+        void onDocumentsWritten( int nDocuments )
+        {
+            if ( _nRemaining.addAndGet( -nDocuments ) <= 0 )
+            {
+                _onWritten.run( );
+            }
+        }
+    }
+
+    /**
+     * The documents of a batch sent by one update request
+     */
+    private static final class TicketPart
+    {
+        private final BatchTicket _ticket;
+        private final int _nDocuments;
+
+        TicketPart( BatchTicket ticket, int nDocuments )
+        {
+            _ticket = ticket;
+            _nDocuments = nDocuments;
+        }
+
+        void written( )
+        {
+            _ticket.onDocumentsWritten( _nDocuments );
+        }
+    }
+}
@@ -34,22 +34,33 @@
 package fr.paris.lutece.plugins.forms.modules.solr.service;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.util.ClientUtils;
+import org.apache.solr.common.SolrException;
 import org.springframework.beans.factory.annotation.Autowired;
 import fr.paris.lutece.plugins.forms.business.Form;
 import fr.paris.lutece.plugins.forms.business.FormHome;
@@ -60,20 +71,14 @@ import fr.paris.lutece.plugins.forms.business.FormResponseHome;
 import fr.paris.lutece.plugins.forms.business.Question;
 import fr.paris.lutece.plugins.forms.business.QuestionHome;
 import fr.paris.lutece.plugins.forms.business.form.search.FormResponseSearchItem;
-import fr.paris.lutece.plugins.forms.service.entrytype.EntryTypeCartography;
-import fr.paris.lutece.plugins.forms.service.entrytype.EntryTypeCheckBox;
-import fr.paris.lutece.plugins.forms.service.entrytype.EntryTypeDate;
-import fr.paris.lutece.plugins.forms.service.entrytype.EntryTypeGeolocation;
-import fr.paris.lutece.plugins.forms.service.entrytype.EntryTypeNumbering;
-import fr.paris.lutece.plugins.forms.util.FormsResponseUtils;
-import fr.paris.lutece.plugins.forms.util.LuceneUtils;
-import fr.paris.lutece.plugins.genericattributes.business.FieldHome;
-import fr.paris.lutece.plugins.genericattributes.business.Response;
-import fr.paris.lutece.plugins.genericattributes.service.entrytype.AbstractEntryTypeFile;
-import fr.paris.lutece.plugins.genericattributes.service.entrytype.AbstractEntryTypeGalleryImage;
-import fr.paris.lutece.plugins.genericattributes.service.entrytype.AbstractEntryTypeImage;
+import fr.paris.lutece.plugins.forms.modules.solr.business.DeletedFormResponseHome;
+import fr.paris.lutece.plugins.forms.modules.solr.business.FormResponseIndexHome;
+import fr.paris.lutece.plugins.forms.modules.solr.service.mapper.EntryTypeHandler;
+import fr.paris.lutece.plugins.forms.modules.solr.service.mapper.IResponseFieldMapper;
+import fr.paris.lutece.plugins.forms.modules.solr.service.metrics.FormsIndexerMetrics;
+import fr.paris.lutece.plugins.forms.modules.solr.util.FieldNameCache;
+import fr.paris.lutece.plugins.forms.modules.solr.util.IntMap;
 import fr.paris.lutece.plugins.genericattributes.service.entrytype.EntryTypeServiceManager;
-import fr.paris.lutece.plugins.genericattributes.service.entrytype.IEntryTypeService;
 import fr.paris.lutece.plugins.search.solr.business.SolrServerService;
 import fr.paris.lutece.plugins.search.solr.business.field.Field;
 import fr.paris.lutece.plugins.search.solr.indexer.SolrIndexer;
@@ -85,7 +90,10 @@ import fr.paris.lutece.plugins.workflowcore.business.state.State;
 import fr.paris.lutece.plugins.workflowcore.business.state.StateFilter;
 import fr.paris.lutece.plugins.workflowcore.service.resource.IResourceWorkflowService;
 import fr.paris.lutece.plugins.workflowcore.service.state.IStateService;
+import fr.paris.lutece.portal.service.datastore.DatastoreService;
+import fr.paris.lutece.portal.service.init.ShutdownServiceManager;
 import fr.paris.lutece.portal.service.search.SearchItem;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
 import fr.paris.lutece.portal.service.util.AppLogService;
 import fr.paris.lutece.portal.service.util.AppPropertiesService;
 
@@ -97,6 +105,8 @@ public class SolrFormsIndexer implements SolrIndexer
 {
     private static final int TAILLE_LOT = AppPropertiesService.getPropertyInt( Utilities.PROPERTY_BATCH, 100 );
     private static final List<String> LIST_RESSOURCES_NAME = new ArrayList<>( );
+    private static final String FACET_LABEL_FORM = "Form";
+    private static final String FACET_LABEL_WORKFLOW_STATE = "Workflow state";
 
     @Autowired( required = false )
     private IResourceWorkflowService _resourceWorkflowService;
@@ -104,6 +114,10 @@ public class SolrFormsIndexer implements SolrIndexer
     @Autowired( required = false )
     private IStateService _stateService;
 
+    private volatile FormResponseDocumentBuilder _documentBuilder;
+    private volatile FormResponseIndexingQueue _indexingQueue;
+    private final Object _indexingQueueLock = new Object( );
+
 
     /**
      * Create Solr Response Form Indexer
@@ -149,10 +163,7 @@ public class SolrFormsIndexer implements SolrIndexer
     @Override
     public String getResourceUid( String strResourceId, String strResourceType )
     {
-        StringBuilder stringBuilder = new StringBuilder( strResourceId );
-        stringBuilder.append( "_" ).append( FormResponse.RESOURCE_TYPE );
-
-        return stringBuilder.toString( );
+        return FormResponseDocumentBuilder.buildResourceUid( strResourceId );
     }
 
     /**
@@ -179,8 +190,51 @@ public class SolrFormsIndexer implements SolrIndexer
     @Override
     public List<Field> getAdditionalFields( )
     {
-        // To be implemented later to add facets
-        return new ArrayList<>( );
+        List<Field> listFields = new ArrayList<>( );
+        listFields.add( createFacetField( getLongFieldName( FormResponseSearchItem.FIELD_ID_FORM ), FACET_LABEL_FORM ) );
+        listFields.add( createFacetField( getLongFieldName( FormResponseSearchItem.FIELD_ID_WORKFLOW_STATE ), FACET_LABEL_WORKFLOW_STATE ) );
+
+        // the choice questions, whose values are indexed not analysed
+        Set<String> setFieldNames = new HashSet<>( );
+        for ( Form form : FormHome.getFormList( ) )
+        {
+            for ( Question question : QuestionHome.getListQuestionByIdForm( form.getId( ) ) )
+            {
+                if ( question.getEntry( ) == null )
+                {
+                    continue;
+                }
+                EntryTypeHandler handler = getDocumentBuilder( ).getHandler( question.getEntry( ) );
+                String strFacetFieldName = ( handler.getKind( ) == EntryTypeHandler.Kind.RESPONSE )
+                        ? handler.getMapper( ).getFacetFieldName( FieldNameCache.getEntryKey( question.getCode( ), 0 ) )
+                        : null;
+                if ( strFacetFieldName != null && setFieldNames.add( strFacetFieldName ) )
+                {
+                    listFields.add( createFacetField( strFacetFieldName, form.getTitle( ) + " - " + question.getTitle( ) ) );
+                }
+            }
+        }
+        return listFields;
+    }
+
+    /**
+     * Creates the declaration of a facet field
+     * 
+     * @param strName
+     *            the indexed name of the field
+     * @param strLabel
+     *            the label of the field
+     * @return the field
+     */
+    private static Field createFacetField( String strName, String strLabel )
+    {
+        Field field = new Field( );
+        field.setName( strName );
+        field.setLabel( strLabel );
+        field.setDescription( strLabel );
+        field.setIsFacet( true );
+        field.setEnableFacet( true );
+        return field;
     }
 
     /**
@@ -189,23 +243,29 @@ public class SolrFormsIndexer implements SolrIndexer
     @Override
     public List<SolrItem> getDocuments( String idFormResponse )
     {
+        if ( AppPropertiesService.getPropertyBoolean( Utilities.PROPERTY_QUEUE_ENABLE, false ) )
+        {
+            // indexed later with the other form responses updated meanwhile
+            getIndexingQueue( ).add( Integer.parseInt( idFormResponse ) );
+            return Collections.emptyList( );
+        }
+
         final FormResponse formResponse = FormResponseHome.findByPrimaryKeyForIndex( Integer.parseInt( idFormResponse ) );
        
         if( !formResponse.isPublished( ) ) {
-        	// delete all index linked to uid. We get the uid of the resource to prefix it like we do during the indexation         
+        	// delete the document by its uid. We get the uid of the resource to prefix it like we do during the indexation         
         	try {
-				SolrServerService.getInstance( ).getSolrServer( ).deleteByQuery( SearchItem.FIELD_UID + ":" + ClientUtils.escapeQueryChars(SolrIndexerService.getWebAppName( )) + SolrConstants.CONSTANT_UNDERSCORE
-				        + getResourceUid( String.valueOf( formResponse.getId( )), FormResponse.RESOURCE_TYPE ) );
+				deleteDocuments( Collections.singletonList( formResponse.getId( ) ) );
 			
         	} catch (SolrServerException | IOException e)  {
 				
-				AppLogService.error( Utilities.DOC_DELETE_BY_QUERY_ERROR, idFormResponse, e );
+				AppLogService.error( Utilities.DOC_DELETE_ERROR, idFormResponse, e );
 	            throw new LuteceSolrRuntimeException( e.getMessage( ), e );
 			} 
         	return Collections.emptyList( );  
         } 
         
-        Form form = FormHome.findByPrimaryKey( formResponse.getFormId( ) );
+        Form form = FormsMetadataCache.getInstance( ).getForm( formResponse.getFormId( ) );
         State formResponseState = null;
         if ( _stateService != null )
         {
@@ -222,10 +282,10 @@ public class SolrFormsIndexer implements SolrIndexer
     	listFormsQuestionResponse.removeIf(fqr -> !fqr.getQuestion().isPublished());
     	try
         {
-        	solrItem = getSolrItem( formResponse, form, formResponseState,
+        	solrItem = getDocumentBuilder( ).getSolrItem( formResponse, form, formResponseState,
             		listFormsQuestionResponse ,
-        		    listFormsQuestionResponse.stream( ).filter(fqr -> fqr.getQuestion().getEntry()!= null && fqr.getQuestion().getEntry().getFields( ) != null ).flatMap(fqr -> fqr.getQuestion().getEntry().getFields( ).stream( ))
-        		    .collect(Collectors.groupingBy( fr.paris.lutece.plugins.genericattributes.business.Field::getIdField )), formResponse.getRole(), formResponse.getGuid()
+        		    new EntryIndex( listFormsQuestionResponse.stream( ).filter(fqr -> fqr.getQuestion().getEntry()!= null && fqr.getQuestion().getEntry().getFields( ) != null ).flatMap(fqr -> fqr.getQuestion().getEntry().getFields( ).stream( ))
+        		    .collect( Collectors.toList( ) ) ), formResponse.getRole(), formResponse.getGuid()
             );
         }
         catch( Exception e )
@@ -233,7 +293,6 @@ public class SolrFormsIndexer implements SolrIndexer
             AppLogService.error( Utilities.DOC_INDEXATION_ERROR, idFormResponse, e );
             throw new LuteceSolrRuntimeException( e.getMessage( ), e );
         }
-
         return Arrays.asList( solrItem );
     }
 
@@ -242,501 +301,1073 @@ public class SolrFormsIndexer implements SolrIndexer
      */
     @Override
     public List<String> indexDocuments( )
+    {
+        if ( AppPropertiesService.getPropertyBoolean( Utilities.PROPERTY_SHADOW_ENABLE, false ) )
+        {
+            return indexDocumentsIntoShadow( SolrServerService.getInstance( ).getSolrServer( ) );
+        }
+        return indexDocuments( AppPropertiesService.getPropertyBoolean( Utilities.PROPERTY_RESUME_ENABLE, false ) );
+    }
+
+    /**
+     * Indexes all the form responses, checkpointing the run after each batch written to Solr
+     * 
+     * @param bResume
+     *            true to continue a stopped run after its checkpoint, false to start from the first form response
+     * @return the list of errors
+     */
+    public List<String> indexDocuments( boolean bResume )
+    {
+        List<String> errors = new ArrayList<>( );
+        long lStart = System.nanoTime( );
+        long lDocumentsAtStart = FormsIndexerMetrics.getInstance( ).startRun( );
+        final IndexingContext context = createIndexingContext( );
+
+        // resume after the last committed form response of a stopped run, if any
+        CommittedIdTracker committedIdTracker = CommittedIdTracker.start( bResume );
+        int nStartAfterId = committedIdTracker.getLastCommittedId( );
+        if ( nStartAfterId > 0 )
+        {
+            AppLogService.info( Utilities.RESUME_INFO, committedIdTracker.getRunId( ), nStartAfterId, committedIdTracker.getCommittedFormResponses( ),
+                    committedIdTracker.getCommittedBatches( ) );
+        }
+        AdaptiveBatchSizer batchSizer = createBatchSizer( );
+        Iterator<List<Integer>> itBatch = new FormResponseIdCursor( 0, nStartAfterId, batchSizer::getBatchSize,
+                Math.max( batchSizer.getMaxSize( ), AppPropertiesService.getPropertyInt( Utilities.PROPERTY_CURSOR_PAGE_SIZE, 1000 ) ) );
+        SolrDocumentWriter solrWriter = createSolrWriter( );
+        FormsIndexingPipeline.BatchWriter writer = createBatchWriter( solrWriter, batchSizer, committedIdTracker::commit );
+        DocumentHashFilter hashFilter = null;
+        if ( AppPropertiesService.getPropertyBoolean( Utilities.PROPERTY_HASH_ENABLE, false ) )
+        {
+            // the hashes are compared to the ones indexed in Solr, so an index emptied before the run is written in full
+            hashFilter = new DocumentHashFilter( SolrServerService.getInstance( ).getSolrServer( ), this::getDocumentUid,
+                    getNotAnalysedFieldName( DocumentHashFilter.FIELD_HASH ) );
+            writer = hashFilter.filtering( writer );
+        }
+        BatchLoadExecutor loadExecutor = createLoadExecutor( );
+        Executor queryExecutor = ( loadExecutor != null ) ? loadExecutor.getQueryExecutor( ) : null;
+
+        try
+        {
+            // the batches are registered in the order of their ids, before their loads may run concurrently
+            errors.addAll( runBatches( peek( itBatch, committedIdTracker::register ), batch -> {
+                FormResponseBatch formResponseBatch = loadBatch( batch, context, batchSizer, queryExecutor );
+                try
+                {
+                    deleteUnpublished( formResponseBatch );
+                }
+                catch( IOException | SolrServerException e )
+                {
+                    throw new LuteceSolrRuntimeException( e.getMessage( ), e );
+                }
+                return formResponseBatch;
+            }, writer, loadExecutor ) );
+        }
+        finally
+        {
+            closeRun( loadExecutor, solrWriter, errors );
+        }
+        FormsIndexerMetrics.getInstance( ).recordRun( lDocumentsAtStart, System.nanoTime( ) - lStart );
+        AppLogService.info( Utilities.BATCH_SIZE_INFO, batchSizer.getBatchSize( ) );
+        if ( hashFilter != null )
+        {
+            AppLogService.info( Utilities.HASH_REPORT_INFO, hashFilter.getDocumentsWritten( ), hashFilter.getDocumentsUnchanged( ) );
+        }
+
+        if ( errors.isEmpty( ) )
+        {
+            CommittedIdTracker.reset( );
+        }
+        else
+        {
+            AppLogService.info( Utilities.CHECKPOINT_INFO, committedIdTracker.getRunId( ), committedIdTracker.getLastCommittedId( ),
+                    committedIdTracker.getCommittedFormResponses( ), committedIdTracker.getCommittedBatches( ) );
+        }
+
+        return errors;
+    }
+
+    /**
+     * Indexes all the form responses into a new shadow collection, then points the alias searched at it once its documents are counted. The live
+     * collection is searched unchanged until then, and a failed run leaves it in place. The form responses changed or deleted while the shadow collection
+     * was built were written to the live collection only: they are indexed again once the alias is moved.
+     * 
+     * @param solrClient
+     *            the client of the SolrCloud cluster
+     * @return the list of errors
+     */
+    synchronized List<String> indexDocumentsIntoShadow( SolrClient solrClient )
     {
         List<String> errors = new ArrayList<>( );
-        final List<Integer> listFormResponsesId = FormResponseHome.selectAllFormResponsesId( );
-        final List<State> listState = ( _stateService != null && _resourceWorkflowService != null ) ? _stateService.getListStateByFilter( new StateFilter( ) )
-                : new ArrayList<>( );
-        State defaultFormResponseState = new State( );
-        defaultFormResponseState.setId( -1 );
-        defaultFormResponseState.setName( StringUtils.EMPTY );
-
-        IntStream.range( 0, ( listFormResponsesId.size( ) + TAILLE_LOT - 1 ) / TAILLE_LOT )
-                .mapToObj( i -> listFormResponsesId.subList( i * TAILLE_LOT, Math.min( listFormResponsesId.size( ), ( i + 1 ) * TAILLE_LOT ) ) )
-                .forEach( batch -> {
-                    try
-                    {
-
-                        indexingByBatch( batch, listState, FormHome.getFormList( ), defaultFormResponseState );
-
-                    }
-                    catch( IOException e )
-                    {
-
-                        AppLogService.error( e.getMessage( ), e );
-                        errors.add( SolrIndexerService.buildErrorMessage( e ) );
-                        return;
-                    }
-                } );
+        Timestamp timestampRunStart = new Timestamp( System.currentTimeMillis( ) );
+        long lStart = System.nanoTime( );
+        long lDocumentsAtStart = FormsIndexerMetrics.getInstance( ).startRun( );
+        ShadowCollectionManager shadowManager = new ShadowCollectionManager( solrClient, AppPropertiesService.getProperty( Utilities.PROPERTY_SHADOW_ALIAS ),
+                AppPropertiesService.getProperty( Utilities.PROPERTY_SHADOW_CONFIGSET ), AppPropertiesService.getProperty( Utilities.PROPERTY_SHADOW_CONFIGSET_BULK ),
+                AppPropertiesService.getPropertyInt( Utilities.PROPERTY_SHADOW_SHARDS, 1 ), AppPropertiesService.getPropertyInt( Utilities.PROPERTY_SHADOW_REPLICAS, 1 ) );
+        String strShadowCollection;
+        try
+        {
+            strShadowCollection = shadowManager.create( );
+        }
+        catch( IOException | SolrServerException e )
+        {
+            AppLogService.error( e.getMessage( ), e );
+            errors.add( SolrIndexerService.buildErrorMessage( e ) );
+            return errors;
+        }
+        AppLogService.info( Utilities.SHADOW_CREATE_INFO, strShadowCollection );
+
+        final IndexingContext context = createIndexingContext( );
+        AdaptiveBatchSizer batchSizer = createBatchSizer( );
+        Iterator<List<Integer>> itBatch = new FormResponseIdCursor( 0, 0, batchSizer::getBatchSize,
+                Math.max( batchSizer.getMaxSize( ), AppPropertiesService.getPropertyInt( Utilities.PROPERTY_CURSOR_PAGE_SIZE, 1000 ) ) );
+        // no commitWithin: the shadow collection is committed once, when complete
+        SolrDocumentWriter solrWriter = createSolrWriter( solrClient, strShadowCollection, -1 );
+        LongAdder lPublished = new LongAdder( );
+        BatchLoadExecutor loadExecutor = createLoadExecutor( );
+        Executor queryExecutor = ( loadExecutor != null ) ? loadExecutor.getQueryExecutor( ) : null;
+
+        try
+        {
+            errors.addAll( runBatches( itBatch, batch -> {
+                FormResponseBatch formResponseBatch = loadBatch( batch, context, batchSizer, queryExecutor );
+                lPublished.add( formResponseBatch.getListFormResponse( ).size( ) );
+                return formResponseBatch;
+            }, createBatchWriter( solrWriter, batchSizer, batch -> {
+            } ), loadExecutor ) );
+        }
+        finally
+        {
+            closeRun( loadExecutor, solrWriter, errors );
+        }
+        FormsIndexerMetrics.getInstance( ).recordRun( lDocumentsAtStart, System.nanoTime( ) - lStart );
+
+        try
+        {
+            if ( errors.isEmpty( ) && swapShadowCollection( shadowManager, strShadowCollection, lPublished.sum( ), errors ) )
+            {
+                // the writes of the build went to the live collection: they are replayed through the alias, which now points at the new collection
+                AppLogService.info( Utilities.SHADOW_CATCH_UP_INFO, timestampRunStart );
+                errors.addAll( indexChangedSince( timestampRunStart ) );
+                return errors;
+            }
+            shadowManager.delete( strShadowCollection );
+        }
+        catch( IOException | SolrServerException e )
+        {
+            AppLogService.error( e.getMessage( ), e );
+            errors.add( SolrIndexerService.buildErrorMessage( e ) );
+        }
 
         return errors;
     }
 
     /**
-     * Indexing Form Responses by batch
+     * Commits a built shadow collection, checks its documents and points the alias at it, then deletes the previous live collection if configured
      * 
-     * @param FormResponsesIdBatch
-     *            the list of Form Responses Id
-     * @param listState
-     *            the list of all workflow State
-     * @param lisForms
-     *            the form list
-     * @param defaultFormResponseState
-     *            the default Form ResponseState
+     * @param shadowManager
+     *            the manager of the collections
+     * @param strShadowCollection
+     *            the shadow collection
+     * @param lExpected
+     *            the number of published form responses read from the database
+     * @param errors
+     *            the list of errors, where the failed checks are added
+     * @return true if the alias points at the shadow collection
+     * @throws SolrServerException
+     *             the SolrServerException
      * @throws IOException
      *             the IOException
      */
-    private void indexingByBatch( List<Integer> formResponsesIdBatch, final List<State> listState, final List<Form> listForms,
-            final State defaultFormResponseState ) throws IOException
+    private boolean swapShadowCollection( ShadowCollectionManager shadowManager, String strShadowCollection, long lExpected, List<String> errors )
+            throws SolrServerException, IOException
     {
-        Map<Integer, Integer> mapIdState = new HashMap<>( );
-        // we filter the formResponse on the status to index only the published formsResponse
-    	List<FormResponse> listFormResponse= FormResponseHome.getFormResponseUncompleteByPrimaryKeyList( formResponsesIdBatch )
-  				.stream().filter(FormResponse::isPublished).collect(Collectors.toList( ));    	
-        List<Integer>  formResponseIdList= listFormResponse.stream().map( FormResponse::getId ).collect(Collectors.toList( ));
+        shadowManager.finish( strShadowCollection );
+        long lCount = shadowManager.count( strShadowCollection );
+        if ( lCount != lExpected )
+        {
+            AppLogService.error( Utilities.SHADOW_COUNT_ERROR, strShadowCollection, lCount, lExpected );
+            errors.add( Utilities.SHADOW_COUNT_MESSAGE );
+            return false;
+        }
 
-        if ( _resourceWorkflowService != null )
+        String strLiveCollection = shadowManager.getLiveCollection( );
+        if ( strLiveCollection != null )
         {
+            // the shadow collection only holds form responses: swapping a collection shared with other indexers would drop their documents
+            long lOtherCount = shadowManager.countOtherDocuments( strLiveCollection );
+            if ( lOtherCount > 0 )
+            {
+                AppLogService.error( Utilities.SHADOW_SHARED_ERROR, shadowManager.getAlias( ), strLiveCollection, lOtherCount );
+                errors.add( Utilities.SHADOW_SHARED_MESSAGE );
+                return false;
+            }
+            // a shadow collection much smaller than the live one denotes missing data rather than deleted responses
+            long lLiveCount = shadowManager.count( strLiveCollection );
+            if ( lCount * 100 < lLiveCount * AppPropertiesService.getPropertyInt( Utilities.PROPERTY_SHADOW_MIN_PERCENT, 90 ) )
+            {
+                AppLogService.error( Utilities.SHADOW_RATIO_ERROR, strShadowCollection, lCount, lLiveCount, strLiveCollection );
+                errors.add( Utilities.SHADOW_COUNT_MESSAGE );
+                return false;
+            }
+        }
 
-            listForms.forEach( form -> mapIdState.putAll( _resourceWorkflowService.getListIdStateByListId( formResponseIdList, form.getIdWorkflow( ),
-                    FormResponse.RESOURCE_TYPE, form.getId( ) ) ) );
+        shadowManager.swap( strShadowCollection );
+        AppLogService.info( Utilities.SHADOW_SWAP_INFO, shadowManager.getAlias( ), strShadowCollection, lCount );
+        if ( strLiveCollection != null && AppPropertiesService.getPropertyBoolean( Utilities.PROPERTY_SHADOW_DELETE_PREVIOUS, true ) )
+        {
+            try
+            {
+                shadowManager.delete( strLiveCollection );
+            }
+            catch( IOException | SolrServerException e )
+            {
+                // the new collection is live: only the previous one is left behind
+                AppLogService.error( e.getMessage( ), e );
+                errors.add( SolrIndexerService.buildErrorMessage( e ) );
+            }
         }
-        List<FormQuestionResponse> listFormQuestionResponse =FormQuestionResponseHome.getFormQuestionResponseListByFormResponseList( formResponseIdList );
-       
-        Set<Integer> listIdEntry =new HashSet<>();
-        listFormQuestionResponse.forEach( fqr -> {
-        	listIdEntry.add(fqr.getQuestion().getIdEntry( ));
-        	fqr.getEntryResponse( ).forEach( rsp -> listIdEntry.add( rsp.getEntry().getIdEntry( )));
-        
-        });
-        SolrIndexerService
-                .write( getSolrItems( FormResponseHome.getFormResponseUncompleteByPrimaryKeyList( formResponseIdList ),
-                		formResponseIdList.stream( )
-                                .collect( Collectors.toMap( formResponseId -> formResponseId, formResponseId -> listState.stream( )
-                                        .filter( state -> ( mapIdState.get( formResponseId ) != null && state.getId( ) == mapIdState.get( formResponseId ) ) )
-                                        .findAny( ).orElse( defaultFormResponseState ) ) ),
-                        listForms.stream( ).collect( Collectors.toMap( Form::getId, Function.identity( ) ) ),
-                        listFormQuestionResponse.stream( )
-                                .collect( Collectors.groupingBy( FormQuestionResponse::getIdFormResponse ) ),
-                        QuestionHome.findByPrimaryKeyList( listFormQuestionResponse.stream( )
-                           		.map( reponse ->  reponse.getQuestion().getId( ) )
-                           		.distinct( ).collect(Collectors.toList( ))).stream().collect(Collectors.toMap( Question::getId, Function.identity( ) )),
-                        FieldHome.getFieldListByListIdEntry(new ArrayList<>( listIdEntry ))
-                		
-                		) );
-    }
-
-    /**
-     * Builds a documents which will be used by solr during the indexing of the form responses
-     *
-     * @param listFormResponse
-     *            the form responses list
-     * @param mapResourceState
-     *            the resource state list grouping by FormResponseId: Map<FormResponseId, State>
-     * @param mapFom
-     *            the form list grouping by form Id: Map<FormId, Form>
-     * @param mapFormQuestionResponse
-     *            the Form Question Responses list grouping byFormResponseId: Map<FormResponseId, List<FormQuestionResponse>>
-     * @param mapQuestions
-     * 				the question form map
-     * @param mapFields
-     *            the Field list grouping by Field Id: Map<FieldId, Field>
-   
-     * @return collection of SolrItem
+        return true;
+    }
+
+    /**
+     * Stops the threads of a bulk indexing and flushes the documents left in the writer
+     * 
+     * @param loadExecutor
+     *            the executor of the loads, null if none
+     * @param solrWriter
+     *            the writer, null if none
+     * @param errors
+     *            the list of errors, where the errors of the writer are added
      */
-   
-    private Collection<SolrItem> getSolrItems( List<FormResponse> listFormResponse, Map<Integer, State> mapResourceState, Map<Integer, Form> mapFom,
-            Map<Integer, List<FormQuestionResponse>> mapFormQuestionResponse, Map< Integer,Question > mapQuestions, 
-            List<fr.paris.lutece.plugins.genericattributes.business.Field> listFields)
-    {
-        Collection<SolrItem> solrItemList = new ArrayList<>( );
-        for ( FormResponse formResponse : listFormResponse )
-        {
-        	List<FormQuestionResponse> formQuestionResponseList= new ArrayList<>() ;
-        	for( FormQuestionResponse fqr: mapFormQuestionResponse.get( formResponse.getId( ) ))
-        	{	
-	        	 fqr.setQuestion(mapQuestions.get(fqr.getQuestion().getId( )));  
-        		 listFields.forEach( field ->
-        		 {
-        			 if( field.getParentEntry().getIdEntry() == fqr.getQuestion().getIdEntry( ) && IEntryTypeService.FIELD_PUBLISHED.equals( field.getCode() ) && "true".equals( field.getValue() )) {
-        				 
-        				 formQuestionResponseList.add(fqr);
-        	        	 return; 
-        			 }
-        		 }
-        				 
-        		);  
-        	}
-        	solrItemList.add( getSolrItem( formResponse, mapFom.get( formResponse.getFormId( ) ), mapResourceState.get( formResponse.getId( ) ), formQuestionResponseList,
-        			listFields.stream().collect(Collectors.groupingBy( fr.paris.lutece.plugins.genericattributes.business.Field::getIdField  ) ), formResponse.getRole( ), formResponse.getGuid( )
-        	));
-        }
-        return solrItemList;
-    }
-
-    /**
-     * Builds a document which will be used by solr during the indexing of the form responses
-     * 
-     * @param formResponse
-     *            the form reponse
-     * @param form
-     *            the form
-     * @param formResponseState
-     *            the form Response State
-     * @param formQuestionResponseList
-     *            the form Question Response List
-     * @param mapFields
-     *            the Field list grouping by Field Id: Map<FieldId, Field>
-     * @param strRole
-     * 			the role of the user
-     * @param strGuid
-     * 			the guid of the user
-     * @return the SolrItem builded
-     */
-    private SolrItem getSolrItem( FormResponse formResponse, Form form, State formResponseState, List<FormQuestionResponse> formQuestionResponseList, 
-    		Map<Integer, List<fr.paris.lutece.plugins.genericattributes.business.Field>> mapFields, String strRole, String strGuid )
-    {
-        SolrItem solrItem = initSolrItem( formResponse, form, formResponseState, formQuestionResponseList );
-        // --- form response entry code / fields
-        Set<String> setFieldNameBuilderUsed = new HashSet<>( );
-        IEntryTypeService typerService = null;
-       for ( FormQuestionResponse formQuestionResponse : formQuestionResponseList )
-        {
-            for ( Response response : formQuestionResponse.getEntryResponse( ) )
+    private static void closeRun( BatchLoadExecutor loadExecutor, SolrDocumentWriter solrWriter, List<String> errors )
+    {
+        try
+        {
+            if ( loadExecutor != null )
             {
-                typerService = EntryTypeServiceManager.getEntryTypeService( response.getEntry( ) );
-                if( typerService instanceof EntryTypeGeolocation ) {
-                	
-                	addDynamicFieldGeoloc( formQuestionResponse.getEntryResponse( ), mapFields ,solrItem,formQuestionResponse.getQuestion( ).getCode( ), setFieldNameBuilderUsed);
-                	break;
+                loadExecutor.close( );
+            }
+        }
+        finally
+        {
+            if ( solrWriter != null )
+            {
+                errors.addAll( solrWriter.close( ) );
+            }
+        }
+    }
+
+    /**
+     * Runs the batches of a bulk indexing, through the pipeline if enabled
+     * 
+     * @param itBatch
+     *            the batches of form response ids
+     * @param loader
+     *            loads a batch from the database
+     * @param writer
+     *            writes the documents of a batch
+     * @param loadExecutor
+     *            runs the batches concurrently, null to run them one after the other
+     * @return the errors, one per failed batch
+     */
+    private List<String> runBatches( Iterator<List<Integer>> itBatch, Function<List<Integer>, FormResponseBatch> loader,
+            FormsIndexingPipeline.BatchWriter writer, BatchLoadExecutor loadExecutor )
+    {
+        if ( AppPropertiesService.getPropertyBoolean( Utilities.PROPERTY_PIPELINE_ENABLE, false ) )
+        {
+            FormsIndexingPipeline pipeline = new FormsIndexingPipeline( AppPropertiesService.getPropertyInt( Utilities.PROPERTY_PIPELINE_WORKERS, 4 ),
+                    AppPropertiesService.getPropertyInt( Utilities.PROPERTY_PIPELINE_QUEUE_SIZE, 4 ) );
+            return pipeline.run( itBatch, loader, this::getSolrItems, writer, loadExecutor );
+        }
+
+        List<String> errors = Collections.synchronizedList( new ArrayList<>( ) );
+        try
+        {
+            while ( itBatch.hasNext( ) )
+            {
+                List<Integer> batch = itBatch.next( );
+                if ( loadExecutor == null )
+                {
+                    runBatch( batch, loader, writer, errors );
                 }
-                if( typerService instanceof EntryTypeCartography ) {
-                	
-                	addDynamicFieldCartography( formQuestionResponse.getEntryResponse( ), mapFields ,solrItem,formQuestionResponse.getQuestion( ).getCode( ), setFieldNameBuilderUsed, strRole, strGuid);
-                	break;
+                else
+                {
+                    loadExecutor.execute( ( ) -> runBatch( batch, loader, writer, errors ) );
                 }
-                // add the Response Value to solrItem
-                addResponseValue( solrItem, formQuestionResponse.getQuestion( ).getCode( ), typerService, response, formResponse.getId( ),
-                        setFieldNameBuilderUsed, formQuestionResponse.getId( ));
             }
+            if ( loadExecutor != null && !loadExecutor.awaitBatches( ) )
+            {
+                errors.add( Utilities.PIPELINE_TIMEOUT_MESSAGE );
+            }
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread( ).interrupt( );
+            AppLogService.error( e.getMessage( ), e );
+            errors.add( SolrIndexerService.buildErrorMessage( e ) );
+        }
+        catch( RuntimeException e )
+        {
+            // the ids of the batches could not be read: the run stops
+            AppLogService.error( e.getMessage( ), e );
+            errors.add( SolrIndexerService.buildErrorMessage( e ) );
         }
-        return solrItem;
+        return errors;
     }
 
     /**
-     * initiate the build of an document which will be used by solr during the indexing of the form responses
+     * Loads, builds and writes a batch
      * 
-     * @param formResponse
-     *            the form reponse
-     * @param form
-     *            the form
-     * @param formResponseState
-     *            the form Response State
-     * @param formQuestionResponseList
-     *            the form Question Response List
-     * @return the SolrItem builded
+     * @param batch
+     *            the form response ids of the batch
+     * @param loader
+     *            loads a batch from the database
+     * @param writer
+     *            writes the documents of a batch
+     * @param errors
+     *            the list of errors, where the failure of the batch is added
      */
-    private SolrItem initSolrItem( FormResponse formResponse, Form form, State formResponseState, List<FormQuestionResponse> formQuestionResponseList )
+    private void runBatch( List<Integer> batch, Function<List<Integer>, FormResponseBatch> loader, FormsIndexingPipeline.BatchWriter writer,
+            List<String> errors )
     {
-        // make a new, empty SolrItem
-        SolrItem solrItem = new SolrItem( );
-        String nIdFormResponse = String.valueOf(formResponse.getId( ));
-        solrItem.setIdResource(  nIdFormResponse );
-        solrItem.setSite( SolrIndexerService.getWebAppName( ) );
-        solrItem.setRole( Utilities.SHORT_ROLE_FORMS );
-        solrItem.setType( FormResponse.RESOURCE_TYPE + "_" +form.getId( ) );
-        solrItem.setUid( getResourceUid(  nIdFormResponse, FormResponse.RESOURCE_TYPE) );
-        solrItem.setTitle( Utilities.SHORT_ROLE_FORMS + " #" + nIdFormResponse );
-        solrItem.setDate( formResponse.getCreation( ) );
-        solrItem.setUrl( "jsp/site/Portal.jsp?page=formsResponse&id_response="+nIdFormResponse );
+        try
+        {
+            writer.write( batch, getSolrItems( loader.apply( batch ) ) );
+        }
+        catch( IOException | RuntimeException e )
+        {
+            AppLogService.error( Utilities.BATCH_INDEXATION_ERROR, batch.get( 0 ), batch.get( batch.size( ) - 1 ), e );
+            FormsIndexerMetrics.getInstance( ).recordBatchError( );
+            errors.add( SolrIndexerService.buildErrorMessage( e ) );
+        }
+    }
 
-        // --- form response identifier
-        solrItem.addDynamicField( FormResponseSearchItem.FIELD_ID_FORM_RESPONSE, Long.valueOf( nIdFormResponse ) );
+    /**
+     * Gives the batches of an iterator, passing each one to a listener on the iterating thread first
+     * 
+     * @param itBatch
+     *            the batches
+     * @param listener
+     *            the listener
+     * @return the iterator of the batches
+     */
+    private static Iterator<List<Integer>> peek( Iterator<List<Integer>> itBatch, Consumer<List<Integer>> listener )
+    {
+        return new Iterator<List<Integer>>( )
+        {
+            @Override
+            public boolean hasNext( )
+            {
+                return itBatch.hasNext( );
+            }
 
-        // --- field contents
-        solrItem.setContent( getContentToIndex( formQuestionResponseList ) );
+            @Override
+            public List<Integer> next( )
+            {
+                List<Integer> batch = itBatch.next( );
+                listener.accept( batch );
+                return batch;
+            }
+        };
+    }
 
-        // --- form title
-        solrItem.addDynamicFieldNotAnalysed( FormResponseSearchItem.FIELD_FORM_TITLE, form.getTitle( ) );
+    /**
+     * Creates the executor running the batches of a bulk indexing concurrently, if enabled
+     * 
+     * @return the executor, or null to run the batches one after the other
+     */
+    private BatchLoadExecutor createLoadExecutor( )
+    {
+        if ( !AppPropertiesService.getPropertyBoolean( Utilities.PROPERTY_LOAD_CONCURRENT_ENABLE, false ) )
+        {
+            return null;
+        }
+        BatchLoadExecutor loadExecutor = new BatchLoadExecutor( AppPropertiesService.getPropertyInt( Utilities.PROPERTY_LOAD_DB_POOL_SIZE, 10 ),
+                AppPropertiesService.getPropertyBoolean( Utilities.PROPERTY_LOAD_VIRTUAL_THREADS, true ) );
+        AppLogService.info( Utilities.LOAD_EXECUTOR_INFO, loadExecutor.getMaxBatches( ), loadExecutor.isVirtualThreads( ) ? "virtual" : "platform" );
+        return loadExecutor;
+    }
 
-        // --- id form
-        solrItem.addDynamicField( FormResponseSearchItem.FIELD_ID_FORM, Long.valueOf( form.getId( ) ) );
+    /**
+     * Indexes the form responses updated, or whose workflow state changed, since the last incremental indexing, and removes the documents of the form
+     * responses unpublished or deleted since then. The first run, without a persisted high-water mark, is a full indexing.
+     * 
+     * @return the list of errors
+     */
+    public synchronized List<String> indexDelta( )
+    {
+        Timestamp timestampRunStart = new Timestamp( System.currentTimeMillis( ) );
+        long lLastRun = Long.parseLong( DatastoreService.getDataValue( Utilities.DATASTORE_KEY_DELTA_LAST_RUN, "0" ) );
+        List<String> errors;
 
-        // --- form response date create
-        solrItem.addDynamicField( FormResponseSearchItem.FIELD_DATE_CREATION, formResponse.getCreation( ).getTime( ) );
+        if ( lLastRun == 0 )
+        {
+            errors = indexDocuments( );
+        }
+        else
+        {
+            errors = indexChangedSince( new Timestamp( lLastRun ) );
+        }
 
-        // --- form response date closure
-        solrItem.addDynamicField( FormResponseSearchItem.FIELD_DATE_UPDATE, formResponse.getUpdate( ).getTime( ) );
+        if ( errors.isEmpty( ) )
+        {
+            // deletions recorded during the full indexing are covered by it
+            DeletedFormResponseHome.removeUntil( timestampRunStart );
+            DatastoreService.setDataValue( Utilities.DATASTORE_KEY_DELTA_LAST_RUN, String.valueOf( timestampRunStart.getTime( ) ) );
+        }
 
-        // --- id form response workflow state
-        solrItem.addDynamicField( FormResponseSearchItem.FIELD_ID_WORKFLOW_STATE, Long.valueOf( formResponseState.getId( ) ) );
+        return errors;
+    }
 
-        // --- form response workflow state title
-        solrItem.addDynamicFieldNotAnalysed( FormResponseSearchItem.FIELD_TITLE_WORKFLOW_STATE, formResponseState.getName( ) );
+    /**
+     * Repairs the index without a full indexing: reindexes the form responses missing from Solr or updated since their document was written, and removes
+     * the documents of the form responses deleted from the database. The differences are found by streaming the ids and update dates from both sides.
+     * 
+     * @return the list of errors
+     */
+    public synchronized List<String> reconcile( )
+    {
+        List<String> errors = new ArrayList<>( );
+        IndexReconciler reconciler = new IndexReconciler( SolrServerService.getInstance( ).getSolrServer( ),
+                getLongFieldName( FormResponseSearchItem.FIELD_ID_FORM_RESPONSE ), getLongFieldName( FormResponseSearchItem.FIELD_DATE_UPDATE ),
+                AppPropertiesService.getPropertyInt( Utilities.PROPERTY_CURSOR_PAGE_SIZE, 1000 ) );
+        try
+        {
+            reconciler.reconcile( );
+        }
+        catch( IOException | SolrServerException e )
+        {
+            AppLogService.error( e.getMessage( ), e );
+            errors.add( SolrIndexerService.buildErrorMessage( e ) );
+            return errors;
+        }
+        AppLogService.info( Utilities.RECONCILE_INFO, reconciler.getDocumentsRead( ), reconciler.getFormResponsesRead( ),
+                reconciler.getToReindex( ).cardinality( ), reconciler.getToDelete( ).cardinality( ) );
 
-        return solrItem;
+        final IndexingContext context = createIndexingContext( );
+        forEachBatch( reconciler.getToReindex( ), batch -> {
+            try
+            {
+                indexAndDeleteUnpublished( batch, context );
+            }
+            catch( IOException | SolrServerException e )
+            {
+                AppLogService.error( Utilities.BATCH_INDEXATION_ERROR, batch.get( 0 ), batch.get( batch.size( ) - 1 ), e );
+                FormsIndexerMetrics.getInstance( ).recordBatchError( );
+                errors.add( SolrIndexerService.buildErrorMessage( e ) );
+            }
+        } );
+        forEachBatch( reconciler.getToDelete( ), batch -> {
+            try
+            {
+                deleteDocuments( batch );
+            }
+            catch( IOException | SolrServerException e )
+            {
+                AppLogService.error( e.getMessage( ), e );
+                errors.add( SolrIndexerService.buildErrorMessage( e ) );
+            }
+        } );
+
+        return errors;
+    }
+
+    /**
+     * Splits the ids of a bitmap into batches, in ascending order
+     * 
+     * @param bitSetId
+     *            the ids
+     * @param consumer
+     *            processes each batch
+     */
+    private static void forEachBatch( BitSet bitSetId, Consumer<List<Integer>> consumer )
+    {
+        List<Integer> batch = new ArrayList<>( TAILLE_LOT );
+        for ( int nId = bitSetId.nextSetBit( 0 ); nId >= 0; nId = bitSetId.nextSetBit( nId + 1 ) )
+        {
+            batch.add( nId );
+            if ( batch.size( ) >= TAILLE_LOT )
+            {
+                consumer.accept( batch );
+                batch = new ArrayList<>( TAILLE_LOT );
+            }
+        }
+        if ( !batch.isEmpty( ) )
+        {
+            consumer.accept( batch );
+        }
     }
 
     /**
-     * Add Response Value from question reponse to solrItem object
+     * Reindexes the responses of the given forms only: their documents are first removed from the index, then the published responses are indexed by
+     * batches
      * 
-     * @param solrItem
-     *            the solrItem object
-     * @param codeQuestion
-     *            the Question code
-     * @param entryTypeService
-     *            the EntryTypeService
-     * @param response
-     *            the Response
-     * @param formResponseId
-     *            the form Response Id
-     * @param setFieldNameBuilderUsed
+     * @param collectionIdForm
+     *            the ids of the forms
+     * @return the list of errors
      */
-    private void addResponseValue( SolrItem solrItem, String codeQuestion, IEntryTypeService entryTypeService, Response response, int formResponseId,
-            Set<String> setFieldNameBuilderUsed, int nIdFormQuestionResponse )
+    public synchronized List<String> indexForms( Collection<Integer> collectionIdForm )
     {
+        List<String> errors = new ArrayList<>( );
+        if ( collectionIdForm.isEmpty( ) )
+        {
+            return errors;
+        }
+        // the forms are typically reindexed after a change of their questions: the rebuild must not use their cached metadata
+        collectionIdForm.forEach( FormsMetadataCache.getInstance( )::invalidateForm );
 
-  
-            StringBuilder fieldNameBuilder = new StringBuilder( LuceneUtils.createLuceneEntryKey( codeQuestion, response.getIterationNumber( ) ) );
-            if ( !setFieldNameBuilderUsed.contains( fieldNameBuilder.toString( ) ) || ( entryTypeService instanceof EntryTypeCheckBox ) )
+        try
+        {
+            deleteFormsDocuments( collectionIdForm );
+        }
+        catch( IOException | SolrServerException e )
+        {
+            AppLogService.error( e.getMessage( ), e );
+            errors.add( SolrIndexerService.buildErrorMessage( e ) );
+            return errors;
+        }
+
+        final IndexingContext context = createIndexingContext( );
+        AdaptiveBatchSizer batchSizer = createBatchSizer( );
+        int nPageSize = Math.max( batchSizer.getMaxSize( ), AppPropertiesService.getPropertyInt( Utilities.PROPERTY_CURSOR_PAGE_SIZE, 1000 ) );
+        SolrDocumentWriter solrWriter = createSolrWriter( );
+        FormsIndexingPipeline.BatchWriter writer = createBatchWriter( solrWriter, batchSizer, batch -> {
+        } );
+        try
+        {
+            for ( int nIdForm : collectionIdForm )
             {
-                setFieldNameBuilderUsed.add( fieldNameBuilder.toString( ) );
-                addResponseValueByType( solrItem, entryTypeService, response, fieldNameBuilder,  nIdFormQuestionResponse );
+                try
+                {
+                    new FormResponseIdCursor( nIdForm, 0, batchSizer::getBatchSize, nPageSize )
+                            .forEachRemaining( batch -> runBatch( batch, b -> loadBatch( b, context, batchSizer, null ), writer, errors ) );
+                }
+                catch( RuntimeException e )
+                {
+                    // the ids of the form could not be read: the other forms are still reindexed
+                    AppLogService.error( e.getMessage( ), e );
+                    errors.add( SolrIndexerService.buildErrorMessage( e ) );
+                }
             }
-            else
+        }
+        finally
+        {
+            if ( solrWriter != null )
             {
-                AppLogService.error( " FieldNameBuilder {}  already used for formResponse.getId( )  {}  codeQuestion  {} response.getIdResponse( ) {}",
-                        fieldNameBuilder.toString( ), formResponseId, codeQuestion, response.getIdResponse( ) );
+                errors.addAll( solrWriter.close( ) );
             }
-        
+        }
+        AppLogService.info( Utilities.FORMS_REINDEX_INFO, collectionIdForm );
+
+        return errors;
+    }
+
+    /**
+     * Gives the indexed name of a long field
+     * 
+     * @param strFieldName
+     *            the name of the field
+     * @return the name followed by the suffix of its type, which SolrItem adds
+     */
+    private static String getLongFieldName( String strFieldName )
+    {
+        SolrItem solrItem = new SolrItem( );
+        solrItem.addDynamicField( strFieldName, Long.valueOf( 0 ) );
+        return solrItem.getDynamicFields( ).keySet( ).iterator( ).next( );
+    }
+
+    /**
+     * Gives the indexed name of a not analysed text field
+     * 
+     * @param strFieldName
+     *            the name of the field
+     * @return the name followed by the suffix of its type, which SolrItem adds
+     */
+    private static String getNotAnalysedFieldName( String strFieldName )
+    {
+        SolrItem solrItem = new SolrItem( );
+        solrItem.addDynamicFieldNotAnalysed( strFieldName, StringUtils.EMPTY );
+        return solrItem.getDynamicFields( ).keySet( ).iterator( ).next( );
     }
 
     /**
-     * Add Response Value By Type of the Entry to solrItem object
+     * Removes from the index all the documents of the responses of the given forms
      * 
-     * @param solrItem
-     *            the SolrItem object
-     * @param entryTypeService
-     *            the EntryTypeService
-     * @param response
-     *            the response
-     * @param fieldNameBuilder
-     *            the field Name
+     * @param collectionIdForm
+     *            the ids of the forms
+     * @throws SolrServerException
+     *             the SolrServerException
+     * @throws IOException
+     *             the IOException
      */
-    private void addResponseValueByType( SolrItem solrItem, IEntryTypeService entryTypeService, Response response, StringBuilder fieldNameBuilder, int nIdFormQuestionResponse )
+    private void deleteFormsDocuments( Collection<Integer> collectionIdForm ) throws SolrServerException, IOException
     {
+        String strFieldIdForm = getLongFieldName( FormResponseSearchItem.FIELD_ID_FORM );
+        String strQuery = collectionIdForm.stream( ).map( String::valueOf ).collect( Collectors.joining( " OR ", strFieldIdForm + ":(", ")" ) )
+                + " AND " + collectionIdForm.stream( ).map( nIdForm -> ClientUtils.escapeQueryChars( FormResponse.RESOURCE_TYPE + "_" + nIdForm ) )
+                        .collect( Collectors.joining( " OR ", SearchItem.FIELD_TYPE + ":(", ")" ) );
+        SolrServerService.getInstance( ).getSolrServer( ).deleteByQuery( strQuery );
+    }
 
-        if ( entryTypeService instanceof EntryTypeDate )
+    /**
+     * Indexes the form responses changed since the given date and removes the documents of the ones unpublished or deleted
+     * 
+     * @param timestampSince
+     *            the high-water mark of the previous run
+     * @return the list of errors
+     */
+    private List<String> indexChangedSince( Timestamp timestampSince )
+    {
+        List<String> errors = new ArrayList<>( );
+        final IndexingContext context = createIndexingContext( );
+        Set<Integer> setIdUpdated = new TreeSet<>( FormResponseIndexHome.getIdFormResponseUpdatedSince( timestampSince ) );
+        List<Integer> listIdStateChanged = FormResponseIndexHome.getIdResourceWithStateChangedSince( timestampSince, FormResponse.RESOURCE_TYPE );
+        Set<Integer> setIdChanged = new TreeSet<>( setIdUpdated );
+        if ( AppPropertiesService.getPropertyBoolean( Utilities.PROPERTY_STATE_ATOMIC_ENABLE, false ) )
+        {
+            // the documents of the form responses whose workflow state changed alone get their state fields set, the others are built in full
+            Set<Integer> setIdStateOnly = new TreeSet<>( listIdStateChanged );
+            setIdStateOnly.removeAll( setIdUpdated );
+            setIdChanged.addAll( patchWorkflowStates( new ArrayList<>( setIdStateOnly ), context ) );
+        }
+        else
         {
+            setIdChanged.addAll( listIdStateChanged );
+        }
+        final List<Integer> listFormResponsesId = new ArrayList<>( setIdChanged );
 
-            solrItem.addDynamicField( fieldNameBuilder.toString( ) + FormResponseSearchItem.FIELD_DATE_SUFFIX, Long.valueOf( response.getResponseValue( ) ) );
+        for ( int i = 0; i < listFormResponsesId.size( ); i += TAILLE_LOT )
+        {
+            List<Integer> batch = listFormResponsesId.subList( i, Math.min( listFormResponsesId.size( ), i + TAILLE_LOT ) );
+            try
+            {
+                indexAndDeleteUnpublished( batch, context );
+            }
+            catch( IOException | SolrServerException e )
+            {
+                AppLogService.error( Utilities.BATCH_INDEXATION_ERROR, batch.get( 0 ), batch.get( batch.size( ) - 1 ), e );
+                FormsIndexerMetrics.getInstance( ).recordBatchError( );
+                errors.add( SolrIndexerService.buildErrorMessage( e ) );
+            }
+        }
 
+        try
+        {
+            deleteDocuments( DeletedFormResponseHome.getIdFormResponseDeletedUntil( new Timestamp( System.currentTimeMillis( ) ) ) );
         }
-        else if ( entryTypeService instanceof EntryTypeNumbering )
+        catch( IOException | SolrServerException e )
         {
+            AppLogService.error( e.getMessage( ), e );
+            errors.add( SolrIndexerService.buildErrorMessage( e ) );
+        }
 
-                solrItem.addDynamicField( fieldNameBuilder.append( FormResponseSearchItem.FIELD_INT_SUFFIX ).toString( ),
-                        Long.parseLong( response.getResponseValue( ) ) );
+        return errors;
+    }
 
-         }
-         else if ( entryTypeService instanceof EntryTypeGeolocation )
-         {
-               // The built of the address is to be tested...!!!
-                solrItem.addDynamicFieldGeoloc( fieldNameBuilder.toString( ), response.getResponseValue( ), fieldNameBuilder.toString( ) );
+    /**
+     * Sets the workflow state fields of the documents of form responses with Solr atomic updates, without loading their question responses
+     * 
+     * @param listIdFormResponse
+     *            the ids of the form responses whose workflow state changed
+     * @param context
+     *            the indexing context
+     * @return the ids of the form responses whose document is to build in full: missing from Solr, unpublished, deleted, or of a failed update
+     */
+    private List<Integer> patchWorkflowStates( List<Integer> listIdFormResponse, final IndexingContext context )
+    {
+        List<Integer> listToRebuild = new ArrayList<>( );
+        WorkflowStatePatcher patcher = new WorkflowStatePatcher( SolrServerService.getInstance( ).getSolrServer( ), this::getDocumentUid,
+                getLongFieldName( FormResponseSearchItem.FIELD_ID_WORKFLOW_STATE ),
+                getNotAnalysedFieldName( FormResponseSearchItem.FIELD_TITLE_WORKFLOW_STATE ),
+                AppPropertiesService.getPropertyInt( Utilities.PROPERTY_WRITER_COMMIT_WITHIN, 10000 ) );
+        int nPatched = 0;
 
-         }else if ( entryTypeService instanceof EntryTypeCheckBox  ) {
-                	
-                  List<String> dfListBox= (List<String>) solrItem.getDynamicFields().get( fieldNameBuilder.toString( ) + SolrItem.DYNAMIC_LIST_FIELD_SUFFIX );
-                	
-                	if( dfListBox != null ) 
-                	{
-                		dfListBox.add( response.getResponseValue( ) );
-                	}
-                	else
-                	{
-                		
-                		dfListBox= new ArrayList< >( Arrays.asList( response.getResponseValue( )));
-                	}
-                	solrItem.addDynamicField( fieldNameBuilder.toString( ), dfListBox);
-                	
-         } 
-         else if ( ( entryTypeService instanceof AbstractEntryTypeFile || entryTypeService instanceof AbstractEntryTypeImage 
-                || entryTypeService instanceof AbstractEntryTypeGalleryImage ) )
-                {
-                	List<String> dfListUrlFile= (List<String>) solrItem.getDynamicFields().get( fieldNameBuilder.toString( ) + SolrItem.DYNAMIC_LIST_FIELD_SUFFIX );
-
-                	if( dfListUrlFile != null ) 
-                	{
-                		dfListUrlFile.add( response.getResponseValue( ) );
-                		
-                		if( response.getFile() != null) {
-                			dfListUrlFile.add( FormsResponseUtils.buildFileUrl(nIdFormQuestionResponse, response.getFile().getIdFile( )));
-                		}
-                	}
-                	else
-                	{
-                		
-                		dfListUrlFile= new ArrayList< >( Arrays.asList( FormsResponseUtils.buildFileUrl(nIdFormQuestionResponse, (response.getFile()!= null )?response.getFile().getIdFile( ):-1)));
-                	}
-                	solrItem.addDynamicField( fieldNameBuilder.toString( ), dfListUrlFile);
-                }
-          else
-          {
-                    solrItem.addDynamicField( fieldNameBuilder.toString( ), response.getResponseValue( ) );
-          }
+        for ( int i = 0; i < listIdFormResponse.size( ); i += TAILLE_LOT )
+        {
+            List<Integer> batch = listIdFormResponse.subList( i, Math.min( listIdFormResponse.size( ), i + TAILLE_LOT ) );
+            // the unpublished or deleted form responses are left to the full path, which removes their documents
+            Set<Integer> setIdNotPatched = new HashSet<>( batch );
+            List<FormResponse> listFormResponse = FormResponseHome.getFormResponseUncompleteByPrimaryKeyList( batch ).stream( )
+                    .filter( FormResponse::isPublished ).collect( Collectors.toList( ) );
+            IntMap<State> mapResourceState = new IntMap<>( listFormResponse.size( ) );
+            context.getStateResolver( ).resolve( listFormResponse, mapResourceState );
+            Map<Integer, State> mapStateByIdFormResponse = new HashMap<>( );
+            listFormResponse.forEach( formResponse -> mapStateByIdFormResponse.put( formResponse.getId( ), mapResourceState.get( formResponse.getId( ) ) ) );
+            try
+            {
+                List<Integer> listMissing = patcher.patch( mapStateByIdFormResponse );
+                setIdNotPatched.removeAll( mapStateByIdFormResponse.keySet( ) );
+                setIdNotPatched.addAll( listMissing );
+                nPatched += mapStateByIdFormResponse.size( ) - listMissing.size( );
+            }
+            catch( IOException | SolrServerException | SolrException e )
+            {
+                AppLogService.error( Utilities.STATE_PATCH_ERROR, batch.get( 0 ), batch.get( batch.size( ) - 1 ), e );
+            }
+            listToRebuild.addAll( setIdNotPatched );
+        }
+        AppLogService.info( Utilities.STATE_PATCH_INFO, nPatched, listToRebuild.size( ) );
+
+        return listToRebuild;
     }
 
     /**
-     * Concatenates the value of the specified field in this record
+     * Indexes a batch of form responses and removes the documents of the ones which are unpublished or deleted
      * 
-     * @param record
-     *            the record to seek
-     * @param listEntry
-     *            the list of field to concatenate
-     * @param plugin
-     *            the plugin object
-     * @return the builded content
+     * @param formResponsesIdBatch
+     *            the list of Form Responses Id
+     * @param context
+     *            the indexing context
+     * @throws SolrServerException
+     *             the SolrServerException
+     * @throws IOException
+     *             the IOException
+     */
+    private void indexAndDeleteUnpublished( List<Integer> formResponsesIdBatch, final IndexingContext context ) throws SolrServerException, IOException
+    {
+        FormResponseBatch formResponseBatch = loadBatch( formResponsesIdBatch, context, (Executor) null );
+        writeDocuments( getSolrItems( formResponseBatch ) );
+        deleteUnpublished( formResponseBatch );
+    }
+
+    /**
+     * Removes in one call the documents of the form responses of a batch which were not loaded as published: they are unpublished or deleted
+     * 
+     * @param formResponseBatch
+     *            the loaded batch
+     * @throws SolrServerException
+     *             the SolrServerException
+     * @throws IOException
+     *             the IOException
      */
-    private String getContentToIndex( List<FormQuestionResponse> listFormQuestionResponse )
+    private void deleteUnpublished( FormResponseBatch formResponseBatch ) throws SolrServerException, IOException
     {
+        Set<Integer> setIdNotPublished = new HashSet<>( formResponseBatch.getListIdFormResponse( ) );
+        formResponseBatch.getListFormResponse( ).forEach( formResponse -> setIdNotPublished.remove( formResponse.getId( ) ) );
+        deleteDocuments( setIdNotPublished );
+    }
 
-        StringBuilder sb = new StringBuilder( );
-        for ( FormQuestionResponse questionResponse : listFormQuestionResponse )
+    /**
+     * Indexes a batch of form responses taken from the indexing queue
+     * 
+     * @param formResponsesIdBatch
+     *            the list of Form Responses Id
+     */
+    private void indexQueuedBatch( List<Integer> formResponsesIdBatch )
+    {
+        try
+        {
+            indexAndDeleteUnpublished( formResponsesIdBatch, createIndexingContext( ) );
+        }
+        catch( IOException | SolrServerException e )
+        {
+            throw new LuteceSolrRuntimeException( e.getMessage( ), e );
+        }
+    }
+
+    /**
+     * Returns the queue of the form responses waiting to be indexed, created on first use
+     * 
+     * @return the indexing queue
+     */
+    public FormResponseIndexingQueue getIndexingQueue( )
+    {
+        if ( _indexingQueue == null )
         {
-            for ( Response response : questionResponse.getEntryResponse( ) )
+            synchronized( _indexingQueueLock )
             {
-                String responseString = EntryTypeServiceManager.getEntryTypeService( response.getEntry( ) ).getResponseValueForExport( response.getEntry( ),
-                        null, response, null );
-                if ( !StringUtils.isEmpty( responseString ) )
+                if ( _indexingQueue == null )
                 {
-                    sb.append( responseString );
-                    sb.append( " " );
+                    _indexingQueue = new FormResponseIndexingQueue( this::indexQueuedBatch, TAILLE_LOT,
+                            AppPropertiesService.getPropertyLong( Utilities.PROPERTY_QUEUE_WINDOW, 2000L ) );
+                    ShutdownServiceManager.registerShutdownService( _indexingQueue );
                 }
             }
         }
+        return _indexingQueue;
+    }
+
+    /**
+     * Removes from the index the documents of the given form responses
+     * 
+     * @param collectionIdFormResponse
+     *            the ids of the form responses
+     * @throws SolrServerException
+     *             the SolrServerException
+     * @throws IOException
+     *             the IOException
+     */
+    private void deleteDocuments( Collection<Integer> collectionIdFormResponse ) throws SolrServerException, IOException
+    {
+        if ( collectionIdFormResponse.isEmpty( ) )
+        {
+            return;
+        }
+        // the uid is the unique key of the documents: deleting by id does not block the concurrent updates as a delete by query does
+        List<String> listUid = collectionIdFormResponse.stream( ).map( this::getDocumentUid ).collect( Collectors.toList( ) );
+        SolrServerService.getInstance( ).getSolrServer( ).deleteById( listUid );
+        FormsIndexerMetrics.getInstance( ).recordDelete( listUid.size( ) );
+    }
 
-        return sb.toString( );
+    /**
+     * Gives the uid of the document of a form response, prefixed by the webapp name as SolrIndexerService.write does
+     * 
+     * @param nIdFormResponse
+     *            the id of the form response
+     * @return the uid
+     */
+    private String getDocumentUid( int nIdFormResponse )
+    {
+        return SolrIndexerService.getWebAppName( ) + SolrConstants.CONSTANT_UNDERSCORE
+                + getResourceUid( String.valueOf( nIdFormResponse ), FormResponse.RESOURCE_TYPE );
     }
+
     /**
+     * Creates the context of an indexing run, loading its reference data
      * 
-     * @param listResponse
-     * 			  the list of Response
-     * @param mapFields
-     *            the Field list grouping by Field Id: Map<FieldId, Field>
-     * @param solrItem
-     * 			the solr item
-     * @param codeQuestion
-     * 			the question code
-     * @param setFieldNameBuilderUsed
-     * 			the 
+     * @return the indexing context
      */
-    private void addDynamicFieldGeoloc( List<Response> listResponse, 
-    		Map<Integer,List<fr.paris.lutece.plugins.genericattributes.business.Field>> mapFields, 
-    		SolrItem solrItem, String codeQuestion, Set<String> setFieldNameBuilderUsed )
+    private IndexingContext createIndexingContext( )
     {
-    	double x;
-    	double y;
-    	String address;    	  
-        for (Map.Entry<Integer, List<Response>> mapentry : listResponse.stream().collect(Collectors.groupingBy( Response::getIterationNumber )).entrySet()) {
-       	 		x=0; y=0; address=null;
-        		String fieldNameBuilder =  LuceneUtils.createLuceneEntryKey( codeQuestion,  mapentry.getKey( ) ) ;
-        		if ( !setFieldNameBuilderUsed.contains( fieldNameBuilder ) )
-                {
-                     setFieldNameBuilderUsed.add( fieldNameBuilder );
-                    for ( Response response : mapentry.getValue() )
-     		        {     		        
-     		            switch( mapFields.get(response.getField().getIdField( )).get(0).getValue( ) )
-     		            {
-     		                case IEntryTypeService.FIELD_ADDRESS:
-     		                	address= response.getResponseValue( );
-     		                    break;
-     		
-     		                case IEntryTypeService.FIELD_X:
-     		                    x= StringUtils.isEmpty(response.getResponseValue( ))? 0: Double.parseDouble( response.getResponseValue( ));
-     		                    break;
-     		
-     		                case IEntryTypeService.FIELD_Y:
-     		                	y= StringUtils.isEmpty(response.getResponseValue( ))? 0: Double.parseDouble( response.getResponseValue( ));
-     		                    break;
-     		                default:
-     		         
-     		                	break;
-     		            }
-     		        }
-     		        if( address != null && x != 0 && y != 0 ) {
-     		        	
-     		        	solrItem.addDynamicFieldGeoloc( fieldNameBuilder , address, x, y, FormResponse.RESOURCE_TYPE);
-     		        }
-                 
-                 }
-                 else
-                 {
-                     AppLogService.error( " FieldNameBuilder {}  already used for  {}  codeQuestion  {} ",
-                             fieldNameBuilder, codeQuestion );
-                 }
-        }
-         
-       }
-    
+        // the entries may have changed since the previous run
+        getDocumentBuilder( ).clearHandlers( );
+        return new IndexingContext( _resourceWorkflowService,
+                ( _stateService != null && _resourceWorkflowService != null ) ? _stateService.getListStateByFilter( new StateFilter( ) ) : new ArrayList<>( ) );
+    }
+
     /**
+     * Loads from the database everything needed to build the documents of a batch of form responses. Each entity is loaded once, the reference data
+     * comes from the indexing context. Given an executor, the loads which do not depend on each other run at the same time: the workflow states with the
+     * question responses, then the questions with the entry fields.
      * 
-     * @param listResponse
-     * 			  the list of Response
-     * @param mapFields
-     *            the Field list grouping by Field Id: Map<FieldId, Field>
-     * @param solrItem
-     * 			the solr item
-     * @param codeQuestion
-     * 			the question code
-     * @param setFieldNameBuilderUsed
-     * 			the 
-     * @param strRole
-     * 			the role of the user
-     * @param strGuid
-     * 			the guid of the user
-     */
-    private void addDynamicFieldCartography( List<Response> listResponse, 
-    		Map<Integer,List<fr.paris.lutece.plugins.genericattributes.business.Field>> mapFields, 
-    		SolrItem solrItem, String codeQuestion, Set<String> setFieldNameBuilderUsed, String strRole, String strGuid )
-    {
-    	String geojson;
-    	String idlayer;
-        for (Map.Entry<Integer, List<Response>> mapentry : listResponse.stream().collect(Collectors.groupingBy( Response::getIterationNumber )).entrySet()) {
-       	 		geojson=null; idlayer=null;
-        		String fieldNameBuilder =  LuceneUtils.createLuceneEntryKey( codeQuestion,  mapentry.getKey( ) ) ;
-        		if ( !setFieldNameBuilderUsed.contains( fieldNameBuilder ) )
-                {
-                     setFieldNameBuilderUsed.add( fieldNameBuilder );
-                    for ( Response response : mapentry.getValue() )
-     		        {     		        
-     		            switch( mapFields.get(response.getField().getIdField( )).get(0).getValue( ) )
-     		            {
-     		                case IEntryTypeService.FIELD_GEOJSON:
-     		                	geojson= response.getResponseValue( );
-     		                    break;
-     		
-     		                case IEntryTypeService.FIELD_ID_LAYER:
-     		                    idlayer= response.getResponseValue( );
-     		                    break;
-     		               default:
-     		     		         
-    		                	break;
-     		            }
-     		        }
-     		        if( geojson != null && idlayer != null ) {
-     		        	solrItem.addDynamicFieldGeoloc(fieldNameBuilder, geojson, FormResponse.RESOURCE_TYPE);
-     		        	solrItem.addDynamicField( FormResponseSearchItem.FIELD_DATA_LAYER, idlayer );
-     		        	solrItem.addDynamicField( FormResponseSearchItem.FIELD_ROLE_USER, strRole );
-     		        	solrItem.addDynamicField( FormResponseSearchItem.FIELD_GUID, strGuid );
-     		        }
-                 
-                 }
-                 else
-                 {
-                     AppLogService.error( " FieldNameBuilder {}  already used for  {}  codeQuestion  {} ",
-                             fieldNameBuilder, codeQuestion );
-                 }
-        }
-         
-       }
+     * @param formResponsesIdBatch
+     *            the list of Form Responses Id
+     * @param context
+     *            the indexing context
+     * @param queryExecutor
+     *            runs the loads in parallel with the calling thread, null to run them all on the calling thread
+     * @return the loaded batch
+     */
+    private FormResponseBatch loadBatch( List<Integer> formResponsesIdBatch, final IndexingContext context, Executor queryExecutor )
+    {
+        long lStart = System.nanoTime( );
+        int nQueries = 0;
+        IntMap<State> mapResourceState = new IntMap<>( formResponsesIdBatch.size( ) );
+        // we filter the formResponse on the status to index only the published formsResponse
+        List<FormResponse> listFormResponse = FormResponseHome.getFormResponseUncompleteByPrimaryKeyList( formResponsesIdBatch ).stream( )
+                .filter( FormResponse::isPublished ).collect( Collectors.toList( ) );
+        nQueries++;
+        List<Integer> formResponseIdList = listFormResponse.stream( ).map( FormResponse::getId ).collect( Collectors.toList( ) );
+
+        List<FormQuestionResponse> listFormQuestionResponse = new ArrayList<>( );
+        List<fr.paris.lutece.plugins.genericattributes.business.Field> listFields = new ArrayList<>( );
+        if ( !formResponseIdList.isEmpty( ) )
+        {
+            CompletableFuture<Integer> futureStates = supply( ( ) -> context.getStateResolver( ).resolve( listFormResponse, mapResourceState ),
+                    queryExecutor );
+
+            listFormQuestionResponse = FormQuestionResponseHome.getFormQuestionResponseListByFormResponseList( formResponseIdList );
+            nQueries++;
+            // at most two queries of the batch at once: BatchLoadExecutor bounds the batches by half the connections
+            nQueries += futureStates.join( );
+
+            Set<Integer> setIdEntry = new HashSet<>( );
+            Set<Integer> setIdQuestion = new HashSet<>( );
+            listFormQuestionResponse.forEach( fqr -> {
+                setIdQuestion.add( fqr.getQuestion( ).getId( ) );
+                setIdEntry.add( fqr.getQuestion( ).getIdEntry( ) );
+                fqr.getEntryResponse( ).forEach( rsp -> setIdEntry.add( rsp.getEntry( ).getIdEntry( ) ) );
+            } );
+            CompletableFuture<Integer> futureQuestions = supply( ( ) -> context.loadQuestions( setIdQuestion ), queryExecutor );
+
+            nQueries += FormsMetadataCache.getInstance( ).loadFields( setIdEntry, listFields );
+            nQueries += futureQuestions.join( );
+        }
+
+        AppLogService.debug( Utilities.BATCH_QUERIES_INFO, formResponsesIdBatch.size( ), nQueries );
+        FormsIndexerMetrics.getInstance( ).recordLoad( System.nanoTime( ) - lStart, nQueries );
+
+        return new FormResponseBatch( formResponsesIdBatch, listFormResponse, mapResourceState, context.getMapForm( ),
+                listFormQuestionResponse.stream( ).collect( Collectors.groupingBy( FormQuestionResponse::getIdFormResponse ) ), context.getMapQuestions( ),
+                listFields );
+    }
+
+    /**
+     * Loads a batch and tells the batch sizer the latency and the number of question responses observed
+     * 
+     * @param formResponsesIdBatch
+     *            the list of Form Responses Id
+     * @param context
+     *            the indexing context
+     * @param batchSizer
+     *            the sizer of the batches
+     * @param queryExecutor
+     *            runs the independent loads in parallel, null to run them on the calling thread
+     * @return the loaded batch
+     */
+    private FormResponseBatch loadBatch( List<Integer> formResponsesIdBatch, final IndexingContext context, AdaptiveBatchSizer batchSizer,
+            Executor queryExecutor )
+    {
+        long lStart = System.nanoTime( );
+        FormResponseBatch formResponseBatch = loadBatch( formResponsesIdBatch, context, queryExecutor );
+        int nFanOut = 0;
+        for ( List<FormQuestionResponse> listFormQuestionResponse : formResponseBatch.getMapFormQuestionResponse( ).values( ) )
+        {
+            nFanOut += listFormQuestionResponse.size( );
+        }
+        batchSizer.record( formResponsesIdBatch.size( ), System.nanoTime( ) - lStart, nFanOut );
+        return formResponseBatch;
+    }
+
+    /**
+     * Runs a load on an executor
+     * 
+     * @param load
+     *            the load, giving its number of database queries
+     * @param executor
+     *            the executor, null to run the load on the calling thread
+     * @return the number of database queries, once the load is done
+     */
+    private static CompletableFuture<Integer> supply( Supplier<Integer> load, Executor executor )
+    {
+        return ( executor == null ) ? CompletableFuture.completedFuture( load.get( ) ) : CompletableFuture.supplyAsync( load, executor );
+    }
+
+    /**
+     * Builds the documents of a loaded batch
+     * 
+     * @param batch
+     *            the loaded batch
+     * @return collection of SolrItem
+     */
+    private Collection<SolrItem> getSolrItems( FormResponseBatch batch )
+    {
+        long lStart = System.nanoTime( );
+        Collection<SolrItem> collectionSolrItem = getDocumentBuilder( ).getSolrItems( batch );
+        FormsIndexerMetrics.getInstance( ).recordBuild( System.nanoTime( ) - lStart );
+        return collectionSolrItem;
+    }
+
+    /**
+     * Creates the sizer of the batches of a bulk indexing
+     * 
+     * @return the adaptive sizer if enabled, else a sizer keeping the configured batch size
+     */
+    private AdaptiveBatchSizer createBatchSizer( )
+    {
+        if ( !AppPropertiesService.getPropertyBoolean( Utilities.PROPERTY_BATCH_ADAPTIVE_ENABLE, false ) )
+        {
+            return AdaptiveBatchSizer.fixed( TAILLE_LOT );
+        }
+        return new AdaptiveBatchSizer( TAILLE_LOT, AppPropertiesService.getPropertyInt( Utilities.PROPERTY_BATCH_ADAPTIVE_MIN, 20 ),
+                AppPropertiesService.getPropertyInt( Utilities.PROPERTY_BATCH_ADAPTIVE_MAX, 1000 ),
+                AppPropertiesService.getPropertyLong( Utilities.PROPERTY_BATCH_ADAPTIVE_TARGET, 2000L ),
+                AppPropertiesService.getPropertyInt( Utilities.PROPERTY_BATCH_ADAPTIVE_MAX_FANOUT, 50000 ) );
+    }
+
+    /**
+     * Creates the writer of the documents of a bulk indexing, if enabled
+     * 
+     * @return the writer, or null to write each batch synchronously
+     */
+    private SolrDocumentWriter createSolrWriter( )
+    {
+        if ( !AppPropertiesService.getPropertyBoolean( Utilities.PROPERTY_WRITER_ENABLE, false ) )
+        {
+            return null;
+        }
+        return createSolrWriter( SolrServerService.getInstance( ).getSolrServer( ), null,
+                AppPropertiesService.getPropertyInt( Utilities.PROPERTY_WRITER_COMMIT_WITHIN, 10000 ) );
+    }
+
+    /**
+     * Creates a writer of the documents of a bulk indexing
+     * 
+     * @param solrClient
+     *            the Solr client
+     * @param strCollection
+     *            the collection written, null for the default collection of the client
+     * @param nCommitWithinMillis
+     *            the commitWithin of the update requests, -1 for none
+     * @return the writer
+     */
+    private SolrDocumentWriter createSolrWriter( SolrClient solrClient, String strCollection, int nCommitWithinMillis )
+    {
+        return new SolrDocumentWriter( solrClient, strCollection, AppPropertiesService.getPropertyInt( Utilities.PROPERTY_WRITER_MAX_DOCUMENTS, 500 ),
+                AppPropertiesService.getPropertyLong( Utilities.PROPERTY_WRITER_MAX_BYTES, 5242880L ),
+                AppPropertiesService.getPropertyLong( Utilities.PROPERTY_WRITER_MAX_DELAY, 2000L ),
+                AppPropertiesService.getPropertyInt( Utilities.PROPERTY_WRITER_IN_FLIGHT, 2 ), nCommitWithinMillis );
+    }
+
+    /**
+     * Creates the writer of the batches of a bulk indexing
+     * 
+     * @param solrWriter
+     *            the writer of the documents, null to write each batch synchronously
+     * @param batchSizer
+     *            the sizer of the batches, told the latency of the synchronous writes
+     * @param committedListener
+     *            notified with the ids of each batch once its documents are written
+     * @return the batch writer
+     */
+    private FormsIndexingPipeline.BatchWriter createBatchWriter( SolrDocumentWriter solrWriter, AdaptiveBatchSizer batchSizer,
+            Consumer<List<Integer>> committedListener )
+    {
+        if ( solrWriter == null )
+        {
+            return ( listIdFormResponse, collectionSolrItem ) -> {
+                long lStart = System.nanoTime( );
+                writeDocuments( collectionSolrItem );
+                batchSizer.record( listIdFormResponse.size( ), System.nanoTime( ) - lStart, 0 );
+                committedListener.accept( listIdFormResponse );
+            };
+        }
+        return ( listIdFormResponse, collectionSolrItem ) -> {
+            try
+            {
+                solrWriter.add( collectionSolrItem, ( ) -> committedListener.accept( listIdFormResponse ) );
+            }
+            catch( InterruptedException e )
+            {
+                Thread.currentThread( ).interrupt( );
+                throw new InterruptedIOException( e.getMessage( ) );
+            }
+        };
+    }
+
+    /**
+     * Writes documents to Solr
+     * 
+     * @param collectionSolrItem
+     *            the documents
+     * @throws IOException
+     *             the IOException
+     */
+    private void writeDocuments( Collection<SolrItem> collectionSolrItem ) throws IOException
+    {
+        if ( collectionSolrItem.isEmpty( ) )
+        {
+            return;
+        }
+        long lStart = System.nanoTime( );
+        SolrIndexerService.write( collectionSolrItem );
+        FormsIndexerMetrics.getInstance( ).recordWrite( System.nanoTime( ) - lStart, collectionSolrItem.size( ) );
+    }
+
+    /**
+     * Returns the builder of the documents, created on first use
+     * 
+     * @return the document builder
+     */
+    private FormResponseDocumentBuilder getDocumentBuilder( )
+    {
+        if ( _documentBuilder == null )
+        {
+            _documentBuilder = new FormResponseDocumentBuilder( SolrIndexerService.getWebAppName( ), EntryTypeServiceManager::getEntryTypeService,
+                    SpringContextService.getBeansOfType( IResponseFieldMapper.class ), ContentLimits.fromProperties( ), GeoShapeOptions.fromProperties( ) );
+        }
+        return _documentBuilder;
+    }
 }
@@ -41,11 +41,81 @@ public class Utilities
     public static final String PROPERTY_INDEXER_ENABLE = "forms-solr.indexer.enable";
     public static final String PROPERTY_INDEXER_VERSION = "forms-solr.indexer.version";
     public static final String PROPERTY_BATCH = "forms-solr.index.writer.commit.size";
+    public static final String PROPERTY_PIPELINE_ENABLE = "forms-solr.indexer.pipeline.enable";
+    public static final String PROPERTY_PIPELINE_WORKERS = "forms-solr.indexer.pipeline.workers";
+    public static final String PROPERTY_PIPELINE_QUEUE_SIZE = "forms-solr.indexer.pipeline.queue.size";
+    public static final String PROPERTY_CURSOR_PAGE_SIZE = "forms-solr.indexer.cursor.page.size";
+    public static final String PROPERTY_RESUME_ENABLE = "forms-solr.indexer.resume.enable";
+    public static final String PROPERTY_QUEUE_ENABLE = "forms-solr.indexer.queue.enable";
+    public static final String PROPERTY_QUEUE_WINDOW = "forms-solr.indexer.queue.window.ms";
+    public static final String PROPERTY_METADATA_CACHE_ENABLE = "forms-solr.metadata.cache.enable";
+    public static final String PROPERTY_METADATA_CACHE_SIZE = "forms-solr.metadata.cache.size";
+    public static final String PROPERTY_METADATA_CACHE_TTL = "forms-solr.metadata.cache.ttl.seconds";
+    public static final String PROPERTY_WRITER_ENABLE = "forms-solr.indexer.writer.enable";
+    public static final String PROPERTY_WRITER_MAX_DOCUMENTS = "forms-solr.indexer.writer.max.documents";
+    public static final String PROPERTY_WRITER_MAX_BYTES = "forms-solr.indexer.writer.max.bytes";
+    public static final String PROPERTY_WRITER_MAX_DELAY = "forms-solr.indexer.writer.max.delay.ms";
+    public static final String PROPERTY_WRITER_IN_FLIGHT = "forms-solr.indexer.writer.in.flight";
+    public static final String PROPERTY_WRITER_COMMIT_WITHIN = "forms-solr.indexer.writer.commit.within.ms";
+    public static final String PROPERTY_BATCH_ADAPTIVE_ENABLE = "forms-solr.indexer.batch.adaptive.enable";
+    public static final String PROPERTY_BATCH_ADAPTIVE_MIN = "forms-solr.indexer.batch.adaptive.min";
+    public static final String PROPERTY_BATCH_ADAPTIVE_MAX = "forms-solr.indexer.batch.adaptive.max";
+    public static final String PROPERTY_BATCH_ADAPTIVE_TARGET = "forms-solr.indexer.batch.adaptive.target.ms";
+    public static final String PROPERTY_BATCH_ADAPTIVE_MAX_FANOUT = "forms-solr.indexer.batch.adaptive.max.fanout";
+    public static final String PROPERTY_SHADOW_ENABLE = "forms-solr.indexer.shadow.enable";
+    public static final String PROPERTY_SHADOW_ALIAS = "forms-solr.indexer.shadow.alias";
+    public static final String PROPERTY_SHADOW_CONFIGSET = "forms-solr.indexer.shadow.configset";
+    public static final String PROPERTY_SHADOW_CONFIGSET_BULK = "forms-solr.indexer.shadow.configset.bulk";
+    public static final String PROPERTY_SHADOW_SHARDS = "forms-solr.indexer.shadow.shards";
+    public static final String PROPERTY_SHADOW_REPLICAS = "forms-solr.indexer.shadow.replicas";
+    public static final String PROPERTY_SHADOW_MIN_PERCENT = "forms-solr.indexer.shadow.min.percent";
+    public static final String PROPERTY_SHADOW_DELETE_PREVIOUS = "forms-solr.indexer.shadow.delete.previous";
+    public static final String PROPERTY_CONTENT_MAX_LENGTH = "forms-solr.indexer.content.max.length";
+    public static final String PROPERTY_CONTENT_TRUNCATE = "forms-solr.indexer.content.truncate";
+    public static final String PROPERTY_CONTENT_SKIP = "forms-solr.indexer.content.skip";
+    public static final String PROPERTY_LOAD_CONCURRENT_ENABLE = "forms-solr.indexer.load.concurrent.enable";
+    public static final String PROPERTY_LOAD_DB_POOL_SIZE = "forms-solr.indexer.load.db.pool.size";
+    public static final String PROPERTY_LOAD_VIRTUAL_THREADS = "forms-solr.indexer.load.virtual.threads";
+    public static final String PROPERTY_GEOJSON_BBOX_ENABLE = "forms-solr.indexer.geojson.bbox.enable";
+    public static final String PROPERTY_GEOJSON_MAX_LENGTH = "forms-solr.indexer.geojson.max.length";
+    public static final String PROPERTY_STATE_ATOMIC_ENABLE = "forms-solr.indexer.state.atomic.enable";
+    public static final String PROPERTY_HASH_ENABLE = "forms-solr.indexer.hash.enable";
+    public static final String DATASTORE_KEY_LAST_COMMITTED_ID = "forms-solr.indexer.lastCommittedId";
+    public static final String DATASTORE_KEY_DELTA_LAST_RUN = "forms-solr.indexer.delta.lastRun";
     public static final String RESOURCE_TYPE_FORMS = "forms";
     public static final String SHORT_NAME_FORMS = "formsResponse";
     public static final String SHORT_ROLE_FORMS = "formResponse";
     public static final String DOC_INDEXATION_ERROR = "[SolrFormsResponseIndexer] An error occured during the indexation of the formResponse id: {}";
-    public static final String DOC_DELETE_BY_QUERY_ERROR = "[SolrFormsResponseIndexer] An error occured during the delete by query of the formResponse id: {}";
+    public static final String DOC_FORM_MISSING_WARNING = "[SolrFormsResponseIndexer] The formResponse id: {} is not indexed, its form id: {} does not exist";
+    public static final String DOC_DELETE_ERROR = "[SolrFormsResponseIndexer] An error occured during the delete of the formResponse id: {}";
+    public static final String BATCH_INDEXATION_ERROR = "[SolrFormsResponseIndexer] An error occured during the indexation of the batch of formResponse ids from {} to {}";
+    public static final String BATCH_QUERIES_INFO = "[SolrFormsResponseIndexer] Batch of {} formResponses loaded with {} database queries";
+    public static final String RESUME_INFO = "[SolrFormsResponseIndexer] Resuming the indexation run {} after the formResponse id: {} ({} formResponses in {} batches already committed)";
+    public static final String CHECKPOINT_INFO = "[SolrFormsResponseIndexer] The indexation run {} stopped with errors, it can resume after the formResponse id: {} ({} formResponses in {} batches committed)";
+    public static final String QUEUE_FLUSH_INFO = "[SolrFormsResponseIndexer] {} formResponses indexed from the queue, {} ms after the first was queued, {} waiting";
+    public static final String QUEUE_GIVE_UP_ERROR = "[SolrFormsResponseIndexer] {} formResponses of the queue failed {} times, left to the next incremental indexing: {}";
+    public static final String QUEUE_SHUTDOWN_ERROR = "[SolrFormsResponseIndexer] {} formResponses of the queue were not indexed before the shutdown";
+    public static final String FORMS_REINDEX_INFO = "[SolrFormsResponseIndexer] The responses of the forms {} are reindexed";
+    public static final String FORMS_REINDEX_ERROR = "[SolrFormsResponseIndexer] The reindex of the responses of the forms {} ended with {} errors";
+    public static final String WRITER_REQUEST_ERROR = "[SolrFormsResponseIndexer] An error occured during the Solr update request of {} documents";
+    public static final String BATCH_SIZE_INFO = "[SolrFormsResponseIndexer] The batch size settled on {} formResponses";
+    public static final String SHADOW_CREATE_INFO = "[SolrFormsResponseIndexer] Full indexation into the shadow collection {}";
+    public static final String SHADOW_SWAP_INFO = "[SolrFormsResponseIndexer] The alias {} now points at the collection {} of {} documents";
+    public static final String SHADOW_COUNT_ERROR = "[SolrFormsResponseIndexer] The shadow collection {} has {} documents instead of the {} published formResponses";
+    public static final String SHADOW_RATIO_ERROR = "[SolrFormsResponseIndexer] The shadow collection {} has {} documents, too few against the {} documents of the live collection {}";
+    public static final String SHADOW_CATCH_UP_INFO = "[SolrFormsResponseIndexer] Indexing the formResponses changed or deleted since {}, while the shadow collection was built";
+    public static final String SHADOW_SHARED_ERROR = "[SolrFormsResponseIndexer] The alias {} is not dedicated to the formResponses: its collection {} has {} other documents";
+    public static final String SHADOW_SHARED_MESSAGE = "The shadow collection was not swapped: the alias is shared with other documents than the form responses";
+    public static final String SHADOW_COUNT_MESSAGE = "The shadow collection was not swapped: its number of documents does not match";
+    public static final String HASH_REPORT_INFO = "[SolrFormsResponseIndexer] {} changed documents written, {} unchanged documents left out";
+    public static final String RECONCILE_INFO = "[SolrFormsResponseIndexer] Reconciliation: {} documents and {} formResponses read, {} formResponses to reindex, {} documents to delete";
+    public static final String STATE_PATCH_INFO = "[SolrFormsResponseIndexer] {} workflow states set by atomic update, {} formResponses left to a full indexing";
+    public static final String STATE_PATCH_ERROR = "[SolrFormsResponseIndexer] Error during the atomic update of the workflow states of the formResponses from {} to {}, left to a full indexing";
+    public static final String LOAD_EXECUTOR_INFO = "[SolrFormsResponseIndexer] Up to {} batches loaded concurrently on {} threads";
+    public static final String PIPELINE_TIMEOUT_ERROR = "[SolrFormsResponseIndexer] The indexing pipeline did not terminate within {} minutes";
+    public static final String PIPELINE_STAGE_ERROR = "[SolrFormsResponseIndexer] A stage of the indexing pipeline stopped: the run is aborted";
+    public static final String PIPELINE_STAGE_MESSAGE = "A stage of the indexing pipeline stopped: the batches left are not indexed";
+    public static final String PIPELINE_TIMEOUT_MESSAGE = "The indexation did not terminate in time: the batches still running are not indexed";
 
     /**
      * Private constructor - this class does not need to be instantiated
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+
+import fr.paris.lutece.plugins.workflowcore.business.state.State;
+import fr.paris.lutece.portal.service.search.SearchItem;
+
+/**
+ * Updates the workflow state of indexed form responses with Solr atomic updates: only the state id and title fields are set, the rest of the documents
+ * is left as indexed. The documents must exist: the ones missing are given back to be built in full.
+ * <p>
+ * Solr rebuilds an atomically updated document from its stored fields, so the fields of the documents must all be stored or have docValues.
+ * </p>
+ */
+public class WorkflowStatePatcher
+{
+    private static final String MODIFIER_SET = "set";
+    private static final String FIELD_VERSION = "_version_";
+    // optimistic concurrency: a positive version of 1 makes the update fail if the document does not exist
+    private static final Long VERSION_MUST_EXIST = 1L;
+    private static final int HTTP_CONFLICT = 409;
+
+    private final SolrClient _solrClient;
+    private final IntFunction<String> _uidProvider;
+    private final String _strFieldIdState;
+    private final String _strFieldTitleState;
+    private final int _nCommitWithinMillis;
+
+    /**
+     * Constructor
+     *
+     * @param solrClient
+     *            the client of Solr
+     * @param uidProvider
+     *            gives the indexed uid of the document of a form response
+     * @param strFieldIdState
+     *            the indexed name of the workflow state id field
+     * @param strFieldTitleState
+     *            the indexed name of the workflow state title field
+     * @param nCommitWithinMillis
+     *            the maximum delay before the updates are committed, negative to leave the commits to the Solr configuration
+     */
+    public WorkflowStatePatcher( SolrClient solrClient, IntFunction<String> uidProvider, String strFieldIdState, String strFieldTitleState,
+            int nCommitWithinMillis )
+    {
+        _solrClient = solrClient;
+        _uidProvider = uidProvider;
+        _strFieldIdState = strFieldIdState;
+        _strFieldTitleState = strFieldTitleState;
+        _nCommitWithinMillis = nCommitWithinMillis;
+    }
+
+    /**
+     * Sets the workflow state of the documents of form responses
+     *
+     * @param mapStateByIdFormResponse
+     *            the new state of each form response
+     * @return the ids of the form responses without document, to build in full
+     * @throws SolrServerException
+     *             the SolrServerException
+     * @throws IOException
+     *             the IOException
+     */
+    public List<Integer> patch( Map<Integer, State> mapStateByIdFormResponse ) throws SolrServerException, IOException
+    {
+        if ( mapStateByIdFormResponse.isEmpty( ) )
+        {
+            return Collections.emptyList( );
+        }
+        Map<String, Integer> mapIdFormResponseByUid = new HashMap<>( );
+        mapStateByIdFormResponse.keySet( ).forEach( nIdFormResponse -> mapIdFormResponseByUid.put( _uidProvider.apply( nIdFormResponse ), nIdFormResponse ) );
+
+        // one real-time get tells the existing documents, including the ones not committed yet
+        ModifiableSolrParams params = new ModifiableSolrParams( );
+        params.set( CommonParams.FL, SearchItem.FIELD_UID );
+        Set<String> setExistingUid = new HashSet<>( );
+        for ( SolrDocument document : _solrClient.getById( mapIdFormResponseByUid.keySet( ), params ) )
+        {
+            setExistingUid.add( String.valueOf( document.getFirstValue( SearchItem.FIELD_UID ) ) );
+        }
+
+        List<Integer> listMissing = new ArrayList<>( );
+        List<SolrInputDocument> listDocuments = new ArrayList<>( setExistingUid.size( ) );
+        mapIdFormResponseByUid.forEach( ( strUid, nIdFormResponse ) -> {
+            if ( !setExistingUid.contains( strUid ) )
+            {
+                listMissing.add( nIdFormResponse );
+                return;
+            }
+            State state = mapStateByIdFormResponse.get( nIdFormResponse );
+            SolrInputDocument document = new SolrInputDocument( );
+            document.addField( SearchItem.FIELD_UID, strUid );
+            document.addField( FIELD_VERSION, VERSION_MUST_EXIST );
+            document.addField( _strFieldIdState, Collections.singletonMap( MODIFIER_SET, Long.valueOf( state.getId( ) ) ) );
+            document.addField( _strFieldTitleState, Collections.singletonMap( MODIFIER_SET, state.getName( ) ) );
+            listDocuments.add( document );
+        } );
+
+        if ( !listDocuments.isEmpty( ) )
+        {
+            try
+            {
+                _solrClient.add( listDocuments, _nCommitWithinMillis );
+            }
+            catch( SolrException e )
+            {
+                if ( e.code( ) != HTTP_CONFLICT )
+                {
+                    throw e;
+                }
+                // a document was deleted since the get: the whole batch is built in full
+                return new ArrayList<>( mapStateByIdFormResponse.keySet( ) );
+            }
+        }
+        return listMissing;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import fr.paris.lutece.plugins.forms.business.Form;
+import fr.paris.lutece.plugins.forms.business.FormResponse;
+import fr.paris.lutece.plugins.forms.modules.solr.util.IntMap;
+import fr.paris.lutece.plugins.workflowcore.business.state.State;
+import fr.paris.lutece.plugins.workflowcore.service.resource.IResourceWorkflowService;
+
+/**
+ * Resolves the workflow state of the form responses of a batch. Only the workflows of the forms present in the batch are queried, once per form, and the
+ * states are looked up by id.
+ */
+public class WorkflowStateResolver
+{
+    private final IResourceWorkflowService _resourceWorkflowService;
+    private final IntMap<State> _mapStateById;
+    private final IntMap<Form> _mapFormById;
+    private final State _defaultState;
+
+    /**
+     * Constructor
+     * 
+     * @param resourceWorkflowService
+     *            the resource workflow service, null if the workflow is not available
+     * @param listState
+     *            the list of all workflow states
+     * @param listForms
+     *            the forms
+     * @param defaultState
+     *            the state of the form responses without workflow
+     */
+    public WorkflowStateResolver( IResourceWorkflowService resourceWorkflowService, List<State> listState, List<Form> listForms, State defaultState )
+    {
+        _resourceWorkflowService = resourceWorkflowService;
+        _defaultState = defaultState;
+        _mapStateById = new IntMap<>( listState.size( ) );
+        listState.forEach( state -> _mapStateById.put( state.getId( ), state ) );
+        _mapFormById = new IntMap<>( listForms.size( ) );
+        listForms.forEach( form -> _mapFormById.put( form.getId( ), form ) );
+    }
+
+    /**
+     * Resolves the state of each form response
+     * 
+     * @param listFormResponse
+     *            the form responses of the batch
+     * @param mapResourceState
+     *            filled with the state of each form response, grouping by FormResponseId
+     * @return the number of database queries done
+     */
+    public int resolve( List<FormResponse> listFormResponse, IntMap<State> mapResourceState )
+    {
+        // group the form responses by form
+        IntMap<List<Integer>> mapIdFormResponseByForm = new IntMap<>( );
+        for ( FormResponse formResponse : listFormResponse )
+        {
+            mapResourceState.put( formResponse.getId( ), _defaultState );
+            mapIdFormResponseByForm.computeIfAbsent( formResponse.getFormId( ), ArrayList::new ).add( formResponse.getId( ) );
+        }
+
+        if ( _resourceWorkflowService == null )
+        {
+            return 0;
+        }
+
+        int [ ] nQueries = {
+                0
+        };
+        mapIdFormResponseByForm.forEach( ( nIdForm, listIdFormResponse ) -> {
+            Form form = _mapFormById.get( nIdForm );
+            if ( form == null )
+            {
+                // created after the forms of the run were loaded
+                form = FormsMetadataCache.getInstance( ).getForm( nIdForm );
+            }
+            if ( form == null || form.getIdWorkflow( ) <= 0 )
+            {
+                return;
+            }
+
+            Map<Integer, Integer> mapIdState = _resourceWorkflowService.getListIdStateByListId( listIdFormResponse, form.getIdWorkflow( ),
+                    FormResponse.RESOURCE_TYPE, form.getId( ) );
+            nQueries [0]++;
+            mapIdState.forEach( ( nIdFormResponse, nIdState ) -> {
+                State state = ( nIdState != null ) ? _mapStateById.get( nIdState ) : null;
+                if ( state != null )
+                {
+                    mapResourceState.put( nIdFormResponse, state );
+                }
+            } );
+        } );
+
+        return nQueries [0];
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.service.mapper;
+
+import fr.paris.lutece.plugins.genericattributes.service.entrytype.IEntryTypeService;
+
+/**
+ * The way the responses of an entry are indexed, resolved once per entry
+ */
+public final class EntryTypeHandler
+{
+    /**
+     * The level at which the responses of an entry are indexed
+     */
+    public enum Kind
+    {
+        /** the address and coordinates of each iteration make one geolocation field */
+        GEOLOCATION,
+        /** the geojson and layer of each iteration make one geolocation field */
+        CARTOGRAPHY,
+        /** each response is mapped by a field mapper */
+        RESPONSE
+    }
+
+    private final IEntryTypeService _entryTypeService;
+    private final Kind _kind;
+    private final IResponseFieldMapper _mapper;
+
+    /**
+     * Constructor
+     *
+     * @param entryTypeService
+     *            the entry type service
+     * @param kind
+     *            the level at which the responses are indexed
+     * @param mapper
+     *            the field mapper of the responses
+     */
+    EntryTypeHandler( IEntryTypeService entryTypeService, Kind kind, IResponseFieldMapper mapper )
+    {
+        _entryTypeService = entryTypeService;
+        _kind = kind;
+        _mapper = mapper;
+    }
+
+    /**
+     * @return the entry type service
+     */
+    public IEntryTypeService getEntryTypeService( )
+    {
+        return _entryTypeService;
+    }
+
+    /**
+     * @return the level at which the responses are indexed
+     */
+    public Kind getKind( )
+    {
+        return _kind;
+    }
+
+    /**
+     * @return the field mapper of the responses
+     */
+    public IResponseFieldMapper getMapper( )
+    {
+        return _mapper;
+    }
+}
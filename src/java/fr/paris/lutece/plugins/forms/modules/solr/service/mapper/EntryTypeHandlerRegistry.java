@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.service.mapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import fr.paris.lutece.plugins.forms.service.entrytype.EntryTypeCartography;
+import fr.paris.lutece.plugins.forms.service.entrytype.EntryTypeGeolocation;
+import fr.paris.lutece.plugins.genericattributes.business.Entry;
+import fr.paris.lutece.plugins.genericattributes.service.entrytype.IEntryTypeService;
+
+/**
+ * Resolves the handler of the entries. The handler is resolved once per entry id and kept until the registry is cleared at the start of the next indexing
+ * run: the indexing of a response is then a map lookup and a call to one mapper instead of an entry type service lookup and a chain of type checks.
+ */
+public class EntryTypeHandlerRegistry
+{
+    private final Function<Entry, IEntryTypeService> _entryTypeResolver;
+    private final List<IResponseFieldMapper> _listMappers;
+    private final Map<Integer, EntryTypeHandler> _mapHandlers = new ConcurrentHashMap<>( );
+
+    /**
+     * Constructor
+     *
+     * @param entryTypeResolver
+     *            resolves the entry type service of an entry
+     * @param listMappers
+     *            the additional mappers, consulted before the mappers of this module
+     */
+    public EntryTypeHandlerRegistry( Function<Entry, IEntryTypeService> entryTypeResolver, List<IResponseFieldMapper> listMappers )
+    {
+        _entryTypeResolver = entryTypeResolver;
+        _listMappers = new ArrayList<>( listMappers );
+        _listMappers.addAll( getDefaultMappers( ) );
+    }
+
+    /**
+     * Gives the mappers of this module, the last one handling any entry type
+     *
+     * @return the mappers
+     */
+    public static List<IResponseFieldMapper> getDefaultMappers( )
+    {
+        return Arrays.asList( new DateFieldMapper( ), new NumberingFieldMapper( ), new CheckBoxFieldMapper( ), new ChoiceFieldMapper( ),
+                new FileFieldMapper( ), new DefaultFieldMapper( ) );
+    }
+
+    /**
+     * Gives the handler of an entry
+     *
+     * @param entry
+     *            the entry
+     * @return the handler
+     */
+    public EntryTypeHandler getHandler( Entry entry )
+    {
+        EntryTypeHandler handler = _mapHandlers.get( entry.getIdEntry( ) );
+        if ( handler == null )
+        {
+            handler = createHandler( entry );
+            _mapHandlers.put( entry.getIdEntry( ), handler );
+        }
+        return handler;
+    }
+
+    /**
+     * Resolves the handler of an entry
+     */
+    private EntryTypeHandler createHandler( Entry entry )
+    {
+        IEntryTypeService entryTypeService = _entryTypeResolver.apply( entry );
+        if ( entryTypeService instanceof EntryTypeGeolocation )
+        {
+            return new EntryTypeHandler( entryTypeService, EntryTypeHandler.Kind.GEOLOCATION, null );
+        }
+        if ( entryTypeService instanceof EntryTypeCartography )
+        {
+            return new EntryTypeHandler( entryTypeService, EntryTypeHandler.Kind.CARTOGRAPHY, null );
+        }
+        for ( IResponseFieldMapper mapper : _listMappers )
+        {
+            if ( mapper.supports( entryTypeService ) )
+            {
+                return new EntryTypeHandler( entryTypeService, EntryTypeHandler.Kind.RESPONSE, mapper );
+            }
+        }
+        // unreachable: the default mappers end with DefaultFieldMapper, which supports any entry type
+        throw new IllegalStateException( "No mapper for the entry " + entry.getIdEntry( ) );
+    }
+
+    /**
+     * Forgets the handlers of the entries, for the next indexing run to resolve them again from the current entries
+     */
+    public void clear( )
+    {
+        _mapHandlers.clear( );
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.service.mapper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import fr.paris.lutece.plugins.forms.modules.solr.util.FieldNameCache;
+import fr.paris.lutece.plugins.forms.util.FormsResponseUtils;
+import fr.paris.lutece.plugins.genericattributes.business.Response;
+import fr.paris.lutece.plugins.genericattributes.service.entrytype.AbstractEntryTypeFile;
+import fr.paris.lutece.plugins.genericattributes.service.entrytype.AbstractEntryTypeGalleryImage;
+import fr.paris.lutece.plugins.genericattributes.service.entrytype.AbstractEntryTypeImage;
+import fr.paris.lutece.plugins.genericattributes.service.entrytype.IEntryTypeService;
+import fr.paris.lutece.plugins.search.solr.indexer.SolrItem;
+
+/**
+ * Adds the download url of the files, images and gallery images to a list field
+ */
+public class FileFieldMapper implements IResponseFieldMapper
+{
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean supports( IEntryTypeService entryTypeService )
+    {
+        return entryTypeService instanceof AbstractEntryTypeFile || entryTypeService instanceof AbstractEntryTypeImage
+                || entryTypeService instanceof AbstractEntryTypeGalleryImage;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings( "unchecked" )
+    public void addResponseValue( SolrItem solrItem, Response response, String strFieldName, int nIdFormQuestionResponse )
+    {
+        List<String> dfListUrlFile = (List<String>) solrItem.getDynamicFields( ).get( FieldNameCache.getSuffixedName( strFieldName, SolrItem.DYNAMIC_LIST_FIELD_SUFFIX ) );
+
+        if ( dfListUrlFile != null )
+        {
+            dfListUrlFile.add( response.getResponseValue( ) );
+
+            if ( response.getFile( ) != null )
+            {
+                dfListUrlFile.add( FormsResponseUtils.buildFileUrl( nIdFormQuestionResponse, response.getFile( ).getIdFile( ) ) );
+            }
+        }
+        else
+        {
+            dfListUrlFile = new ArrayList<>( );
+            dfListUrlFile.add( FormsResponseUtils.buildFileUrl( nIdFormQuestionResponse, ( response.getFile( ) != null ) ? response.getFile( ).getIdFile( ) : -1 ) );
+        }
+        solrItem.addDynamicField( strFieldName, dfListUrlFile );
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.service.mapper;
+
+import fr.paris.lutece.plugins.genericattributes.business.Response;
+import fr.paris.lutece.plugins.genericattributes.service.entrytype.IEntryTypeService;
+import fr.paris.lutece.plugins.search.solr.indexer.SolrItem;
+
+/**
+ * Maps the responses of an entry type to the fields of the Solr document. Other plugins can declare their own mappers as Spring beans: they are consulted
+ * before the mappers of this module.
+ */
+public interface IResponseFieldMapper
+{
+    /**
+     * Tells whether this mapper handles the responses of an entry type
+     *
+     * @param entryTypeService
+     *            the entry type service
+     * @return true if the mapper handles the entry type
+     */
+    boolean supports( IEntryTypeService entryTypeService );
+
+    /**
+     * Tells whether several responses of the same question and iteration are added to the same field
+     *
+     * @return true if the field is multi-valued
+     */
+    default boolean isMultiValued( )
+    {
+        return false;
+    }
+
+    /**
+     * Gives the name of the indexed field on which the responses of a question can be faceted
+     *
+     * @param strFieldName
+     *            the name of the field, built from the question code and the iteration
+     * @return the name of the indexed field, null if the responses are not suited to facets
+     */
+    default String getFacetFieldName( String strFieldName )
+    {
+        return null;
+    }
+
+    /**
+     * Adds the value of a response to the document
+     *
+     * @param solrItem
+     *            the document
+     * @param response
+     *            the response
+     * @param strFieldName
+     *            the name of the field, built from the question code and the iteration
+     * @param nIdFormQuestionResponse
+     *            the form question response id
+     */
+    void addResponseValue( SolrItem solrItem, Response response, String strFieldName, int nIdFormQuestionResponse );
+}
@@ -0,0 +1,625 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.service.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import fr.paris.lutece.portal.service.init.ShutdownService;
+import fr.paris.lutece.portal.service.init.ShutdownServiceManager;
+import fr.paris.lutece.portal.service.util.AppLogService;
+
+/**
+ * Metrics of the forms Solr indexer: a timer per phase of the batch path (database load, document build, Solr write), document counters, per form and
+ * in total, and a histogram of the document sizes. They are published as a JMX MBean and by the metrics servlet.
+ */
+public final class FormsIndexerMetrics implements FormsIndexerMetricsMBean
+{
+    private static final String OBJECT_NAME = "fr.paris.lutece.plugins.forms.modules.solr:type=IndexerMetrics";
+    private static final long [ ] SIZE_BUCKETS = {
+            1024, 4096, 16384, 65536, 262144, 1048576
+    };
+    private static final FormsIndexerMetrics INSTANCE = new FormsIndexerMetrics( );
+
+    private final PhaseTimer _timerLoad = new PhaseTimer( );
+    private final PhaseTimer _timerBuild = new PhaseTimer( );
+    private final PhaseTimer _timerWrite = new PhaseTimer( );
+    private final PhaseTimer _timerQueueFlush = new PhaseTimer( );
+    private final LongAdder _documentsIndexed = new LongAdder( );
+    private final LongAdder _documentsDeleted = new LongAdder( );
+    private final LongAdder _batchErrors = new LongAdder( );
+    private final LongAdder _fieldNameCollisions = new LongAdder( );
+    private final LongAdder _documentsTruncated = new LongAdder( );
+    private final LongAdder _documentsUnchanged = new LongAdder( );
+    private final LongAdder _batchesLoaded = new LongAdder( );
+    private final LongAdder _loadQueries = new LongAdder( );
+    private final LongAdder [ ] _documentSizeHistogram = new LongAdder [ SIZE_BUCKETS.length + 1];
+    private final Map<Integer, LongAdder> _mapDocumentsPerForm = new ConcurrentHashMap<>( );
+    private volatile long _lLastRunDurationMillis;
+    private volatile long _lLastRunDocuments;
+    private volatile long _lQueueDepth;
+    private volatile long _lQueueLastFlushSize;
+    private volatile long _lQueueLastFlushLatencyMillis;
+
+    /**
+     * Private constructor - use getInstance
+     */
+    private FormsIndexerMetrics( )
+    {
+        for ( int i = 0; i < _documentSizeHistogram.length; i++ )
+        {
+            _documentSizeHistogram [i] = new LongAdder( );
+        }
+    }
+
+    /**
+     * @return the metrics of the indexer
+     */
+    public static FormsIndexerMetrics getInstance( )
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers the metrics in the platform MBean server, replacing the MBean of a previous deployment of the webapp, and unregisters them when the webapp
+     * stops
+     */
+    public static void registerMBean( )
+    {
+        try
+        {
+            ObjectName objectName = new ObjectName( OBJECT_NAME );
+            if ( ManagementFactory.getPlatformMBeanServer( ).isRegistered( objectName ) )
+            {
+                ManagementFactory.getPlatformMBeanServer( ).unregisterMBean( objectName );
+            }
+            ManagementFactory.getPlatformMBeanServer( ).registerMBean( INSTANCE, objectName );
+            ShutdownServiceManager.registerShutdownService( new MBeanShutdownService( ) );
+        }
+        catch( JMException e )
+        {
+            AppLogService.error( "[SolrFormsResponseIndexer] Unable to register the indexer metrics MBean", e );
+        }
+    }
+
+    /**
+     * Unregisters the metrics from the platform MBean server
+     */
+    public static void unregisterMBean( )
+    {
+        try
+        {
+            ObjectName objectName = new ObjectName( OBJECT_NAME );
+            if ( ManagementFactory.getPlatformMBeanServer( ).isRegistered( objectName ) )
+            {
+                ManagementFactory.getPlatformMBeanServer( ).unregisterMBean( objectName );
+            }
+        }
+        catch( JMException e )
+        {
+            AppLogService.error( "[SolrFormsResponseIndexer] Unable to unregister the indexer metrics MBean", e );
+        }
+    }
+
+    /**
+     * Records the loading of a batch from the database
+     *
+     * @param lNanos
+     *            the duration in nanoseconds
+     * @param nQueries
+     *            the number of database queries run to load the batch
+     */
+    public void recordLoad( long lNanos, int nQueries )
+    {
+        _timerLoad.record( lNanos );
+        _batchesLoaded.increment( );
+        _loadQueries.add( nQueries );
+    }
+
+    /**
+     * Records the building of the documents of a batch
+     *
+     * @param lNanos
+     *            the duration in nanoseconds
+     */
+    public void recordBuild( long lNanos )
+    {
+        _timerBuild.record( lNanos );
+    }
+
+    /**
+     * Records the writing of a batch of documents to Solr
+     *
+     * @param lNanos
+     *            the duration in nanoseconds
+     * @param nDocuments
+     *            the number of documents written
+     */
+    public void recordWrite( long lNanos, int nDocuments )
+    {
+        _timerWrite.record( lNanos );
+        _documentsIndexed.add( nDocuments );
+    }
+
+    /**
+     * Records a document built
+     *
+     * @param nIdForm
+     *            the form of the response
+     * @param nSize
+     *            the size of the document content, in characters
+     */
+    public void recordDocument( int nIdForm, int nSize )
+    {
+        _mapDocumentsPerForm.computeIfAbsent( nIdForm, id -> new LongAdder( ) ).increment( );
+        int nBucket = 0;
+        while ( nBucket < SIZE_BUCKETS.length && nSize > SIZE_BUCKETS [nBucket] )
+        {
+            nBucket++;
+        }
+        _documentSizeHistogram [nBucket].increment( );
+    }
+
+    /**
+     * Records documents deleted from Solr
+     *
+     * @param nDocuments
+     *            the number of documents
+     */
+    public void recordDelete( int nDocuments )
+    {
+        _documentsDeleted.add( nDocuments );
+    }
+
+    /**
+     * Records a failed batch
+     */
+    public void recordBatchError( )
+    {
+        _batchErrors.increment( );
+    }
+
+    /**
+     * Records a response field dropped because its name was already used in the document
+     */
+    public void recordFieldNameCollision( )
+    {
+        _fieldNameCollisions.increment( );
+    }
+
+    /**
+     * Records a document whose content was truncated by the content limits
+     */
+    public void recordTruncatedDocument( )
+    {
+        _documentsTruncated.increment( );
+    }
+
+    /**
+     * Records documents left out of a bulk indexing because their content hash did not change
+     *
+     * @param nDocuments
+     *            the number of documents
+     */
+    public void recordUnchangedDocuments( int nDocuments )
+    {
+        _documentsUnchanged.add( nDocuments );
+    }
+
+    /**
+     * Records the number of form responses waiting in the indexing queue
+     *
+     * @param nDepth
+     *            the number of form responses
+     */
+    public void recordQueueDepth( int nDepth )
+    {
+        _lQueueDepth = nDepth;
+    }
+
+    /**
+     * Records a flush of the indexing queue
+     *
+     * @param nSize
+     *            the number of form responses flushed
+     * @param lLatencyMillis
+     *            the time between the queuing of the oldest form response of the flush and its end, in milliseconds
+     */
+    public void recordQueueFlush( int nSize, long lLatencyMillis )
+    {
+        _timerQueueFlush.record( TimeUnit.MILLISECONDS.toNanos( lLatencyMillis ) );
+        _lQueueLastFlushSize = nSize;
+        _lQueueLastFlushLatencyMillis = lLatencyMillis;
+    }
+
+    /**
+     * Gives a marker of the start of a full indexing, to pass to {@link #recordRun(long, long)}
+     *
+     * @return the number of documents indexed so far
+     */
+    public long startRun( )
+    {
+        return _documentsIndexed.sum( );
+    }
+
+    /**
+     * Records a full indexing
+     *
+     * @param lDocumentsAtStart
+     *            the marker given by {@link #startRun()}
+     * @param lNanos
+     *            the duration in nanoseconds
+     */
+    public void recordRun( long lDocumentsAtStart, long lNanos )
+    {
+        _lLastRunDocuments = _documentsIndexed.sum( ) - lDocumentsAtStart;
+        _lLastRunDurationMillis = TimeUnit.NANOSECONDS.toMillis( lNanos );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getDocumentsIndexed( )
+    {
+        return _documentsIndexed.sum( );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getDocumentsDeleted( )
+    {
+        return _documentsDeleted.sum( );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getBatchErrors( )
+    {
+        return _batchErrors.sum( );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getFieldNameCollisions( )
+    {
+        return _fieldNameCollisions.sum( );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getDocumentsTruncated( )
+    {
+        return _documentsTruncated.sum( );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getDocumentsUnchanged( )
+    {
+        return _documentsUnchanged.sum( );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getBatchesLoaded( )
+    {
+        return _batchesLoaded.sum( );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getLoadQueries( )
+    {
+        return _loadQueries.sum( );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getLoadCount( )
+    {
+        return _timerLoad.getCount( );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getLoadMeanMillis( )
+    {
+        return _timerLoad.getMeanMillis( );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getLoadMaxMillis( )
+    {
+        return _timerLoad.getMaxMillis( );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getBuildCount( )
+    {
+        return _timerBuild.getCount( );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getBuildMeanMillis( )
+    {
+        return _timerBuild.getMeanMillis( );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getBuildMaxMillis( )
+    {
+        return _timerBuild.getMaxMillis( );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getWriteCount( )
+    {
+        return _timerWrite.getCount( );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getWriteMeanMillis( )
+    {
+        return _timerWrite.getMeanMillis( );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getWriteMaxMillis( )
+    {
+        return _timerWrite.getMaxMillis( );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getQueueDepth( )
+    {
+        return _lQueueDepth;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getQueueLastFlushSize( )
+    {
+        return _lQueueLastFlushSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getQueueLastFlushLatencyMillis( )
+    {
+        return _lQueueLastFlushLatencyMillis;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getQueueFlushMaxLatencyMillis( )
+    {
+        return _timerQueueFlush.getMaxMillis( );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getLastRunDocumentsPerSecond( )
+    {
+        long lDuration = _lLastRunDurationMillis;
+        return ( lDuration == 0 ) ? 0 : _lLastRunDocuments * 1000.0 / lDuration;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getLastRunDurationMillis( )
+    {
+        return _lLastRunDurationMillis;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long [ ] getDocumentSizeBuckets( )
+    {
+        return Arrays.copyOf( SIZE_BUCKETS, SIZE_BUCKETS.length );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long [ ] getDocumentSizeHistogram( )
+    {
+        return Arrays.stream( _documentSizeHistogram ).mapToLong( LongAdder::sum ).toArray( );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getDocumentsIndexedForForm( int nIdForm )
+    {
+        LongAdder documents = _mapDocumentsPerForm.get( nIdForm );
+        return ( documents == null ) ? 0 : documents.sum( );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset( )
+    {
+        _timerLoad.reset( );
+        _timerBuild.reset( );
+        _timerWrite.reset( );
+        _timerQueueFlush.reset( );
+        _documentsIndexed.reset( );
+        _documentsDeleted.reset( );
+        _batchErrors.reset( );
+        _fieldNameCollisions.reset( );
+        _documentsTruncated.reset( );
+        _documentsUnchanged.reset( );
+        _batchesLoaded.reset( );
+        _loadQueries.reset( );
+        Arrays.stream( _documentSizeHistogram ).forEach( LongAdder::reset );
+        _mapDocumentsPerForm.clear( );
+        _lLastRunDocuments = 0;
+        _lLastRunDurationMillis = 0;
+        _lQueueLastFlushSize = 0;
+        _lQueueLastFlushLatencyMillis = 0;
+    }
+
+    /**
+     * Gives a snapshot of all the metrics
+     *
+     * @return the metrics by name
+     */
+    public Map<String, Object> toMap( )
+    {
+        Map<String, Object> map = new LinkedHashMap<>( );
+        map.put( "documentsIndexed", getDocumentsIndexed( ) );
+        map.put( "documentsDeleted", getDocumentsDeleted( ) );
+        map.put( "batchErrors", getBatchErrors( ) );
+        map.put( "fieldNameCollisions", getFieldNameCollisions( ) );
+        map.put( "documentsTruncated", getDocumentsTruncated( ) );
+        map.put( "documentsUnchanged", getDocumentsUnchanged( ) );
+        map.put( "batchesLoaded", getBatchesLoaded( ) );
+        map.put( "loadQueries", getLoadQueries( ) );
+        map.put( "load", _timerLoad.toMap( ) );
+        map.put( "build", _timerBuild.toMap( ) );
+        map.put( "write", _timerWrite.toMap( ) );
+        map.put( "queueDepth", getQueueDepth( ) );
+        map.put( "queueLastFlushSize", getQueueLastFlushSize( ) );
+        map.put( "queueLastFlushLatencyMillis", getQueueLastFlushLatencyMillis( ) );
+        map.put( "queueFlush", _timerQueueFlush.toMap( ) );
+        map.put( "lastRunDurationMillis", getLastRunDurationMillis( ) );
+        map.put( "lastRunDocumentsPerSecond", getLastRunDocumentsPerSecond( ) );
+
+        Map<String, Long> mapHistogram = new LinkedHashMap<>( );
+        long [ ] histogram = getDocumentSizeHistogram( );
+        for ( int i = 0; i < SIZE_BUCKETS.length; i++ )
+        {
+            mapHistogram.put( "le" + SIZE_BUCKETS [i], histogram [i] );
+        }
+        mapHistogram.put( "gt" + SIZE_BUCKETS [SIZE_BUCKETS.length - 1], histogram [SIZE_BUCKETS.length] );
+        map.put( "documentSizeHistogram", mapHistogram );
+
+        Map<Integer, Long> mapDocumentsPerForm = new TreeMap<>( );
+        _mapDocumentsPerForm.forEach( ( nIdForm, documents ) -> mapDocumentsPerForm.put( nIdForm, documents.sum( ) ) );
+        map.put( "documentsPerForm", mapDocumentsPerForm );
+        return map;
+    }
+
+    /**
+     * Unregisters the MBean when the webapp stops, so that it does not keep the classes of the webapp loaded
+     */
+    private static final class MBeanShutdownService implements ShutdownService
+    {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getName( )
+        {
+            return "Forms Solr indexer metrics";
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void process( )
+        {
+            unregisterMBean( );
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.service.metrics;
+
+/**
+ * JMX view of the metrics of the forms Solr indexer
+ */
+public interface FormsIndexerMetricsMBean
+{
+    /**
+     * @return the number of documents written to Solr
+     */
+    long getDocumentsIndexed( );
+
+    /**
+     * @return the number of documents deleted from Solr
+     */
+    long getDocumentsDeleted( );
+
+    /**
+     * @return the number of batches which failed
+     */
+    long getBatchErrors( );
+
+    /**
+     * @return the number of response fields dropped because their name was already used in the document
+     */
+    long getFieldNameCollisions( );
+
+    /**
+     * @return the number of documents whose content was truncated by the content limits
+     */
+    long getDocumentsTruncated( );
+
+    /**
+     * @return the number of documents left out of the bulk indexing because their content hash did not change
+     */
+    long getDocumentsUnchanged( );
+
+    /**
+     * @return the number of batches loaded from the database
+     */
+    long getBatchesLoaded( );
+
+    /**
+     * @return the number of database queries run to load the batches
+     */
+    long getLoadQueries( );
+
+    /**
+     * @return the number of form responses waiting in the indexing queue
+     */
+    long getQueueDepth( );
+
+    /**
+     * @return the number of form responses indexed by the last flush of the indexing queue
+     */
+    long getQueueLastFlushSize( );
+
+    /**
+     * @return the time between the queuing of the oldest form response of the last flush of the indexing queue and the end of this flush, in milliseconds
+     */
+    long getQueueLastFlushLatencyMillis( );
+
+    /**
+     * @return the longest latency of a flush of the indexing queue, in milliseconds
+     */
+    long getQueueFlushMaxLatencyMillis( );
+
+    /**
+     * @return the number of batches loaded from the database
+     */
+    long getLoadCount( );
+
+    /**
+     * @return the mean time to load a batch from the database, in milliseconds
+     */
+    double getLoadMeanMillis( );
+
+    /**
+     * @return the longest time to load a batch from the database, in milliseconds
+     */
+    long getLoadMaxMillis( );
+
+    /**
+     * @return the number of batches of documents built
+     */
+    long getBuildCount( );
+
+    /**
+     * @return the mean time to build the documents of a batch, in milliseconds
+     */
+    double getBuildMeanMillis( );
+
+    /**
+     * @return the longest time to build the documents of a batch, in milliseconds
+     */
+    long getBuildMaxMillis( );
+
+    /**
+     * @return the number of batches written to Solr
+     */
+    long getWriteCount( );
+
+    /**
+     * @return the mean time to write a batch to Solr, in milliseconds
+     */
+    double getWriteMeanMillis( );
+
+    /**
+     * @return the longest time to write a batch to Solr, in milliseconds
+     */
+    long getWriteMaxMillis( );
+
+    /**
+     * @return the number of documents written per second by the last full indexing
+     */
+    double getLastRunDocumentsPerSecond( );
+
+    /**
+     * @return the duration of the last full indexing, in milliseconds
+     */
+    long getLastRunDurationMillis( );
+
+    /**
+     * @return the upper bounds, in characters, of the buckets of the document size histogram
+     */
+    long [ ] getDocumentSizeBuckets( );
+
+    /**
+     * @return the number of documents per bucket of size, the last bucket counting the documents larger than the last bound
+     */
+    long [ ] getDocumentSizeHistogram( );
+
+    /**
+     * Gives the number of documents indexed for a form
+     *
+     * @param nIdForm
+     *            the form id
+     * @return the number of documents
+     */
+    long getDocumentsIndexedForForm( int nIdForm );
+
+    /**
+     * Resets all the metrics
+     */
+    void reset( );
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.service.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the executions of an indexing phase and accumulates their duration. Safe to record from several threads at once.
+ */
+public class PhaseTimer
+{
+    private final LongAdder _count = new LongAdder( );
+    private final LongAdder _totalNanos = new LongAdder( );
+    private final LongAccumulator _maxNanos = new LongAccumulator( Math::max, 0 );
+
+    /**
+     * Records one execution of the phase
+     *
+     * @param lNanos
+     *            the duration in nanoseconds
+     */
+    public void record( long lNanos )
+    {
+        _count.increment( );
+        _totalNanos.add( lNanos );
+        _maxNanos.accumulate( lNanos );
+    }
+
+    /**
+     * @return the number of executions
+     */
+    public long getCount( )
+    {
+        return _count.sum( );
+    }
+
+    /**
+     * @return the total duration in milliseconds
+     */
+    public long getTotalMillis( )
+    {
+        return TimeUnit.NANOSECONDS.toMillis( _totalNanos.sum( ) );
+    }
+
+    /**
+     * @return the mean duration in milliseconds
+     */
+    public double getMeanMillis( )
+    {
+        long lCount = _count.sum( );
+        return ( lCount == 0 ) ? 0 : ( (double) _totalNanos.sum( ) / lCount ) / TimeUnit.MILLISECONDS.toNanos( 1 );
+    }
+
+    /**
+     * @return the longest duration in milliseconds
+     */
+    public long getMaxMillis( )
+    {
+        return TimeUnit.NANOSECONDS.toMillis( _maxNanos.get( ) );
+    }
+
+    /**
+     * Resets the timer
+     */
+    public void reset( )
+    {
+        _count.reset( );
+        _totalNanos.reset( );
+        _maxNanos.reset( );
+    }
+
+    /**
+     * @return the values of the timer
+     */
+    Map<String, Object> toMap( )
+    {
+        Map<String, Object> map = new LinkedHashMap<>( );
+        map.put( "count", getCount( ) );
+        map.put( "totalMillis", getTotalMillis( ) );
+        map.put( "meanMillis", getMeanMillis( ) );
+        map.put( "maxMillis", getMaxMillis( ) );
+        return map;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.util;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import fr.paris.lutece.plugins.forms.util.LuceneUtils;
+
+/**
+ * Caches the names of the dynamic fields of the documents. The names only depend on the question code, the iteration and the type suffix, so each one is
+ * built once instead of once per response. The names are forgotten when the forms metadata are invalidated, or when their number exceeds a maximum,
+ * so that the names of the renamed questions do not pile up. This class is thread-safe.
+ */
+public final class FieldNameCache
+{
+    private static final int MAX_NAMES = 100000;
+    private static final Map<String, String [ ]> MAP_ENTRY_KEYS = new ConcurrentHashMap<>( );
+    private static final Map<String, Map<String, String>> MAP_SUFFIXED_NAMES = new ConcurrentHashMap<>( );
+
+    /**
+     * Private constructor - this class does not need to be instantiated
+     */
+    private FieldNameCache( )
+    {
+    }
+
+    /**
+     * Gives the name of the field of a question response
+     *
+     * @param strCodeQuestion
+     *            the question code
+     * @param nIteration
+     *            the iteration number
+     * @return the field name, as built by LuceneUtils.createLuceneEntryKey
+     */
+    public static String getEntryKey( String strCodeQuestion, int nIteration )
+    {
+        if ( nIteration < 0 || strCodeQuestion == null )
+        {
+            return LuceneUtils.createLuceneEntryKey( strCodeQuestion, nIteration );
+        }
+        String [ ] arrayKeys = MAP_ENTRY_KEYS.get( strCodeQuestion );
+        if ( arrayKeys == null || nIteration >= arrayKeys.length || arrayKeys [nIteration] == null )
+        {
+            // copy on write: the published arrays are never modified, concurrent writers build the same names
+            arrayKeys = ( arrayKeys == null ) ? new String [ nIteration + 1] : Arrays.copyOf( arrayKeys, Math.max( arrayKeys.length, nIteration + 1 ) );
+            arrayKeys [nIteration] = LuceneUtils.createLuceneEntryKey( strCodeQuestion, nIteration );
+            if ( MAP_ENTRY_KEYS.size( ) >= MAX_NAMES )
+            {
+                MAP_ENTRY_KEYS.clear( );
+            }
+            MAP_ENTRY_KEYS.put( strCodeQuestion, arrayKeys );
+        }
+        return arrayKeys [nIteration];
+    }
+
+    /**
+     * Gives a field name followed by a suffix
+     *
+     * @param strFieldName
+     *            the field name
+     * @param strSuffix
+     *            the suffix
+     * @return the suffixed name
+     */
+    public static String getSuffixedName( String strFieldName, String strSuffix )
+    {
+        if ( strFieldName == null || strSuffix == null )
+        {
+            return strFieldName + strSuffix;
+        }
+        Map<String, String> mapNames = MAP_SUFFIXED_NAMES.computeIfAbsent( strSuffix, suffix -> new ConcurrentHashMap<>( ) );
+        String strSuffixedName = mapNames.get( strFieldName );
+        if ( strSuffixedName == null )
+        {
+            strSuffixedName = strFieldName + strSuffix;
+            if ( mapNames.size( ) >= MAX_NAMES )
+            {
+                mapNames.clear( );
+            }
+            mapNames.putIfAbsent( strFieldName, strSuffixedName );
+        }
+        return strSuffixedName;
+    }
+
+    /**
+     * Forgets all the names
+     */
+    public static void clear( )
+    {
+        MAP_ENTRY_KEYS.clear( );
+        MAP_SUFFIXED_NAMES.clear( );
+    }
+}
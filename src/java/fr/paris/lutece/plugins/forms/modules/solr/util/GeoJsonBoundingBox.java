@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.util;
+
+/**
+ * Bounding box of the positions of a GeoJSON text, computed by a single scan of the text without building the geometry. The positions are the innermost
+ * arrays of numbers of the "coordinates" members: their first number is the longitude, their second the latitude, the others are ignored.
+ */
+public final class GeoJsonBoundingBox
+{
+    private static final String MEMBER_COORDINATES = "\"coordinates\"";
+
+    private final double _dMinX;
+    private final double _dMinY;
+    private final double _dMaxX;
+    private final double _dMaxY;
+
+    /**
+     * Constructor
+     */
+    private GeoJsonBoundingBox( double dMinX, double dMinY, double dMaxX, double dMaxY )
+    {
+        _dMinX = dMinX;
+        _dMinY = dMinY;
+        _dMaxX = dMaxX;
+        _dMaxY = dMaxY;
+    }
+
+    /**
+     * Computes the bounding box of a GeoJSON text
+     *
+     * @param strGeoJson
+     *            the GeoJSON text
+     * @return the bounding box, null if the text has no position
+     */
+    public static GeoJsonBoundingBox of( String strGeoJson )
+    {
+        if ( strGeoJson == null )
+        {
+            return null;
+        }
+        double dMinX = Double.POSITIVE_INFINITY;
+        double dMinY = Double.POSITIVE_INFINITY;
+        double dMaxX = Double.NEGATIVE_INFINITY;
+        double dMaxY = Double.NEGATIVE_INFINITY;
+        int nLength = strGeoJson.length( );
+        int nIndex = strGeoJson.indexOf( MEMBER_COORDINATES );
+        while ( nIndex >= 0 )
+        {
+            int nDepth = 0;
+            int nPosition = 0;
+            int i = nIndex + MEMBER_COORDINATES.length( );
+            while ( i < nLength )
+            {
+                char c = strGeoJson.charAt( i );
+                if ( c == '[' )
+                {
+                    nDepth++;
+                    nPosition = 0;
+                    i++;
+                }
+                else if ( c == ']' )
+                {
+                    nDepth--;
+                    i++;
+                    if ( nDepth == 0 )
+                    {
+                        break;
+                    }
+                }
+                else if ( c == '-' || c == '+' || c == '.' || Character.isDigit( c ) )
+                {
+                    int nStart = i;
+                    while ( i < nLength && isNumberChar( strGeoJson.charAt( i ) ) )
+                    {
+                        i++;
+                    }
+                    double dValue = parse( strGeoJson, nStart, i );
+                    if ( nDepth > 0 && !Double.isNaN( dValue ) )
+                    {
+                        if ( nPosition == 0 )
+                        {
+                            dMinX = Math.min( dMinX, dValue );
+                            dMaxX = Math.max( dMaxX, dValue );
+                        }
+                        else if ( nPosition == 1 )
+                        {
+                            dMinY = Math.min( dMinY, dValue );
+                            dMaxY = Math.max( dMaxY, dValue );
+                        }
+                    }
+                    nPosition++;
+                }
+                else if ( c == '}' && nDepth == 0 )
+                {
+                    break;
+                }
+                else
+                {
+                    i++;
+                }
+            }
+            nIndex = strGeoJson.indexOf( MEMBER_COORDINATES, i );
+        }
+        if ( dMinX > dMaxX || dMinY > dMaxY )
+        {
+            return null;
+        }
+        return new GeoJsonBoundingBox( dMinX, dMinY, dMaxX, dMaxY );
+    }
+
+    /**
+     * Gives the bounding box as a GeoJSON geometry: a polygon, a line string if the box is flat on one axis, or a point if the box is a single position
+     *
+     * @return the GeoJSON text
+     */
+    public String toGeoJson( )
+    {
+        StringBuilder sb = new StringBuilder( 160 );
+        if ( _dMinX == _dMaxX && _dMinY == _dMaxY )
+        {
+            sb.append( "{\"type\":\"Point\",\"coordinates\":" );
+            appendPosition( sb, _dMinX, _dMinY );
+            return sb.append( '}' ).toString( );
+        }
+        if ( _dMinX == _dMaxX || _dMinY == _dMaxY )
+        {
+            // a polygon of zero area is not a valid shape
+            sb.append( "{\"type\":\"LineString\",\"coordinates\":[" );
+            appendPosition( sb, _dMinX, _dMinY );
+            sb.append( ',' );
+            appendPosition( sb, _dMaxX, _dMaxY );
+            return sb.append( "]}" ).toString( );
+        }
+        sb.append( "{\"type\":\"Polygon\",\"coordinates\":[[" );
+        appendPosition( sb, _dMinX, _dMinY );
+        sb.append( ',' );
+        appendPosition( sb, _dMaxX, _dMinY );
+        sb.append( ',' );
+        appendPosition( sb, _dMaxX, _dMaxY );
+        sb.append( ',' );
+        appendPosition( sb, _dMinX, _dMaxY );
+        sb.append( ',' );
+        appendPosition( sb, _dMinX, _dMinY );
+        return sb.append( "]]}" ).toString( );
+    }
+
+    /**
+     * @return the minimum longitude
+     */
+    public double getMinX( )
+    {
+        return _dMinX;
+    }
+
+    /**
+     * @return the minimum latitude
+     */
+    public double getMinY( )
+    {
+        return _dMinY;
+    }
+
+    /**
+     * @return the maximum longitude
+     */
+    public double getMaxX( )
+    {
+        return _dMaxX;
+    }
+
+    /**
+     * @return the maximum latitude
+     */
+    public double getMaxY( )
+    {
+        return _dMaxY;
+    }
+
+    /**
+     * Appends a position
+     */
+    private static void appendPosition( StringBuilder sb, double dX, double dY )
+    {
+        sb.append( '[' ).append( dX ).append( ',' ).append( dY ).append( ']' );
+    }
+
+    /**
+     * Tells whether a character may be part of a JSON number
+     */
+    private static boolean isNumberChar( char c )
+    {
+        return Character.isDigit( c ) || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E';
+    }
+
+    /**
+     * Parses a number of the text
+     *
+     * @return the number, NaN if it is malformed
+     */
+    private static double parse( String strText, int nStart, int nEnd )
+    {
+        try
+        {
+            return Double.parseDouble( strText.substring( nStart, nEnd ) );
+        }
+        catch( NumberFormatException e )
+        {
+            return Double.NaN;
+        }
+    }
+}
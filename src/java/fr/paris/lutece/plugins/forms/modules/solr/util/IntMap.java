@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.util;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * A hash map with primitive int keys (open addressing, linear probing). It avoids boxing the keys and the entry objects of a java.util.HashMap on the
+ * indexing hot path. Null values are not supported. This class is not thread-safe.
+ *
+ * @param <V>
+ *            the type of the values
+ */
+public class IntMap<V>
+{
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.5f;
+    private static final int HASH_MULTIPLIER = 0x9E3779B9;
+
+    private int [ ] _arrayKeys;
+    private Object [ ] _arrayValues;
+    private int _nSize;
+    private int _nThreshold;
+
+    /**
+     * Constructor
+     */
+    public IntMap( )
+    {
+        this( DEFAULT_CAPACITY );
+    }
+
+    /**
+     * Constructor
+     *
+     * @param nExpectedSize
+     *            the expected number of entries
+     */
+    public IntMap( int nExpectedSize )
+    {
+        allocate( tableSizeFor( nExpectedSize ) );
+    }
+
+    /**
+     * Returns the value mapped to the key
+     *
+     * @param nKey
+     *            the key
+     * @return the value, or null if none
+     */
+    @SuppressWarnings( "unchecked" )
+    public V get( int nKey )
+    {
+        int nMask = _arrayKeys.length - 1;
+        int nIndex = hash( nKey ) & nMask;
+        while ( _arrayValues [nIndex] != null )
+        {
+            if ( _arrayKeys [nIndex] == nKey )
+            {
+                return (V) _arrayValues [nIndex];
+            }
+            nIndex = ( nIndex + 1 ) & nMask;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the value mapped to the key, or a default value
+     *
+     * @param nKey
+     *            the key
+     * @param defaultValue
+     *            the value returned if the key is not mapped
+     * @return the value
+     */
+    public V getOrDefault( int nKey, V defaultValue )
+    {
+        V value = get( nKey );
+        return ( value != null ) ? value : defaultValue;
+    }
+
+    /**
+     * Returns the value mapped to the key, mapping a new value first if there is none
+     *
+     * @param nKey
+     *            the key
+     * @param supplier
+     *            supplies the new value
+     * @return the value
+     */
+    public V computeIfAbsent( int nKey, Supplier<V> supplier )
+    {
+        V value = get( nKey );
+        if ( value == null )
+        {
+            value = supplier.get( );
+            put( nKey, value );
+        }
+        return value;
+    }
+
+    /**
+     * Tells whether the key is mapped
+     *
+     * @param nKey
+     *            the key
+     * @return true if the key is mapped
+     */
+    public boolean containsKey( int nKey )
+    {
+        return get( nKey ) != null;
+    }
+
+    /**
+     * Maps the value to the key
+     *
+     * @param nKey
+     *            the key
+     * @param value
+     *            the value, not null
+     * @return the previous value, or null if none
+     */
+    @SuppressWarnings( "unchecked" )
+    public V put( int nKey, V value )
+    {
+        if ( value == null )
+        {
+            throw new IllegalArgumentException( "Null values are not supported" );
+        }
+
+        int nMask = _arrayKeys.length - 1;
+        int nIndex = hash( nKey ) & nMask;
+        while ( _arrayValues [nIndex] != null )
+        {
+            if ( _arrayKeys [nIndex] == nKey )
+            {
+                V previous = (V) _arrayValues [nIndex];
+                _arrayValues [nIndex] = value;
+                return previous;
+            }
+            nIndex = ( nIndex + 1 ) & nMask;
+        }
+
+        _arrayKeys [nIndex] = nKey;
+        _arrayValues [nIndex] = value;
+        if ( ++_nSize > _nThreshold )
+        {
+            rehash( _arrayKeys.length * 2 );
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of entries
+     */
+    public int size( )
+    {
+        return _nSize;
+    }
+
+    /**
+     * @return true if there is no entry
+     */
+    public boolean isEmpty( )
+    {
+        return _nSize == 0;
+    }
+
+    /**
+     * Removes all the entries, keeping the allocated table for reuse
+     */
+    public void clear( )
+    {
+        Arrays.fill( _arrayValues, null );
+        _nSize = 0;
+    }
+
+    /**
+     * Performs an action for each entry
+     *
+     * @param consumer
+     *            the action
+     */
+    @SuppressWarnings( "unchecked" )
+    public void forEach( IntObjConsumer<V> consumer )
+    {
+        for ( int i = 0; i < _arrayValues.length; i++ )
+        {
+            if ( _arrayValues [i] != null )
+            {
+                consumer.accept( _arrayKeys [i], (V) _arrayValues [i] );
+            }
+        }
+    }
+
+    /**
+     * An action on an entry
+     *
+     * @param <V>
+     *            the type of the values
+     */
+    @FunctionalInterface
+    public interface IntObjConsumer<V>
+    {
+        /**
+         * Performs the action
+         *
+         * @param nKey
+         *            the key
+         * @param value
+         *            the value
+         */
+        void accept( int nKey, V value );
+    }
+
+    private void rehash( int nNewCapacity )
+    {
+        int [ ] arrayOldKeys = _arrayKeys;
+        Object [ ] arrayOldValues = _arrayValues;
+        allocate( nNewCapacity );
+
+        int nMask = _arrayKeys.length - 1;
+        for ( int i = 0; i < arrayOldValues.length; i++ )
+        {
+            if ( arrayOldValues [i] != null )
+            {
+                int nIndex = hash( arrayOldKeys [i] ) & nMask;
+                while ( _arrayValues [nIndex] != null )
+                {
+                    nIndex = ( nIndex + 1 ) & nMask;
+                }
+                _arrayKeys [nIndex] = arrayOldKeys [i];
+                _arrayValues [nIndex] = arrayOldValues [i];
+            }
+        }
+    }
+
+    private void allocate( int nCapacity )
+    {
+        _arrayKeys = new int [ nCapacity];
+        _arrayValues = new Object [ nCapacity];
+        _nThreshold = (int) ( nCapacity * LOAD_FACTOR );
+    }
+
+    private static int tableSizeFor( int nExpectedSize )
+    {
+        int nCapacity = Integer.highestOneBit( Math.max( DEFAULT_CAPACITY, (int) ( nExpectedSize / LOAD_FACTOR ) ) - 1 ) << 1;
+        return Math.max( DEFAULT_CAPACITY, nCapacity );
+    }
+
+    private static int hash( int nKey )
+    {
+        int nHash = nKey * HASH_MULTIPLIER;
+        return nHash ^ ( nHash >>> 16 );
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A size-bounded cache evicting the least recently used entry, whose entries expire after a time to live. This class is thread-safe.
+ *
+ * @param <K>
+ *            the type of the keys
+ * @param <V>
+ *            the type of the values
+ */
+public class LruCache<K, V>
+{
+    private final int _nMaxSize;
+    private final long _lTimeToLiveMillis;
+    private final LinkedHashMap<K, CacheEntry<V>> _map;
+
+    /**
+     * Constructor
+     *
+     * @param nMaxSize
+     *            the maximum number of entries, 0 to disable the cache
+     * @param lTimeToLiveMillis
+     *            the time after which an entry expires, 0 for entries which never expire
+     */
+    public LruCache( int nMaxSize, long lTimeToLiveMillis )
+    {
+        _nMaxSize = Math.max( 0, nMaxSize );
+        _lTimeToLiveMillis = Math.max( 0, lTimeToLiveMillis );
+        _map = new LinkedHashMap<K, CacheEntry<V>>( 16, 0.75f, true )
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<K, CacheEntry<V>> eldest )
+            {
+                return size( ) > _nMaxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the value of a key, if it is cached and not expired
+     *
+     * @param key
+     *            the key
+     * @return the value, or null
+     */
+    public synchronized V get( K key )
+    {
+        CacheEntry<V> entry = _map.get( key );
+        if ( entry == null )
+        {
+            return null;
+        }
+        if ( _lTimeToLiveMillis > 0 && System.currentTimeMillis( ) - entry._lCreationMillis > _lTimeToLiveMillis )
+        {
+            _map.remove( key );
+            return null;
+        }
+        return entry._value;
+    }
+
+    /**
+     * Caches a value
+     *
+     * @param key
+     *            the key
+     * @param value
+     *            the value, not null
+     */
+    public synchronized void put( K key, V value )
+    {
+        if ( _nMaxSize > 0 )
+        {
+            _map.put( key, new CacheEntry<>( value ) );
+        }
+    }
+
+    /**
+     * Removes a key
+     *
+     * @param key
+     *            the key
+     */
+    public synchronized void remove( K key )
+    {
+        _map.remove( key );
+    }
+
+    /**
+     * Removes all the entries
+     */
+    public synchronized void clear( )
+    {
+        _map.clear( );
+    }
+
+    /**
+     * @return the number of cached entries, expired ones included
+     */
+    public synchronized int size( )
+    {
+        return _map.size( );
+    }
+
+    /**
+     * A cached value and its creation time
+     *
+     * @param <V>
+     *            the type of the value
+     */
+    private static final class CacheEntry<V>
+    {
+        private final V _value;
+        private final long _lCreationMillis;
+
+        CacheEntry( V value )
+        {
+            _value = value;
+            _lCreationMillis = System.currentTimeMillis( );
+        }
+    }
+}
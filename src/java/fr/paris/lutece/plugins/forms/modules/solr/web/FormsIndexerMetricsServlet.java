@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.web;
+
+import java.io.IOException;
+import java.util.Map;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.paris.lutece.plugins.forms.modules.solr.service.CommittedIdTracker;
+import fr.paris.lutece.plugins.forms.modules.solr.service.metrics.FormsIndexerMetrics;
+import fr.paris.lutece.portal.service.admin.AdminAuthenticationService;
+
+/**
+ * Gives the metrics of the forms Solr indexer, with the checkpoint of the last full indexing left unfinished, as JSON to the authenticated back office users
+ */
+public class FormsIndexerMetricsServlet extends HttpServlet
+{
+    private static final long serialVersionUID = 2480135247011473526L;
+    private static final String KEY_CHECKPOINT = "checkpoint";
+    private static final String CONTENT_TYPE_JSON = "application/json";
+    private static final String ENCODING_UTF8 = "UTF-8";
+    private static final ObjectMapper MAPPER = new ObjectMapper( );
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doGet( HttpServletRequest request, HttpServletResponse response ) throws IOException
+    {
+        if ( AdminAuthenticationService.getInstance( ).getRegisteredUser( request ) == null )
+        {
+            response.sendError( HttpServletResponse.SC_UNAUTHORIZED );
+            return;
+        }
+
+        Map<String, Object> mapMetrics = FormsIndexerMetrics.getInstance( ).toMap( );
+        CommittedIdTracker checkpoint = CommittedIdTracker.load( );
+        if ( checkpoint != null )
+        {
+            mapMetrics.put( KEY_CHECKPOINT, checkpoint.toMap( ) );
+        }
+
+        response.setContentType( CONTENT_TYPE_JSON );
+        response.setCharacterEncoding( ENCODING_UTF8 );
+        MAPPER.writeValue( response.getWriter( ), mapMetrics );
+    }
+}
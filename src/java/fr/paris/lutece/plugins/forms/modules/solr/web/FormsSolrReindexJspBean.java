@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.web;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.commons.lang3.math.NumberUtils;
+
+import fr.paris.lutece.plugins.forms.business.FormHome;
+import fr.paris.lutece.plugins.forms.modules.solr.service.FormsReindexService;
+import fr.paris.lutece.portal.service.admin.AccessDeniedException;
+import fr.paris.lutece.portal.service.security.SecurityTokenService;
+import fr.paris.lutece.portal.util.mvc.admin.MVCAdminJspBean;
+import fr.paris.lutece.portal.util.mvc.admin.annotations.Controller;
+import fr.paris.lutece.portal.util.mvc.commons.annotations.Action;
+import fr.paris.lutece.portal.util.mvc.commons.annotations.View;
+
+/**
+ * Back office page reindexing the responses of some forms: the reindex runs in the background, the page shows whether it is running and the result of the
+ * last one.
+ */
+@Controller( controllerJsp = "ManageFormsSolrReindex.jsp", controllerPath = "jsp/admin/plugins/forms/modules/solr/", right = FormsSolrReindexJspBean.RIGHT_REINDEX )
+public class FormsSolrReindexJspBean extends MVCAdminJspBean
+{
+    /** Right to reindex the responses of the forms */
+    public static final String RIGHT_REINDEX = "FORMS_SOLR_REINDEX";
+
+    private static final long serialVersionUID = -6216480392175304721L;
+
+    // Templates
+    private static final String TEMPLATE_REINDEX = "/admin/plugins/forms/modules/solr/reindex_forms.html";
+
+    // Properties
+    private static final String PROPERTY_PAGE_TITLE_REINDEX = "module.forms.solr.reindex.pageTitle";
+
+    // Messages
+    private static final String MESSAGE_REINDEX_STARTED = "module.forms.solr.reindex.info.started";
+    private static final String MESSAGE_REINDEX_RUNNING = "module.forms.solr.reindex.error.running";
+    private static final String MESSAGE_NO_FORM = "module.forms.solr.reindex.error.noForm";
+
+    // Views and actions
+    private static final String VIEW_REINDEX = "reindex";
+    private static final String ACTION_REINDEX = "reindex";
+
+    // Parameters and marks
+    private static final String PARAMETER_ID_FORM = "id_form";
+    private static final String MARK_FORMS_LIST = "forms_list";
+    private static final String MARK_RUNNING = "running";
+    private static final String MARK_LAST_FORMS = "last_forms";
+    private static final String MARK_LAST_ERRORS = "last_errors";
+
+    /**
+     * Gives the page of the reindex
+     *
+     * @param request
+     *            the request
+     * @return the page
+     */
+    @View( value = VIEW_REINDEX, defaultView = true )
+    public String getReindex( HttpServletRequest request )
+    {
+        FormsReindexService reindexService = FormsReindexService.getInstance( );
+        Map<String, Object> model = getModel( );
+        model.put( MARK_FORMS_LIST, FormHome.getFormsReferenceList( ) );
+        model.put( MARK_RUNNING, reindexService.isRunning( ) );
+        model.put( MARK_LAST_FORMS, reindexService.getLastIdForms( ) );
+        model.put( MARK_LAST_ERRORS, reindexService.getLastErrors( ) );
+        model.put( SecurityTokenService.MARK_TOKEN, SecurityTokenService.getInstance( ).getToken( request, ACTION_REINDEX ) );
+
+        return getPage( PROPERTY_PAGE_TITLE_REINDEX, TEMPLATE_REINDEX, model );
+    }
+
+    /**
+     * Starts the reindex of the responses of the selected forms
+     *
+     * @param request
+     *            the request
+     * @return the page of the reindex
+     * @throws AccessDeniedException
+     *             if the security token is invalid
+     */
+    @Action( ACTION_REINDEX )
+    public String doReindex( HttpServletRequest request ) throws AccessDeniedException
+    {
+        if ( !SecurityTokenService.getInstance( ).validate( request, ACTION_REINDEX ) )
+        {
+            throw new AccessDeniedException( "Invalid security token" );
+        }
+
+        String [ ] arrayIdForm = request.getParameterValues( PARAMETER_ID_FORM );
+        List<Integer> listIdForm = ( arrayIdForm == null ) ? null
+                : Arrays.stream( arrayIdForm ).map( strIdForm -> NumberUtils.toInt( strIdForm, -1 ) ).filter( nIdForm -> nIdForm > 0 ).distinct( )
+                        .collect( Collectors.toList( ) );
+        if ( listIdForm == null || listIdForm.isEmpty( ) )
+        {
+            addError( MESSAGE_NO_FORM, getLocale( ) );
+        }
+        else
+            if ( FormsReindexService.getInstance( ).start( listIdForm ) )
+            {
+                addInfo( MESSAGE_REINDEX_STARTED, getLocale( ) );
+            }
+            else
+            {
+                addError( MESSAGE_REINDEX_RUNNING, getLocale( ) );
+            }
+
+        return redirectView( request, VIEW_REINDEX );
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.service;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.client.solrj.request.CollectionAdminRequest;
+import org.apache.solr.cloud.SolrCloudTestCase;
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import fr.paris.lutece.plugins.forms.business.FormResponse;
+
+/**
+ * Tests of the blue/green reindex flow of ShadowCollectionManager against an in-process SolrCloud cluster
+ */
+public class ShadowCollectionManagerTest extends SolrCloudTestCase
+{
+    private static final String ALIAS = "forms";
+    private static final String CONFIGSET = "forms";
+    private static final String CONFIGSET_BULK = "forms-bulk";
+    private static final String PATH_CONFIGSET = "configsets/forms/conf";
+    private static final String FIELD_UID = "uid";
+    private static final String FIELD_TYPE = "type";
+    private static final String TYPE_FORM_RESPONSE = FormResponse.RESOURCE_TYPE + "_1";
+    private static final String TYPE_OTHER = "PAGE";
+
+    /**
+     * Starts a cluster of two nodes, with the configset of the live collections and a bulk one
+     *
+     * @throws Exception
+     *             the Exception
+     */
+    @BeforeClass
+    public static void setupCluster( ) throws Exception
+    {
+        Path pathConfigSet = getFile( PATH_CONFIGSET ).toPath( );
+        configureCluster( 2 ).addConfig( CONFIGSET, pathConfigSet ).addConfig( CONFIGSET_BULK, pathConfigSet ).configure( );
+    }
+
+    /**
+     * Removes the alias and the collections of a test
+     *
+     * @throws Exception
+     *             the Exception
+     */
+    @After
+    public void tearDownCollections( ) throws Exception
+    {
+        cluster.deleteAllCollections( );
+    }
+
+    /**
+     * The first run creates the alias
+     *
+     * @throws Exception
+     *             the Exception
+     */
+    @Test
+    public void testFirstSwapCreatesAlias( ) throws Exception
+    {
+        ShadowCollectionManager manager = new ShadowCollectionManager( cluster.getSolrClient( ), ALIAS, CONFIGSET, null, 1, 1 );
+        assertNull( manager.getLiveCollection( ) );
+
+        String strCollection = build( manager, 1, 3 );
+        manager.swap( strCollection );
+
+        assertEquals( strCollection, manager.getLiveCollection( ) );
+        assertEquals( 3, manager.count( ALIAS ) );
+    }
+
+    /**
+     * The alias keeps searching the live collection while the shadow one is built, then moves to it in one step
+     *
+     * @throws Exception
+     *             the Exception
+     */
+    @Test
+    public void testSwapReplacesLiveCollection( ) throws Exception
+    {
+        CloudSolrClient solrClient = cluster.getSolrClient( );
+        ShadowCollectionManager manager = new ShadowCollectionManager( solrClient, ALIAS, CONFIGSET, null, 2, 1 );
+        String strLiveCollection = build( manager, 2, 3 );
+        manager.swap( strLiveCollection );
+
+        String strShadowCollection = build( manager, 2, 5 );
+        assertFalse( strLiveCollection.equals( strShadowCollection ) );
+        assertEquals( 3, manager.count( ALIAS ) );
+
+        manager.swap( strShadowCollection );
+        manager.delete( strLiveCollection );
+
+        assertEquals( strShadowCollection, manager.getLiveCollection( ) );
+        assertEquals( 5, manager.count( ALIAS ) );
+        assertFalse( CollectionAdminRequest.listCollections( solrClient ).contains( strLiveCollection ) );
+    }
+
+    /**
+     * The documents of a shadow collection are not visible until it is finished
+     *
+     * @throws Exception
+     *             the Exception
+     */
+    @Test
+    public void testShadowCollectionCommittedOnFinish( ) throws Exception
+    {
+        CloudSolrClient solrClient = cluster.getSolrClient( );
+        ShadowCollectionManager manager = new ShadowCollectionManager( solrClient, ALIAS, CONFIGSET, null, 1, 1 );
+        String strCollection = manager.create( );
+        cluster.waitForActiveCollection( strCollection, 1, 1 );
+        solrClient.add( strCollection, createDocuments( 4 ) );
+
+        assertEquals( 0, manager.count( strCollection ) );
+        manager.finish( strCollection );
+        assertEquals( 4, manager.count( strCollection ) );
+    }
+
+    /**
+     * A shadow collection built with the bulk configset is switched to the configset of the live collection when finished
+     *
+     * @throws Exception
+     *             the Exception
+     */
+    @Test
+    public void testBulkConfigSetSwitchedOnFinish( ) throws Exception
+    {
+        CloudSolrClient solrClient = cluster.getSolrClient( );
+        ShadowCollectionManager manager = new ShadowCollectionManager( solrClient, ALIAS, CONFIGSET, CONFIGSET_BULK, 1, 1 );
+        String strCollection = manager.create( );
+        cluster.waitForActiveCollection( strCollection, 1, 1 );
+        assertEquals( CONFIGSET_BULK, solrClient.getZkStateReader( ).readConfigName( strCollection ) );
+
+        solrClient.add( strCollection, createDocuments( 2 ) );
+        manager.finish( strCollection );
+
+        assertEquals( CONFIGSET, solrClient.getZkStateReader( ).readConfigName( strCollection ) );
+        assertEquals( 2, manager.count( strCollection ) );
+    }
+
+    /**
+     * Only the documents of the form responses are counted, the others are counted apart
+     *
+     * @throws Exception
+     *             the Exception
+     */
+    @Test
+    public void testOtherDocumentsCountedApart( ) throws Exception
+    {
+        CloudSolrClient solrClient = cluster.getSolrClient( );
+        ShadowCollectionManager manager = new ShadowCollectionManager( solrClient, ALIAS, CONFIGSET, null, 1, 1 );
+        String strCollection = build( manager, 1, 3 );
+        assertEquals( 0, manager.countOtherDocuments( strCollection ) );
+
+        SolrInputDocument document = new SolrInputDocument( );
+        document.addField( FIELD_UID, "test_page_1" );
+        document.addField( FIELD_TYPE, TYPE_OTHER );
+        solrClient.add( strCollection, document );
+        solrClient.commit( strCollection );
+
+        assertEquals( 3, manager.count( strCollection ) );
+        assertEquals( 1, manager.countOtherDocuments( strCollection ) );
+    }
+
+    /**
+     * Builds a finished shadow collection of one replica per shard
+     *
+     * @param manager
+     *            the manager of the collections
+     * @param nShards
+     *            the number of shards of the collection
+     * @param nDocuments
+     *            the number of documents of the collection
+     * @return the name of the collection
+     * @throws Exception
+     *             the Exception
+     */
+    private static String build( ShadowCollectionManager manager, int nShards, int nDocuments ) throws Exception
+    {
+        String strCollection = manager.create( );
+        cluster.waitForActiveCollection( strCollection, nShards, nShards );
+        cluster.getSolrClient( ).add( strCollection, createDocuments( nDocuments ) );
+        manager.finish( strCollection );
+        return strCollection;
+    }
+
+    /**
+     * Creates documents of form responses
+     *
+     * @param nDocuments
+     *            the number of documents
+     * @return the documents
+     */
+    private static List<SolrInputDocument> createDocuments( int nDocuments )
+    {
+        List<SolrInputDocument> listDocuments = new ArrayList<>( nDocuments );
+        for ( int i = 1; i <= nDocuments; i++ )
+        {
+            SolrInputDocument document = new SolrInputDocument( );
+            document.addField( FIELD_UID, "test_forms_response_" + i );
+            document.addField( FIELD_TYPE, TYPE_FORM_RESPONSE );
+            listDocuments.add( document );
+        }
+        return listDocuments;
+    }
+}
@@ -0,0 +1,12 @@
+--
+-- Init  table core_admin_right
+--
+DELETE FROM core_admin_right WHERE id_right = 'FORMS_SOLR_REINDEX';
+INSERT INTO core_admin_right (id_right,name,level_right,admin_url,description,is_updatable,plugin_name,id_feature_group,icon_url,documentation_url,id_order) VALUES
+('FORMS_SOLR_REINDEX','module.forms.solr.adminFeature.reindex.name',0,'jsp/admin/plugins/forms/modules/solr/ManageFormsSolrReindex.jsp','module.forms.solr.adminFeature.reindex.description',0,'forms-solr','SYSTEM',NULL,NULL,4);
+
+--
+-- Init  table core_user_right
+--
+DELETE FROM core_user_right WHERE id_right = 'FORMS_SOLR_REINDEX';
+INSERT INTO core_user_right (id_right,id_user) VALUES ('FORMS_SOLR_REINDEX',1);
@@ -0,0 +1,10 @@
+--
+-- Structure for table forms_solr_deleted_response
+--
+
+DROP TABLE IF EXISTS forms_solr_deleted_response;
+CREATE TABLE forms_solr_deleted_response (
+id_response int NOT NULL,
+date_deletion timestamp default CURRENT_TIMESTAMP NOT NULL,
+PRIMARY KEY (id_response)
+);
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.service;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests of the batch size adaptation of AdaptiveBatchSizer
+ */
+public class AdaptiveBatchSizerTest
+{
+    private static final long TARGET_MILLIS = 100;
+    private static final long FAST_NANOS = TimeUnit.MILLISECONDS.toNanos( 10 );
+    private static final long SLOW_NANOS = TimeUnit.MILLISECONDS.toNanos( 200 );
+
+    /**
+     * The size grows by half the minimum size while the full batches are fast
+     */
+    @Test
+    public void testGrow( )
+    {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer( 100, 10, 1000, TARGET_MILLIS, Integer.MAX_VALUE );
+
+        sizer.record( 100, FAST_NANOS, 0 );
+        assertEquals( 105, sizer.getBatchSize( ) );
+        sizer.record( 105, FAST_NANOS, 0 );
+        assertEquals( 110, sizer.getBatchSize( ) );
+    }
+
+    /**
+     * A batch smaller than the size, such as the last one of a form, does not make it grow
+     */
+    @Test
+    public void testShortBatchDoesNotGrow( )
+    {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer( 100, 10, 1000, TARGET_MILLIS, Integer.MAX_VALUE );
+
+        sizer.record( 40, FAST_NANOS, 0 );
+        assertEquals( 100, sizer.getBatchSize( ) );
+    }
+
+    /**
+     * A slow batch halves the size, down to the minimum
+     */
+    @Test
+    public void testShrink( )
+    {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer( 100, 10, 1000, TARGET_MILLIS, Integer.MAX_VALUE );
+
+        sizer.record( 100, SLOW_NANOS, 0 );
+        assertEquals( 50, sizer.getBatchSize( ) );
+        sizer.record( 50, SLOW_NANOS, 0 );
+        sizer.record( 25, SLOW_NANOS, 0 );
+        assertEquals( 12, sizer.getBatchSize( ) );
+        sizer.record( 12, SLOW_NANOS, 0 );
+        assertEquals( 10, sizer.getBatchSize( ) );
+    }
+
+    /**
+     * The size does not exceed the maximum
+     */
+    @Test
+    public void testMaxSize( )
+    {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer( 2000, 10, 1000, TARGET_MILLIS, Integer.MAX_VALUE );
+        assertEquals( 1000, sizer.getBatchSize( ) );
+
+        sizer.record( 1000, FAST_NANOS, 0 );
+        assertEquals( 1000, sizer.getBatchSize( ) );
+    }
+
+    /**
+     * The size is capped by the mean number of question responses per form response
+     */
+    @Test
+    public void testFanOutCap( )
+    {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer( 100, 10, 1000, TARGET_MILLIS, 5000 );
+
+        // 100 question responses per form response: at most 50 form responses for 5000 question responses
+        sizer.record( 100, FAST_NANOS, 10000 );
+        assertEquals( 50, sizer.getBatchSize( ) );
+    }
+
+    /**
+     * A fixed sizer keeps its size
+     */
+    @Test
+    public void testFixed( )
+    {
+        AdaptiveBatchSizer sizer = AdaptiveBatchSizer.fixed( 50 );
+
+        sizer.record( 50, SLOW_NANOS, 0 );
+        sizer.record( 50, 0, 1000000 );
+        assertEquals( 50, sizer.getBatchSize( ) );
+        assertEquals( 50, sizer.getMaxSize( ) );
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests of the checkpoint of CommittedIdTracker, without the datastore
+ */
+public class CommittedIdTrackerTest
+{
+    private final List<String> _listWrites = new ArrayList<>( );
+
+    /**
+     * The checkpoint moves forward with the batches committed in order
+     */
+    @Test
+    public void testCommitInOrder( )
+    {
+        CommittedIdTracker tracker = new CommittedIdTracker( _listWrites::add, 0 );
+        tracker.register( Arrays.asList( 1, 2, 3 ) );
+        tracker.register( Arrays.asList( 4, 5 ) );
+
+        tracker.commit( Arrays.asList( 1, 2, 3 ) );
+        assertEquals( 3, tracker.getLastCommittedId( ) );
+        assertEquals( 3, tracker.getCommittedFormResponses( ) );
+        assertEquals( 1, tracker.getCommittedBatches( ) );
+
+        tracker.commit( Arrays.asList( 4, 5 ) );
+        assertEquals( 5, tracker.getLastCommittedId( ) );
+        assertEquals( 5, tracker.getCommittedFormResponses( ) );
+        assertEquals( 2, tracker.getCommittedBatches( ) );
+        assertEquals( Arrays.asList( tracker.getRunId( ) + ";3;3;1", tracker.getRunId( ) + ";5;5;2" ), _listWrites );
+    }
+
+    /**
+     * The batches committed before a pending one are merged into a range, and the checkpoint jumps over the whole range once the pending batch is committed
+     */
+    @Test
+    public void testCommitOutOfOrder( )
+    {
+        CommittedIdTracker tracker = new CommittedIdTracker( _listWrites::add, 0 );
+        tracker.register( Arrays.asList( 1, 2, 3 ) );
+        tracker.register( Arrays.asList( 4, 5, 6 ) );
+        tracker.register( Arrays.asList( 7, 8, 9 ) );
+        tracker.register( Arrays.asList( 10 ) );
+
+        tracker.commit( Arrays.asList( 7, 8, 9 ) );
+        tracker.commit( Arrays.asList( 4, 5, 6 ) );
+        assertEquals( 0, tracker.getLastCommittedId( ) );
+        assertTrue( _listWrites.isEmpty( ) );
+
+        tracker.commit( Arrays.asList( 1, 2, 3 ) );
+        assertEquals( 9, tracker.getLastCommittedId( ) );
+        assertEquals( 9, tracker.getCommittedFormResponses( ) );
+        assertEquals( 3, tracker.getCommittedBatches( ) );
+        assertEquals( Arrays.asList( tracker.getRunId( ) + ";9;9;3" ), _listWrites );
+    }
+
+    /**
+     * A committed batch is merged with the committed ranges on both of its sides
+     */
+    @Test
+    public void testMergeBothSides( )
+    {
+        CommittedIdTracker tracker = new CommittedIdTracker( _listWrites::add, 0 );
+        tracker.register( Arrays.asList( 1 ) );
+        tracker.register( Arrays.asList( 2, 3 ) );
+        tracker.register( Arrays.asList( 4, 5 ) );
+        tracker.register( Arrays.asList( 6, 7 ) );
+
+        tracker.commit( Arrays.asList( 2, 3 ) );
+        tracker.commit( Arrays.asList( 6, 7 ) );
+        tracker.commit( Arrays.asList( 4, 5 ) );
+        assertEquals( 0, tracker.getLastCommittedId( ) );
+
+        tracker.commit( Arrays.asList( 1 ) );
+        assertEquals( 7, tracker.getLastCommittedId( ) );
+        assertEquals( 7, tracker.getCommittedFormResponses( ) );
+        assertEquals( 4, tracker.getCommittedBatches( ) );
+    }
+
+    /**
+     * The checkpoint stays before a batch which is never committed
+     */
+    @Test
+    public void testFailedBatchHoldsCheckpoint( )
+    {
+        CommittedIdTracker tracker = new CommittedIdTracker( _listWrites::add, 0 );
+        tracker.register( Arrays.asList( 1, 2 ) );
+        tracker.register( Arrays.asList( 3, 4 ) );
+        tracker.register( Arrays.asList( 5, 6 ) );
+
+        tracker.commit( Arrays.asList( 1, 2 ) );
+        tracker.commit( Arrays.asList( 5, 6 ) );
+        assertEquals( 2, tracker.getLastCommittedId( ) );
+        assertEquals( 1, tracker.getCommittedBatches( ) );
+        assertEquals( 1, _listWrites.size( ) );
+    }
+
+    /**
+     * Committing a batch twice, an unknown batch or an empty one changes nothing
+     */
+    @Test
+    public void testIgnoredCommits( )
+    {
+        CommittedIdTracker tracker = new CommittedIdTracker( _listWrites::add, 0 );
+        tracker.register( Arrays.asList( 1, 2 ) );
+        tracker.register( Arrays.asList( 3, 4 ) );
+
+        tracker.commit( Arrays.asList( 3, 4 ) );
+        tracker.commit( Arrays.asList( 3, 4 ) );
+        tracker.commit( Arrays.asList( 8, 9 ) );
+        tracker.commit( new ArrayList<>( ) );
+        tracker.commit( Arrays.asList( 1, 2 ) );
+        assertEquals( 4, tracker.getLastCommittedId( ) );
+        assertEquals( 4, tracker.getCommittedFormResponses( ) );
+        assertEquals( 2, tracker.getCommittedBatches( ) );
+    }
+
+    /**
+     * A resumed run keeps its id and adds to the counts of the stored checkpoint
+     */
+    @Test
+    public void testResume( )
+    {
+        CommittedIdTracker tracker = CommittedIdTracker.parse( "run-1;42;420;7", _listWrites::add );
+        assertEquals( "run-1", tracker.getRunId( ) );
+        assertEquals( 42, tracker.getLastCommittedId( ) );
+        assertEquals( 420, tracker.getCommittedFormResponses( ) );
+        assertEquals( 7, tracker.getCommittedBatches( ) );
+
+        tracker.register( Arrays.asList( 43, 45, 50 ) );
+        tracker.commit( Arrays.asList( 43, 45, 50 ) );
+        assertEquals( Arrays.asList( "run-1;50;423;8" ), _listWrites );
+    }
+
+    /**
+     * A checkpoint holding only the last id starts a new run from it
+     */
+    @Test
+    public void testResumeLegacyCheckpoint( )
+    {
+        CommittedIdTracker tracker = CommittedIdTracker.parse( "42", _listWrites::add );
+        assertEquals( 42, tracker.getLastCommittedId( ) );
+        assertEquals( 0, tracker.getCommittedFormResponses( ) );
+        assertEquals( 0, tracker.getCommittedBatches( ) );
+    }
+
+    /**
+     * No checkpoint is read from an empty or malformed value
+     */
+    @Test
+    public void testNoCheckpoint( )
+    {
+        assertNull( CommittedIdTracker.parse( null, _listWrites::add ) );
+        assertNull( CommittedIdTracker.parse( "", _listWrites::add ) );
+        assertNull( CommittedIdTracker.parse( "abc", _listWrites::add ) );
+        assertNull( CommittedIdTracker.parse( "run-1;abc;1;1", _listWrites::add ) );
+    }
+}
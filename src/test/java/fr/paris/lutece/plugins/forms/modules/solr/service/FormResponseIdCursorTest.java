@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+/**
+ * Tests of the keyset pagination of FormResponseIdCursor, reading the ids from an array instead of the database
+ */
+public class FormResponseIdCursorTest
+{
+    private final List<Integer> _listReads = new ArrayList<>( );
+
+    /**
+     * The batches follow the ids in order, across the pages
+     */
+    @Test
+    public void testBatchesAcrossPages( )
+    {
+        FormResponseIdCursor cursor = new FormResponseIdCursor( reader( ids( 1, 10 ) ), 0, ( ) -> 3, 6 );
+
+        assertEquals( Arrays.asList( Arrays.asList( 1, 2, 3 ), Arrays.asList( 4, 5, 6 ), Arrays.asList( 7, 8, 9 ), Arrays.asList( 10 ) ), drain( cursor ) );
+        // the second page is shorter than the page size, so the cursor knows it is the last one
+        assertEquals( Arrays.asList( 0, 6 ), _listReads );
+    }
+
+    /**
+     * A page is never split into batches larger than the rest of the page
+     */
+    @Test
+    public void testBatchEndsWithPage( )
+    {
+        FormResponseIdCursor cursor = new FormResponseIdCursor( reader( ids( 1, 8 ) ), 0, ( ) -> 3, 4 );
+
+        assertEquals( Arrays.asList( Arrays.asList( 1, 2, 3 ), Arrays.asList( 4 ), Arrays.asList( 5, 6, 7 ), Arrays.asList( 8 ) ), drain( cursor ) );
+        assertEquals( Arrays.asList( 0, 4, 8 ), _listReads );
+    }
+
+    /**
+     * The cursor starts after the given id, the ids not being contiguous
+     */
+    @Test
+    public void testStartAfterId( )
+    {
+        FormResponseIdCursor cursor = new FormResponseIdCursor( reader( new int [ ] {
+                2, 5, 9, 14, 20
+        } ), 5, ( ) -> 2, 10 );
+
+        assertEquals( Arrays.asList( Arrays.asList( 9, 14 ), Arrays.asList( 20 ) ), drain( cursor ) );
+        assertEquals( Arrays.asList( 5 ), _listReads );
+    }
+
+    /**
+     * The size of a batch is read before each batch
+     */
+    @Test
+    public void testAdaptiveBatchSize( )
+    {
+        AtomicInteger nBatchSize = new AtomicInteger( 1 );
+        FormResponseIdCursor cursor = new FormResponseIdCursor( reader( ids( 1, 6 ) ), 0, nBatchSize::getAndIncrement, 10 );
+
+        assertEquals( Arrays.asList( Arrays.asList( 1 ), Arrays.asList( 2, 3 ), Arrays.asList( 4, 5, 6 ) ), drain( cursor ) );
+    }
+
+    /**
+     * A cursor without ids has no batch
+     */
+    @Test( expected = NoSuchElementException.class )
+    public void testEmpty( )
+    {
+        FormResponseIdCursor cursor = new FormResponseIdCursor( reader( new int [ 0] ), 0, ( ) -> 3, 6 );
+
+        assertFalse( cursor.hasNext( ) );
+        cursor.next( );
+    }
+
+    /**
+     * Gives a reader of the ids of an array
+     */
+    private FormResponseIdCursor.PageReader reader( int [ ] arrayIds )
+    {
+        return ( nAfterId, nLimit ) -> {
+            _listReads.add( nAfterId );
+            return Arrays.stream( arrayIds ).filter( nId -> nId > nAfterId ).limit( nLimit ).toArray( );
+        };
+    }
+
+    /**
+     * Gives the ids from a first id to a last one
+     */
+    private static int [ ] ids( int nFirstId, int nLastId )
+    {
+        return IntStream.rangeClosed( nFirstId, nLastId ).toArray( );
+    }
+
+    /**
+     * Reads all the batches of a cursor
+     */
+    private static List<List<Integer>> drain( FormResponseIdCursor cursor )
+    {
+        List<List<Integer>> listBatches = new ArrayList<>( );
+        cursor.forEachRemaining( listBatches::add );
+        return listBatches;
+    }
+}
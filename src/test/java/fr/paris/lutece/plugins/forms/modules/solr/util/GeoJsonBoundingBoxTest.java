@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * Tests of the GeoJSON scan of GeoJsonBoundingBox
+ */
+public class GeoJsonBoundingBoxTest
+{
+    private static final double DELTA = 0;
+
+    /**
+     * The box of a polygon, whose positions are nested three arrays deep
+     */
+    @Test
+    public void testPolygon( )
+    {
+        GeoJsonBoundingBox box = GeoJsonBoundingBox.of( "{\"type\":\"Polygon\",\"coordinates\":[[[0,0],[4,0],[4,3],[0,0]]]}" );
+
+        assertBox( box, 0, 0, 4, 3 );
+        assertEquals( "{\"type\":\"Polygon\",\"coordinates\":[[[0.0,0.0],[4.0,0.0],[4.0,3.0],[0.0,3.0],[0.0,0.0]]]}", box.toGeoJson( ) );
+    }
+
+    /**
+     * The box of the geometries of all the features, the numbers of the properties being ignored
+     */
+    @Test
+    public void testFeatureCollection( )
+    {
+        GeoJsonBoundingBox box = GeoJsonBoundingBox.of( "{\"type\":\"FeatureCollection\",\"features\":["
+                + "{\"type\":\"Feature\",\"properties\":{\"id\":99},\"geometry\":{\"type\":\"Point\",\"coordinates\":[1,2]}},"
+                + "{\"type\":\"Feature\",\"properties\":{\"id\":-50},\"geometry\":{\"type\":\"MultiLineString\",\"coordinates\":[[[-3,5.5],[2,-1]],[[0,0],[1,1]]]}}]}" );
+
+        assertBox( box, -3, -1, 2, 5.5 );
+    }
+
+    /**
+     * The altitude is ignored, and the numbers may have an exponent
+     */
+    @Test
+    public void testAltitudeAndExponent( )
+    {
+        GeoJsonBoundingBox box = GeoJsonBoundingBox.of( "{\"type\":\"LineString\",\"coordinates\":[[1e1,-2.5E-1,1000],[ 12 , 3 , -1000 ]]}" );
+
+        assertBox( box, 10, -0.25, 12, 3 );
+    }
+
+    /**
+     * A single position gives a point
+     */
+    @Test
+    public void testPoint( )
+    {
+        GeoJsonBoundingBox box = GeoJsonBoundingBox.of( "{\"type\":\"MultiPoint\",\"coordinates\":[[2.35,48.85],[2.35,48.85]]}" );
+
+        assertBox( box, 2.35, 48.85, 2.35, 48.85 );
+        assertEquals( "{\"type\":\"Point\",\"coordinates\":[2.35,48.85]}", box.toGeoJson( ) );
+    }
+
+    /**
+     * A box flat on one axis gives a line string rather than a polygon of zero area
+     */
+    @Test
+    public void testFlatBox( )
+    {
+        GeoJsonBoundingBox box = GeoJsonBoundingBox.of( "{\"type\":\"LineString\",\"coordinates\":[[1,0],[1,5],[1,2]]}" );
+        assertBox( box, 1, 0, 1, 5 );
+        assertEquals( "{\"type\":\"LineString\",\"coordinates\":[[1.0,0.0],[1.0,5.0]]}", box.toGeoJson( ) );
+
+        box = GeoJsonBoundingBox.of( "{\"type\":\"LineString\",\"coordinates\":[[-2,7],[3,7]]}" );
+        assertEquals( "{\"type\":\"LineString\",\"coordinates\":[[-2.0,7.0],[3.0,7.0]]}", box.toGeoJson( ) );
+    }
+
+    /**
+     * No box for a text without position
+     */
+    @Test
+    public void testNoPosition( )
+    {
+        assertNull( GeoJsonBoundingBox.of( null ) );
+        assertNull( GeoJsonBoundingBox.of( "" ) );
+        assertNull( GeoJsonBoundingBox.of( "{\"type\":\"Point\",\"coordinates\":[]}" ) );
+        assertNull( GeoJsonBoundingBox.of( "{\"type\":\"Feature\",\"properties\":{\"id\":1},\"geometry\":null}" ) );
+    }
+
+    /**
+     * Checks the bounds of a box
+     */
+    private static void assertBox( GeoJsonBoundingBox box, double dMinX, double dMinY, double dMaxX, double dMaxY )
+    {
+        assertEquals( dMinX, box.getMinX( ), DELTA );
+        assertEquals( dMinY, box.getMinY( ), DELTA );
+        assertEquals( dMaxX, box.getMaxX( ), DELTA );
+        assertEquals( dMaxY, box.getMaxY( ), DELTA );
+    }
+}
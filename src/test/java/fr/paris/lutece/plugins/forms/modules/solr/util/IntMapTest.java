@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests of IntMap
+ */
+public class IntMapTest
+{
+    /**
+     * The values are mapped and replaced by key
+     */
+    @Test
+    public void testPutGet( )
+    {
+        IntMap<String> map = new IntMap<>( );
+        assertTrue( map.isEmpty( ) );
+
+        assertNull( map.put( 1, "a" ) );
+        assertNull( map.put( -7, "b" ) );
+        assertNull( map.put( 0, "c" ) );
+        assertEquals( "a", map.put( 1, "d" ) );
+
+        assertEquals( 3, map.size( ) );
+        assertEquals( "d", map.get( 1 ) );
+        assertEquals( "b", map.get( -7 ) );
+        assertEquals( "c", map.get( 0 ) );
+        assertNull( map.get( 2 ) );
+        assertTrue( map.containsKey( 0 ) );
+        assertFalse( map.containsKey( 2 ) );
+        assertEquals( "e", map.getOrDefault( 2, "e" ) );
+    }
+
+    /**
+     * The table grows past its expected size without losing entries, including keys colliding on the same slots
+     */
+    @Test
+    public void testRehash( )
+    {
+        IntMap<Integer> map = new IntMap<>( 2 );
+        for ( int i = 0; i < 10000; i++ )
+        {
+            map.put( i * 1024, i );
+        }
+
+        assertEquals( 10000, map.size( ) );
+        for ( int i = 0; i < 10000; i++ )
+        {
+            assertEquals( Integer.valueOf( i ), map.get( i * 1024 ) );
+        }
+        assertNull( map.get( 1 ) );
+    }
+
+    /**
+     * A value is created only for a key not mapped yet
+     */
+    @Test
+    public void testComputeIfAbsent( )
+    {
+        IntMap<Object> map = new IntMap<>( );
+        Object value = map.computeIfAbsent( 5, Object::new );
+
+        assertSame( value, map.computeIfAbsent( 5, Object::new ) );
+        assertEquals( 1, map.size( ) );
+    }
+
+    /**
+     * The entries are all visited, and removed by clear
+     */
+    @Test
+    public void testForEachAndClear( )
+    {
+        IntMap<String> map = new IntMap<>( );
+        map.put( 3, "c" );
+        map.put( 1, "a" );
+        map.put( 2, "b" );
+
+        Map<Integer, String> mapVisited = new HashMap<>( );
+        map.forEach( mapVisited::put );
+        assertEquals( 3, mapVisited.size( ) );
+        assertEquals( "b", mapVisited.get( 2 ) );
+
+        map.clear( );
+        assertTrue( map.isEmpty( ) );
+        assertNull( map.get( 3 ) );
+        map.put( 3, "d" );
+        assertEquals( "d", map.get( 3 ) );
+    }
+
+    /**
+     * Null values are refused, since null marks the free slots
+     */
+    @Test( expected = IllegalArgumentException.class )
+    public void testNullValue( )
+    {
+        new IntMap<String>( ).put( 1, null );
+    }
+}
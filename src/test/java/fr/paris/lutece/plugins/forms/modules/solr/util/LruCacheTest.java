@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.forms.modules.solr.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * Tests of LruCache
+ */
+public class LruCacheTest
+{
+    /**
+     * The least recently used entry is evicted first
+     */
+    @Test
+    public void testEvictLeastRecentlyUsed( )
+    {
+        LruCache<Integer, String> cache = new LruCache<>( 2, 0 );
+        cache.put( 1, "a" );
+        cache.put( 2, "b" );
+        assertEquals( "a", cache.get( 1 ) );
+
+        cache.put( 3, "c" );
+        assertEquals( 2, cache.size( ) );
+        assertNull( cache.get( 2 ) );
+        assertEquals( "a", cache.get( 1 ) );
+        assertEquals( "c", cache.get( 3 ) );
+    }
+
+    /**
+     * An expired entry is not returned, and is removed
+     *
+     * @throws InterruptedException
+     *             the InterruptedException
+     */
+    @Test
+    public void testExpiry( ) throws InterruptedException
+    {
+        LruCache<Integer, String> cache = new LruCache<>( 10, 20 );
+        cache.put( 1, "a" );
+        assertEquals( "a", cache.get( 1 ) );
+
+        Thread.sleep( 50 );
+        assertNull( cache.get( 1 ) );
+        assertEquals( 0, cache.size( ) );
+    }
+
+    /**
+     * A cache of size 0 keeps nothing
+     */
+    @Test
+    public void testDisabled( )
+    {
+        LruCache<Integer, String> cache = new LruCache<>( 0, 0 );
+        cache.put( 1, "a" );
+
+        assertNull( cache.get( 1 ) );
+        assertEquals( 0, cache.size( ) );
+    }
+
+    /**
+     * The entries are removed one by one or all at once
+     */
+    @Test
+    public void testRemoveAndClear( )
+    {
+        LruCache<Integer, String> cache = new LruCache<>( 10, 0 );
+        cache.put( 1, "a" );
+        cache.put( 2, "b" );
+
+        cache.remove( 1 );
+        assertNull( cache.get( 1 ) );
+        assertEquals( "b", cache.get( 2 ) );
+
+        cache.clear( );
+        assertEquals( 0, cache.size( ) );
+    }
+}
@@ -0,0 +1,9 @@
+<jsp:useBean id="formsSolrReindex" scope="session" class="fr.paris.lutece.plugins.forms.modules.solr.web.FormsSolrReindexJspBean" />
+<% String strContent = formsSolrReindex.processController( request , response ); %>
+
+<%@ page errorPage="../../../../ErrorPage.jsp" %>
+<jsp:include page="../../../../AdminHeader.jsp" />
+
+<%= strContent %>
+
+<%@ include file="../../../../AdminFooter.jsp" %>